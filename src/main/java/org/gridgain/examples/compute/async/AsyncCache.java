@@ -0,0 +1,181 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.async;
+
+import java.util.Map;
+import java.util.Set;
+import javax.cache.processor.EntryProcessor;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.lang.IgniteFuture;
+
+/**
+ * Non-blocking facade over {@link IgniteCache} with a bounded number of operations in flight.
+ * See {@link AsyncCompute} for details.
+ */
+public class AsyncCache<K, V> {
+    /** Asynchronous cache. */
+    private final IgniteCache<K, V> cache;
+
+    /** Window. */
+    private final InFlightWindow window;
+
+    /**
+     * @param cache Cache.
+     * @param maxInFlight Maximum number of operations in flight.
+     */
+    public AsyncCache(IgniteCache<K, V> cache, int maxInFlight) {
+        this(cache, new InFlightWindow(maxInFlight));
+    }
+
+    /**
+     * @param cache Cache.
+     * @param window Window.
+     */
+    AsyncCache(IgniteCache<K, V> cache, InFlightWindow window) {
+        this.cache = cache.withAsync();
+        this.window = window;
+    }
+
+    /**
+     * @param key Key.
+     * @return Future of the value.
+     */
+    public IgniteFuture<V> get(final K key) {
+        return submit(new Op() {
+            @Override public void start() {
+                cache.get(key);
+            }
+        });
+    }
+
+    /**
+     * @param keys Keys.
+     * @return Future of the values.
+     */
+    public IgniteFuture<Map<K, V>> getAll(final Set<? extends K> keys) {
+        return submit(new Op() {
+            @Override public void start() {
+                cache.getAll(keys);
+            }
+        });
+    }
+
+    /**
+     * @param key Key.
+     * @param val Value.
+     * @return Future of the operation completion.
+     */
+    public IgniteFuture<Void> put(final K key, final V val) {
+        return submit(new Op() {
+            @Override public void start() {
+                cache.put(key, val);
+            }
+        });
+    }
+
+    /**
+     * @param map Entries.
+     * @return Future of the operation completion.
+     */
+    public IgniteFuture<Void> putAll(final Map<? extends K, ? extends V> map) {
+        return submit(new Op() {
+            @Override public void start() {
+                cache.putAll(map);
+            }
+        });
+    }
+
+    /**
+     * @param key Key.
+     * @return Future of the removal flag.
+     */
+    public IgniteFuture<Boolean> remove(final K key) {
+        return submit(new Op() {
+            @Override public void start() {
+                cache.remove(key);
+            }
+        });
+    }
+
+    /**
+     * @param key Key.
+     * @param proc Entry processor.
+     * @param args Processor arguments.
+     * @return Future of the processor result.
+     */
+    public <T> IgniteFuture<T> invoke(final K key, final EntryProcessor<K, V, T> proc, final Object... args) {
+        return submit(new Op() {
+            @Override public void start() {
+                cache.invoke(key, proc, args);
+            }
+        });
+    }
+
+    /**
+     * Waits for all operations in flight to complete.
+     */
+    public void awaitAll() {
+        window.awaitAll();
+    }
+
+    /**
+     * @return Number of operations in flight.
+     */
+    public int inFlight() {
+        return window.inFlight();
+    }
+
+    /**
+     * Starts an operation within the window.
+     *
+     * @param op Operation.
+     * @return Operation future.
+     */
+    private <R> IgniteFuture<R> submit(Op op) {
+        window.acquire();
+
+        IgniteFuture<R> fut;
+
+        try {
+            op.start();
+
+            fut = cache.future();
+        }
+        catch (RuntimeException e) {
+            window.release();
+
+            throw e;
+        }
+
+        return window.track(fut);
+    }
+
+    /**
+     * Operation started on the asynchronous cache instance.
+     */
+    private interface Op {
+        /**
+         * Starts operation.
+         */
+        void start();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.async;
+
+import java.util.Collection;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.compute.ComputeTask;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.lang.IgniteRunnable;
+
+/**
+ * Non-blocking facade over {@link IgniteCompute}. Every method starts an operation and returns its future without
+ * waiting for the result, so a single thread can keep many operations in flight. The number of operations in flight
+ * is bounded by a window: when it is full, the calling thread waits until one of the operations completes.
+ * <p>
+ * Results are consumed with {@link IgniteFuture#listen} or {@link IgniteFuture#chain}. Listeners are executed
+ * in system threads and must not block.
+ * <p>
+ * Instances are thread-safe. Use {@link AsyncCache} for cache operations sharing the same window.
+ */
+public class AsyncCompute {
+    /** Asynchronous compute. */
+    private final IgniteCompute compute;
+
+    /** Window. */
+    private final InFlightWindow window;
+
+    /**
+     * @param compute Compute instance, defines the nodes to execute on.
+     * @param maxInFlight Maximum number of operations in flight.
+     */
+    public AsyncCompute(IgniteCompute compute, int maxInFlight) {
+        this.compute = compute.withAsync();
+
+        window = new InFlightWindow(maxInFlight);
+    }
+
+    /**
+     * @param cache Cache.
+     * @return Cache facade sharing the window with this facade.
+     */
+    public <K, V> AsyncCache<K, V> cache(IgniteCache<K, V> cache) {
+        return new AsyncCache<>(cache, window);
+    }
+
+    /**
+     * @param job Job.
+     * @return Future of the job result.
+     */
+    public <R> IgniteFuture<R> call(final IgniteCallable<R> job) {
+        return submit(new Op() {
+            @Override public void start() {
+                compute.call(job);
+            }
+        });
+    }
+
+    /**
+     * @param jobs Jobs.
+     * @return Future of the job results.
+     */
+    public <R> IgniteFuture<Collection<R>> call(final Collection<? extends IgniteCallable<R>> jobs) {
+        return submit(new Op() {
+            @Override public void start() {
+                compute.call(jobs);
+            }
+        });
+    }
+
+    /**
+     * @param job Job.
+     * @return Future of the job completion.
+     */
+    public IgniteFuture<Void> run(final IgniteRunnable job) {
+        return submit(new Op() {
+            @Override public void start() {
+                compute.run(job);
+            }
+        });
+    }
+
+    /**
+     * @param cacheName Cache name.
+     * @param key Affinity key.
+     * @param job Job to execute on the primary node for the key.
+     * @return Future of the job result.
+     */
+    public <R> IgniteFuture<R> affinityCall(final String cacheName, final Object key, final IgniteCallable<R> job) {
+        return submit(new Op() {
+            @Override public void start() {
+                compute.affinityCall(cacheName, key, job);
+            }
+        });
+    }
+
+    /**
+     * @param cacheName Cache name.
+     * @param key Affinity key.
+     * @param job Job to execute on the primary node for the key.
+     * @return Future of the job completion.
+     */
+    public IgniteFuture<Void> affinityRun(final String cacheName, final Object key, final IgniteRunnable job) {
+        return submit(new Op() {
+            @Override public void start() {
+                compute.affinityRun(cacheName, key, job);
+            }
+        });
+    }
+
+    /**
+     * @param task Task.
+     * @param arg Task argument.
+     * @return Future of the task result.
+     */
+    public <T, R> IgniteFuture<R> execute(final ComputeTask<T, R> task, final T arg) {
+        return submit(new Op() {
+            @Override public void start() {
+                compute.execute(task, arg);
+            }
+        });
+    }
+
+    /**
+     * Waits for all operations in flight, including cache operations sharing the window, to complete.
+     */
+    public void awaitAll() {
+        window.awaitAll();
+    }
+
+    /**
+     * @return Number of operations in flight.
+     */
+    public int inFlight() {
+        return window.inFlight();
+    }
+
+    /**
+     * Starts an operation within the window.
+     *
+     * @param op Operation.
+     * @return Operation future.
+     */
+    private <R> IgniteFuture<R> submit(Op op) {
+        window.acquire();
+
+        IgniteFuture<R> fut;
+
+        try {
+            op.start();
+
+            fut = compute.future();
+        }
+        catch (RuntimeException e) {
+            window.release();
+
+            throw e;
+        }
+
+        return window.track(fut);
+    }
+
+    /**
+     * Operation started on the asynchronous compute instance.
+     */
+    private interface Op {
+        /**
+         * Starts operation.
+         */
+        void start();
+    }
+}
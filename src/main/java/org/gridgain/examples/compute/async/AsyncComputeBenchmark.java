@@ -0,0 +1,211 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.async;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.lang.IgniteInClosure;
+import org.gridgain.examples.ExampleNodeStartup;
+
+/**
+ * Compares requests per second issued by a single client thread in blocking style and through
+ * {@link AsyncCompute} / {@link AsyncCache} with a bounded window of operations in flight.
+ * <p>
+ * Compute requests are executed on remote nodes, cache requests access random keys of a partitioned cache.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using {@link ExampleNodeStartup}.
+ */
+public class AsyncComputeBenchmark {
+    /** Cache name. */
+    private static final String CACHE_NAME = AsyncComputeBenchmark.class.getSimpleName();
+
+    /** Number of keys. */
+    private static final int KEY_CNT = 100_000;
+
+    /** Duration of every benchmark run. */
+    private static final long DURATION = 10_000;
+
+    /** Maximum number of operations in flight. */
+    private static final int WINDOW = 1000;
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            if (ignite.cluster().forRemotes().nodes().isEmpty())
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            try (IgniteCache<Integer, Integer> cache = ignite.createCache(CACHE_NAME)) {
+                IgniteCompute compute = ignite.compute(ignite.cluster().forRemotes());
+
+                double blockingCompute = blockingCompute(compute);
+                double asyncCompute = asyncCompute(new AsyncCompute(compute, WINDOW));
+                double blockingCache = blockingCache(cache);
+                double asyncCache = asyncCache(new AsyncCache<>(cache, WINDOW));
+
+                System.out.println();
+                System.out.println(">>> Requests/sec per client thread [window=" + WINDOW + ']');
+                System.out.println(String.format(">>>   compute call: blocking=%.0f, async=%.0f", blockingCompute,
+                    asyncCompute));
+                System.out.println(String.format(">>>   cache put/get: blocking=%.0f, async=%.0f", blockingCache,
+                    asyncCache));
+            }
+        }
+    }
+
+    /**
+     * @param compute Compute.
+     * @return Requests per second.
+     */
+    private static double blockingCompute(IgniteCompute compute) {
+        long cnt = 0;
+        long start = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - start < DURATION) {
+            compute.call(new EchoCallable(cnt));
+
+            cnt++;
+        }
+
+        return rate(cnt, start);
+    }
+
+    /**
+     * @param compute Compute.
+     * @return Requests per second.
+     */
+    private static double asyncCompute(AsyncCompute compute) {
+        IgniteInClosure<IgniteFuture<Long>> lsnr = new IgniteInClosure<IgniteFuture<Long>>() {
+            @Override public void apply(IgniteFuture<Long> fut) {
+                // Rethrows operation failure.
+                fut.get();
+            }
+        };
+
+        long cnt = 0;
+        long start = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - start < DURATION) {
+            compute.call(new EchoCallable(cnt)).listen(lsnr);
+
+            cnt++;
+        }
+
+        compute.awaitAll();
+
+        return rate(cnt, start);
+    }
+
+    /**
+     * @param cache Cache.
+     * @return Requests per second.
+     */
+    private static double blockingCache(IgniteCache<Integer, Integer> cache) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        long cnt = 0;
+        long start = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - start < DURATION) {
+            int key = rnd.nextInt(KEY_CNT);
+
+            if ((cnt & 1) == 0)
+                cache.put(key, key);
+            else
+                cache.get(key);
+
+            cnt++;
+        }
+
+        return rate(cnt, start);
+    }
+
+    /**
+     * @param cache Cache.
+     * @return Requests per second.
+     */
+    private static double asyncCache(AsyncCache<Integer, Integer> cache) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        IgniteInClosure<IgniteFuture<?>> lsnr = new IgniteInClosure<IgniteFuture<?>>() {
+            @Override public void apply(IgniteFuture<?> fut) {
+                // Rethrows operation failure.
+                fut.get();
+            }
+        };
+
+        long cnt = 0;
+        long start = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - start < DURATION) {
+            int key = rnd.nextInt(KEY_CNT);
+
+            if ((cnt & 1) == 0)
+                cache.put(key, key).listen(lsnr);
+            else
+                cache.get(key).listen(lsnr);
+
+            cnt++;
+        }
+
+        cache.awaitAll();
+
+        return rate(cnt, start);
+    }
+
+    /**
+     * @param cnt Number of completed requests.
+     * @param start Start time.
+     * @return Requests per second.
+     */
+    private static double rate(long cnt, long start) {
+        return cnt * 1000.0 / (System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Callable returning its argument.
+     */
+    private static class EchoCallable implements IgniteCallable<Long> {
+        /** Value. */
+        private final long val;
+
+        /**
+         * @param val Value.
+         */
+        EchoCallable(long val) {
+            this.val = val;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Long call() {
+            return val;
+        }
+    }
+}
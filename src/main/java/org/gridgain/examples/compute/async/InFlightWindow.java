@@ -0,0 +1,118 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.async;
+
+import java.util.concurrent.Semaphore;
+import org.apache.ignite.IgniteInterruptedException;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.lang.IgniteInClosure;
+
+/**
+ * Bounds the number of asynchronous operations in flight. A submitting thread blocks when the window is full
+ * until one of the operations completes.
+ */
+class InFlightWindow {
+    /** Window size. */
+    private final int size;
+
+    /** Free slots. */
+    private final Semaphore slots;
+
+    /** Completion listener releasing a slot. */
+    private final IgniteInClosure<IgniteFuture<?>> releaser = new IgniteInClosure<IgniteFuture<?>>() {
+        @Override public void apply(IgniteFuture<?> fut) {
+            slots.release();
+        }
+    };
+
+    /**
+     * @param size Window size.
+     */
+    InFlightWindow(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+
+        this.size = size;
+
+        slots = new Semaphore(size);
+    }
+
+    /**
+     * Waits for a free slot.
+     *
+     * @throws IgniteInterruptedException If interrupted.
+     */
+    void acquire() {
+        try {
+            slots.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IgniteInterruptedException(e);
+        }
+    }
+
+    /**
+     * Releases the slot acquired for an operation that failed to start.
+     */
+    void release() {
+        slots.release();
+    }
+
+    /**
+     * Releases the slot when the future completes.
+     *
+     * @param fut Future of an operation started after {@link #acquire()}.
+     * @return The same future.
+     */
+    <T> IgniteFuture<T> track(IgniteFuture<T> fut) {
+        fut.listen(releaser);
+
+        return fut;
+    }
+
+    /**
+     * Waits for all operations in flight to complete.
+     *
+     * @throws IgniteInterruptedException If interrupted.
+     */
+    void awaitAll() {
+        try {
+            slots.acquire(size);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IgniteInterruptedException(e);
+        }
+
+        slots.release(size);
+    }
+
+    /**
+     * @return Number of operations in flight.
+     */
+    int inFlight() {
+        return size - slots.availablePermits();
+    }
+}
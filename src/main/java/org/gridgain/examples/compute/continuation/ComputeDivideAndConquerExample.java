@@ -0,0 +1,122 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.continuation;
+
+import org.apache.ignite.*;
+
+import java.util.*;
+
+/**
+ * This example demonstrates {@link DivideAndConquerJob} by counting prime numbers in a range.
+ * <p>
+ * The range is split in halves. Ranges longer than {@link PrimeCount#LOCAL_THRESHOLD} are distributed
+ * over the grid as separate jobs, shorter ones are split further in a local fork-join pool, and ranges shorter
+ * than {@link PrimeCount#BASE_THRESHOLD} are checked sequentially.
+ * <p>
+ * Remote nodes should always be started with special configuration file which
+ * enables P2P class loading: {@code 'ggstart.{sh|bat} config/example-ignite.xml'}.
+ */
+public final class ComputeDivideAndConquerExample {
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            System.out.println();
+            System.out.println("Compute divide and conquer example started.");
+
+            long n = 20_000_000;
+
+            long start = System.currentTimeMillis();
+
+            Long cnt = DivideAndConquerJob.execute(ignite, new PrimeCount(), new long[] {0, n});
+
+            long duration = System.currentTimeMillis() - start;
+
+            System.out.println();
+            System.out.println(">>> Found " + cnt + " primes below " + n + " in " + duration + " ms.");
+        }
+    }
+
+    /**
+     * Counts primes in range {@code [from, to)} passed as a two-element array.
+     */
+    private static class PrimeCount implements DivideAndConquer<long[], Long> {
+        /** Ranges shorter than this one are executed locally. */
+        private static final long LOCAL_THRESHOLD = 2_000_000;
+
+        /** Ranges shorter than this one are checked sequentially. */
+        private static final long BASE_THRESHOLD = 10_000;
+
+        /** {@inheritDoc} */
+        @Override public boolean isBase(long[] range) {
+            return range[1] - range[0] <= BASE_THRESHOLD;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean isLocal(long[] range) {
+            return range[1] - range[0] <= LOCAL_THRESHOLD;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Long solve(long[] range) {
+            long cnt = 0;
+
+            for (long i = range[0]; i < range[1]; i++) {
+                if (isPrime(i))
+                    cnt++;
+            }
+
+            return cnt;
+        }
+
+        /** {@inheritDoc} */
+        @Override public List<long[]> split(long[] range) {
+            long mid = (range[0] + range[1]) >>> 1;
+
+            return Arrays.asList(new long[] {range[0], mid}, new long[] {mid, range[1]});
+        }
+
+        /** {@inheritDoc} */
+        @Override public Long combine(long[] range, List<Long> results) {
+            return results.get(0) + results.get(1);
+        }
+
+        /**
+         * @param n Number.
+         * @return {@code True} if the number is prime.
+         */
+        private static boolean isPrime(long n) {
+            if (n < 2)
+                return false;
+
+            for (long d = 2; d * d <= n; d++) {
+                if (n % d == 0)
+                    return false;
+            }
+
+            return true;
+        }
+    }
+}
@@ -23,24 +23,33 @@ package org.gridgain.examples.compute.continuation;
 
 import org.apache.ignite.*;
 import org.apache.ignite.compute.*;
-import org.apache.ignite.lang.*;
-import org.apache.ignite.resources.*;
-import org.jetbrains.annotations.*;
+import org.apache.ignite.configuration.*;
 
 import java.math.*;
-import java.util.concurrent.*;
+import java.util.*;
 
 /**
  * This example demonstrates how to use continuation feature of GridGain by
  * performing the distributed recursive calculation of {@code 'Fibonacci'}
  * numbers on the grid. Continuations
  * functionality is exposed via {@link ComputeJobContext#holdcc()} and
- * {@link ComputeJobContext#callcc()} method calls in {@link FibonacciClosure} class.
+ * {@link ComputeJobContext#callcc()} method calls in {@link MemoizedRecursiveCallable} class,
+ * which {@link FibonacciJob} extends.
+ * <p>
+ * Every Fibonacci number is computed once cluster-wide: results are memoized in a partitioned cache,
+ * requests for a number are routed to its primary node where concurrent requests for the same number
+ * wait for a single computation, and numbers below {@link #LOCAL_THRESHOLD} are computed without spawning jobs.
  * <p>
  * Remote nodes should always be started with special configuration file which
  * enables P2P class loading: {@code 'ggstart.{sh|bat} config/example-ignite.xml'}.
  */
 public final class ComputeFibonacciContinuationExample {
+    /** Memo cache name. */
+    private static final String CACHE_NAME = ComputeFibonacciContinuationExample.class.getSimpleName();
+
+    /** Numbers up to this one are computed locally. */
+    private static final long LOCAL_THRESHOLD = 50;
+
     /**
      * Executes example.
      *
@@ -51,124 +60,95 @@ public final class ComputeFibonacciContinuationExample {
             System.out.println();
             System.out.println("Compute Fibonacci continuation example started.");
 
-            long N = 100;
+            try (IgniteCache<Long, BigInteger> cache = ignite.getOrCreateCache(
+                new CacheConfiguration<Long, BigInteger>(CACHE_NAME))) {
+                for (long n : new long[] {100, 1000, 5000, 10000}) {
+                    // Start from scratch for every number.
+                    cache.clear();
 
-            long start = System.currentTimeMillis();
+                    MemoizedRecursiveCallable.collectStats(ignite, CACHE_NAME, true);
 
-            BigInteger fib = ignite.compute().apply(new FibonacciClosure(), N);
+                    BigInteger fib = execute(ignite, n);
 
-            long duration = System.currentTimeMillis() - start;
+                    System.out.println(">>> Fibonacci number for '" + n + "' has " + fib.bitLength() + " bits.");
+                }
 
-            System.out.println();
-            System.out.println(">>> Finished executing Fibonacci for '" + N + "' in " + duration + " ms.");
-            System.out.println(">>> Fibonacci sequence for input number '" + N + "' is '" + fib + "'.");
-            System.out.println(">>> If you re-run this example w/o stopping remote nodes - the performance will");
-            System.out.println(">>> increase since intermediate results are pre-cache on remote nodes.");
-            System.out.println(">>> You should see prints out every recursive Fibonacci execution on grid nodes.");
-            System.out.println(">>> Check remote nodes for output.");
+                // Intermediate results are memoized, so this run is served from cache.
+                BigInteger fib = execute(ignite, 100);
+
+                System.out.println();
+                System.out.println(">>> Fibonacci sequence for input number '100' is '" + fib + "'.");
+                System.out.println(">>> The last run has been served from the memo cache without spawning jobs.");
+            }
         }
     }
 
     /**
-     * Closure to execute.
+     * @param ignite Ignite instance.
+     * @param n Number.
+     * @return Fibonacci number.
      */
-    private static class FibonacciClosure implements IgniteClosure<Long, BigInteger> {
-        /** Future for spawned task. */
-        private IgniteFuture<BigInteger> fut1;
+    private static BigInteger execute(Ignite ignite, long n) {
+        long start = System.currentTimeMillis();
 
-        /** Future for spawned task. */
-        private IgniteFuture<BigInteger> fut2;
+        BigInteger fib = ignite.compute().affinityCall(CACHE_NAME, n, new FibonacciJob(n));
 
-        /** Auto-inject job context. */
-        @JobContextResource
-        private ComputeJobContext jobCtx;
+        long duration = System.currentTimeMillis() - start;
 
-        /** Auto-inject grid instance. */
-        @IgniteInstanceResource
-        private Ignite ignite;
+        System.out.println();
+        System.out.println(">>> Finished executing Fibonacci for '" + n + "' in " + duration + " ms " +
+            MemoizedRecursiveCallable.collectStats(ignite, CACHE_NAME, true));
 
-        /** {@inheritDoc} */
-        @Nullable @Override public BigInteger apply(Long n) {
-            if (fut1 == null || fut2 == null) {
-                System.out.println();
-                System.out.println(">>> Starting fibonacci execution for number: " + n);
-
-                // Make sure n is not negative.
-                n = Math.abs(n);
-
-                if (n <= 2)
-                    return n == 0 ? BigInteger.ZERO : BigInteger.ONE;
-
-                // Node-local storage.
-                ConcurrentMap<Long, IgniteFuture<BigInteger>> locMap = ignite.cluster().nodeLocalMap();
-
-                // Check if value is cached in node-local-map first.
-                fut1 = locMap.get(n - 1);
-                fut2 = locMap.get(n - 2);
-
-                // If future is not cached in node-local-map, cache it.
-                if (fut1 == null)
-                    fut1 = execute(n - 1);
-
-                // If future is not cached in node-local-map, cache it.
-                if (fut2 == null)
-                    fut2 = execute(n - 2);
-
-                // If futures are not done, then wait asynchronously for the result
-                if (!fut1.isDone() || !fut2.isDone()) {
-                    IgniteInClosure<IgniteFuture<BigInteger>> lsnr = new IgniteInClosure<IgniteFuture<BigInteger>>() {
-                        @Override public void apply(IgniteFuture<BigInteger> f) {
-                            // If both futures are done, resume the continuation.
-                            if (fut1.isDone() && fut2.isDone())
-                                // CONTINUATION:
-                                // =============
-                                // Resume suspended job execution.
-                                jobCtx.callcc();
-                        }
-                    };
-
-                    // CONTINUATION:
-                    // =============
-                    // Hold (suspend) job execution.
-                    // It will be resumed in listener above via 'callcc()' call
-                    // once both futures are done.
-                    jobCtx.holdcc();
-
-                    // Attach the same listener to both futures.
-                    fut1.listen(lsnr);
-                    fut2.listen(lsnr);
-
-                    return null;
-                }
-            }
+        return fib;
+    }
 
-            assert fut1.isDone() && fut2.isDone();
+    /**
+     * Job computing Fibonacci number.
+     */
+    private static class FibonacciJob extends MemoizedRecursiveCallable<Long, BigInteger> {
+        /**
+         * @param n Number.
+         */
+        private FibonacciJob(long n) {
+            super(CACHE_NAME, n);
+        }
 
-            // Return cached results.
-            return fut1.get().add(fut2.get());
+        /** {@inheritDoc} */
+        @Override protected boolean isLeaf(Long n) {
+            return n <= LOCAL_THRESHOLD;
         }
 
-        private IgniteFuture<BigInteger> execute(long n) {
-            // Node-local storage.
-            ConcurrentMap<Long, IgniteFuture<BigInteger>> locMap = ignite.cluster().nodeLocalMap();
+        /** {@inheritDoc} */
+        @Override protected BigInteger computeLeaf(Long n) {
+            BigInteger prev = BigInteger.ZERO;
+            BigInteger cur = BigInteger.ONE;
 
-            // Asynchronous compute interface.
-            IgniteCompute compute = ignite.compute().withAsync();
+            if (n == 0)
+                return prev;
 
-            IgniteFuture<BigInteger> fut = locMap.get(n - 1);
+            for (long i = 1; i < n; i++) {
+                BigInteger next = prev.add(cur);
 
-            if (fut == null) {
-                compute.apply(new FibonacciClosure(), n - 1);
+                prev = cur;
+                cur = next;
+            }
 
-                fut = compute.future();
+            return cur;
+        }
 
-                IgniteFuture<BigInteger> old = locMap.putIfAbsent(n - 1, fut);
+        /** {@inheritDoc} */
+        @Override protected List<Long> split(Long n) {
+            return Arrays.asList(n - 1, n - 2);
+        }
 
-                if (old != null)
-                    fut = old;
-            }
+        /** {@inheritDoc} */
+        @Override protected BigInteger combine(Long n, List<BigInteger> results) {
+            return results.get(0).add(results.get(1));
+        }
 
-            return fut;
+        /** {@inheritDoc} */
+        @Override protected MemoizedRecursiveCallable<Long, BigInteger> newJob(Long n) {
+            return new FibonacciJob(n);
         }
     }
 }
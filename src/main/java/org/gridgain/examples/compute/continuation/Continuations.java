@@ -0,0 +1,68 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.continuation;
+
+import org.apache.ignite.compute.*;
+import org.apache.ignite.lang.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Continuation helpers shared by recursive jobs.
+ */
+class Continuations {
+    /**
+     * Ensures utility class is not instantiated.
+     */
+    private Continuations() {
+        // No-op.
+    }
+
+    /**
+     * Suspends job with {@link ComputeJobContext#holdcc()} and resumes it with {@link ComputeJobContext#callcc()}
+     * once, when all futures are done. The job must return right after this call.
+     *
+     * @param jobCtx Job context.
+     * @param futs Futures of subproblems, not empty.
+     */
+    static <R> void resumeWhenDone(final ComputeJobContext jobCtx, List<IgniteFuture<R>> futs) {
+        if (futs.isEmpty())
+            throw new IllegalArgumentException("Nothing to wait for.");
+
+        final AtomicInteger remaining = new AtomicInteger(futs.size());
+
+        IgniteInClosure<IgniteFuture<R>> lsnr = new IgniteInClosure<IgniteFuture<R>>() {
+            @Override public void apply(IgniteFuture<R> f) {
+                // Resume once, when the last subproblem is done.
+                if (remaining.decrementAndGet() == 0)
+                    jobCtx.callcc();
+            }
+        };
+
+        // CONTINUATION: suspend until all subproblems are solved.
+        jobCtx.holdcc();
+
+        for (IgniteFuture<R> fut : futs)
+            fut.listen(lsnr);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.continuation;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Recursive algorithm executed by {@link DivideAndConquerJob}.
+ * <p>
+ * Upper levels of recursion are distributed over the grid, one job per subproblem. Once a subproblem is
+ * small enough according to {@link #isLocal(Object)} its whole subtree is executed in a local fork-join pool,
+ * and subproblems for which {@link #isBase(Object)} returns {@code true} are solved sequentially.
+ * <p>
+ * Implementations are sent to remote nodes together with jobs, so they must be serializable.
+ */
+public interface DivideAndConquer<A, R> extends Serializable {
+    /**
+     * @param arg Argument.
+     * @return {@code True} if the subproblem should be solved sequentially.
+     */
+    public boolean isBase(A arg);
+
+    /**
+     * @param arg Argument.
+     * @return {@code True} if the subproblem subtree should be executed on the local node.
+     */
+    public boolean isLocal(A arg);
+
+    /**
+     * @param arg Argument.
+     * @return Result of a base subproblem.
+     */
+    public R solve(A arg);
+
+    /**
+     * @param arg Argument.
+     * @return Subproblems.
+     */
+    public List<A> split(A arg);
+
+    /**
+     * @param arg Argument.
+     * @param results Results of subproblems in the order returned by {@link #split(Object)}.
+     * @return Result.
+     */
+    public R combine(A arg, List<R> results);
+}
@@ -0,0 +1,177 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.continuation;
+
+import org.apache.ignite.*;
+import org.apache.ignite.compute.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.gridgain.examples.nodelocal.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Job executing {@link DivideAndConquer} algorithm.
+ * <p>
+ * Subproblems above the local threshold are submitted as separate jobs, so load balancing decides where they
+ * are executed, and the job is suspended with {@link ComputeJobContext#holdcc()} until they are done.
+ * Subproblems below the threshold are executed in a fork-join pool shared by all jobs of the node, which avoids
+ * a network hop and job overhead per level.
+ */
+public class DivideAndConquerJob<A, R> implements IgniteCallable<R> {
+    /** Algorithm. */
+    private final DivideAndConquer<A, R> alg;
+
+    /** Argument. */
+    private final A arg;
+
+    /** Futures of subproblems. */
+    private transient List<IgniteFuture<R>> futs;
+
+    /** Auto-inject job context. */
+    @JobContextResource
+    private transient ComputeJobContext jobCtx;
+
+    /** Auto-inject grid instance. */
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+
+    /**
+     * @param alg Algorithm.
+     * @param arg Argument.
+     */
+    public DivideAndConquerJob(DivideAndConquer<A, R> alg, A arg) {
+        this.alg = alg;
+        this.arg = arg;
+    }
+
+    /**
+     * Executes algorithm on the grid.
+     *
+     * @param ignite Ignite instance.
+     * @param alg Algorithm.
+     * @param arg Argument.
+     * @return Result.
+     */
+    public static <A, R> R execute(Ignite ignite, DivideAndConquer<A, R> alg, A arg) {
+        return ignite.compute().call(new DivideAndConquerJob<>(alg, arg));
+    }
+
+    /** {@inheritDoc} */
+    @Override public R call() {
+        if (futs != null) {
+            // Resumed, all subproblems are done.
+            List<R> results = new ArrayList<>(futs.size());
+
+            for (IgniteFuture<R> fut : futs)
+                results.add(fut.get());
+
+            return alg.combine(arg, results);
+        }
+
+        if (alg.isBase(arg))
+            return alg.solve(arg);
+
+        if (alg.isLocal(arg))
+            return NodeForkJoinPool.get(ignite).invoke(new LocalTask<>(alg, arg));
+
+        IgniteCompute compute = ignite.compute().withAsync();
+
+        List<A> subs = split(alg, arg);
+
+        futs = new ArrayList<>(subs.size());
+
+        for (A sub : subs) {
+            compute.call(new DivideAndConquerJob<>(alg, sub));
+
+            futs.add(compute.<R>future());
+        }
+
+        Continuations.resumeWhenDone(jobCtx, futs);
+
+        return null;
+    }
+
+    /**
+     * @param alg Algorithm.
+     * @param arg Argument.
+     * @return Subproblems.
+     */
+    private static <A, R> List<A> split(DivideAndConquer<A, R> alg, A arg) {
+        List<A> subs = alg.split(arg);
+
+        if (subs.isEmpty())
+            throw new IgniteException("Subproblem is neither base nor split: " + arg);
+
+        return subs;
+    }
+
+    /**
+     * Fork-join task executing a subtree locally.
+     */
+    private static class LocalTask<A, R> extends RecursiveTask<R> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Algorithm. */
+        private final DivideAndConquer<A, R> alg;
+
+        /** Argument. */
+        private final A arg;
+
+        /**
+         * @param alg Algorithm.
+         * @param arg Argument.
+         */
+        private LocalTask(DivideAndConquer<A, R> alg, A arg) {
+            this.alg = alg;
+            this.arg = arg;
+        }
+
+        /** {@inheritDoc} */
+        @Override protected R compute() {
+            if (alg.isBase(arg))
+                return alg.solve(arg);
+
+            List<A> subs = split(alg, arg);
+
+            List<LocalTask<A, R>> tasks = new ArrayList<>(subs.size());
+
+            for (A sub : subs)
+                tasks.add(new LocalTask<>(alg, sub));
+
+            // Fork all but the first subtask and compute the first one in this thread.
+            for (int i = 1; i < tasks.size(); i++)
+                tasks.get(i).fork();
+
+            List<R> results = new ArrayList<>(tasks.size());
+
+            results.add(tasks.get(0).compute());
+
+            for (int i = 1; i < tasks.size(); i++)
+                results.add(tasks.get(i).join());
+
+            return alg.combine(arg, results);
+        }
+    }
+}
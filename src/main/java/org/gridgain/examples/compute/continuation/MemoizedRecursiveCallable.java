@@ -0,0 +1,454 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.continuation;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cache.*;
+import org.apache.ignite.compute.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Base class for recursive computations distributed over the grid with continuations.
+ * <p>
+ * Every subproblem is sent with {@link IgniteCompute#affinityCall(String, Object, IgniteCallable)} to the primary
+ * node of the subproblem argument in the memo cache. Therefore all requests for the same subproblem end up on
+ * the same node, where:
+ * <ul>
+ *     <li>already solved subproblems are read from the memo cache with a local peek;</li>
+ *     <li>requests for a subproblem which is being solved wait for the result instead of solving it again;</li>
+ *     <li>subproblems below the threshold defined by {@link #isLeaf(Object)} are computed locally.</li>
+ * </ul>
+ * While waiting for subproblems a job is suspended with {@link ComputeJobContext#holdcc()} and is resumed
+ * with {@link ComputeJobContext#callcc()}, so it does not occupy a thread.
+ */
+public abstract class MemoizedRecursiveCallable<A, R> implements IgniteCallable<R> {
+    /** Index of spawned jobs counter in node statistics. */
+    private static final int STAT_JOBS = 0;
+
+    /** Index of locally computed leaves counter in node statistics. */
+    private static final int STAT_LEAVES = 1;
+
+    /** Index of memo cache hits counter in node statistics. */
+    private static final int STAT_MEMO_HITS = 2;
+
+    /** Index of in-flight subproblem hits counter in node statistics. */
+    private static final int STAT_DEDUP_HITS = 3;
+
+    /** Memo cache name. */
+    protected final String cacheName;
+
+    /** Argument. */
+    protected final A arg;
+
+    /** Futures of subproblems. */
+    private transient List<IgniteFuture<R>> futs;
+
+    /** Computation of the same argument this job waits for. */
+    private transient InFlight<R> waiting;
+
+    /** Computation of the argument owned by this job. */
+    private transient InFlight<R> owned;
+
+    /** Auto-inject job context. */
+    @JobContextResource
+    private transient ComputeJobContext jobCtx;
+
+    /** Auto-inject grid instance. */
+    @IgniteInstanceResource
+    protected transient Ignite ignite;
+
+    /**
+     * @param cacheName Memo cache name.
+     * @param arg Argument.
+     */
+    protected MemoizedRecursiveCallable(String cacheName, A arg) {
+        this.cacheName = cacheName;
+        this.arg = arg;
+    }
+
+    /**
+     * @param arg Argument.
+     * @return {@code True} if the argument is small enough to be computed locally.
+     */
+    protected abstract boolean isLeaf(A arg);
+
+    /**
+     * @param arg Argument.
+     * @return Locally computed result.
+     */
+    protected abstract R computeLeaf(A arg);
+
+    /**
+     * @param arg Argument which is not a leaf.
+     * @return Subproblems, not empty.
+     */
+    protected abstract List<A> split(A arg);
+
+    /**
+     * @param arg Argument.
+     * @param results Results of subproblems in the order returned by {@link #split(Object)}.
+     * @return Result.
+     */
+    protected abstract R combine(A arg, List<R> results);
+
+    /**
+     * @param arg Subproblem argument.
+     * @return Job solving the subproblem.
+     */
+    protected abstract MemoizedRecursiveCallable<A, R> newJob(A arg);
+
+    /** {@inheritDoc} */
+    @Override public R call() {
+        if (waiting != null)
+            return waiting.result();
+
+        if (futs != null)
+            return resume();
+
+        IgniteCache<A, R> cache = ignite.cache(cacheName);
+
+        R res = cache.localPeek(arg, CachePeekMode.PRIMARY);
+
+        if (res != null) {
+            stats(ignite, cacheName).incrementAndGet(STAT_MEMO_HITS);
+
+            return res;
+        }
+
+        ConcurrentMap<A, InFlight<R>> inFlights = inFlights();
+
+        InFlight<R> other = inFlights.putIfAbsent(arg, owned = new InFlight<>());
+
+        if (other != null) {
+            stats(ignite, cacheName).incrementAndGet(STAT_DEDUP_HITS);
+
+            owned = null;
+            waiting = other;
+
+            // CONTINUATION: suspend until the other job solves the same subproblem.
+            jobCtx.holdcc();
+
+            other.listen(new Runnable() {
+                @Override public void run() {
+                    jobCtx.callcc();
+                }
+            });
+
+            return null;
+        }
+
+        try {
+            if (isLeaf(arg)) {
+                stats(ignite, cacheName).incrementAndGet(STAT_LEAVES);
+
+                return complete(computeLeaf(arg));
+            }
+
+            IgniteCompute compute = ignite.compute().withAsync();
+
+            List<A> subs = split(arg);
+
+            if (subs.isEmpty())
+                throw new IgniteException("Subproblem is neither leaf nor split: " + arg);
+
+            futs = new ArrayList<>(subs.size());
+
+            for (A sub : subs) {
+                compute.affinityCall(cacheName, sub, newJob(sub));
+
+                futs.add(compute.<R>future());
+            }
+
+            stats(ignite, cacheName).addAndGet(STAT_JOBS, subs.size());
+        }
+        catch (RuntimeException e) {
+            fail(e);
+
+            throw e;
+        }
+
+        Continuations.resumeWhenDone(jobCtx, futs);
+
+        return null;
+    }
+
+    /**
+     * Combines results of subproblems once they are done.
+     *
+     * @return Result.
+     */
+    private R resume() {
+        try {
+            List<R> results = new ArrayList<>(futs.size());
+
+            for (IgniteFuture<R> fut : futs)
+                results.add(fut.get());
+
+            return complete(combine(arg, results));
+        }
+        catch (RuntimeException e) {
+            fail(e);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Memoizes result and releases jobs waiting for it.
+     *
+     * @param res Result.
+     * @return Result.
+     */
+    private R complete(R res) {
+        IgniteCache<A, R> cache = ignite.cache(cacheName);
+
+        // Local update, since the job is executed on the primary node.
+        cache.put(arg, res);
+
+        inFlights().remove(arg, owned);
+
+        owned.complete(res, null);
+
+        return res;
+    }
+
+    /**
+     * Releases jobs waiting for the result with an error.
+     *
+     * @param e Error.
+     */
+    private void fail(RuntimeException e) {
+        inFlights().remove(arg, owned);
+
+        owned.complete(null, e);
+    }
+
+    /**
+     * @return Computations in progress on this node.
+     */
+    private ConcurrentMap<A, InFlight<R>> inFlights() {
+        ConcurrentMap<String, ConcurrentMap<A, InFlight<R>>> locMap = ignite.cluster().nodeLocalMap();
+
+        String key = cacheName + "-in-flight";
+
+        ConcurrentMap<A, InFlight<R>> map = locMap.get(key);
+
+        if (map == null) {
+            ConcurrentMap<A, InFlight<R>> old = locMap.putIfAbsent(key, map = new ConcurrentHashMap<>());
+
+            if (old != null)
+                map = old;
+        }
+
+        return map;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Memo cache name.
+     * @return Statistics counters of this node.
+     */
+    private static AtomicLongArray stats(Ignite ignite, String cacheName) {
+        ConcurrentMap<String, AtomicLongArray> locMap = ignite.cluster().nodeLocalMap();
+
+        String key = cacheName + "-stats";
+
+        AtomicLongArray stats = locMap.get(key);
+
+        if (stats == null) {
+            AtomicLongArray old = locMap.putIfAbsent(key, stats = new AtomicLongArray(4));
+
+            if (old != null)
+                stats = old;
+        }
+
+        return stats;
+    }
+
+    /**
+     * Collects statistics from all nodes.
+     *
+     * @param ignite Ignite instance.
+     * @param cacheName Memo cache name.
+     * @param reset Whether to reset statistics after collecting.
+     * @return Statistics summed up over all nodes.
+     */
+    public static Stats collectStats(Ignite ignite, final String cacheName, final boolean reset) {
+        Collection<Stats> all = ignite.compute().broadcast(new IgniteCallable<Stats>() {
+            /** Auto-inject grid instance. */
+            @IgniteInstanceResource
+            private Ignite ignite;
+
+            @Override public Stats call() {
+                AtomicLongArray s = stats(ignite, cacheName);
+
+                long[] vals = new long[s.length()];
+
+                // Reset every counter atomically with reading it, so that concurrent updates are not lost.
+                for (int i = 0; i < vals.length; i++)
+                    vals[i] = reset ? s.getAndSet(i, 0) : s.get(i);
+
+                return new Stats(vals[STAT_JOBS], vals[STAT_LEAVES], vals[STAT_MEMO_HITS], vals[STAT_DEDUP_HITS]);
+            }
+        });
+
+        Stats res = new Stats(0, 0, 0, 0);
+
+        for (Stats s : all)
+            res = new Stats(res.jobs + s.jobs, res.leaves + s.leaves, res.memoHits + s.memoHits,
+                res.dedupHits + s.dedupHits);
+
+        return res;
+    }
+
+    /**
+     * Computation statistics.
+     */
+    public static class Stats implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Number of spawned jobs. */
+        private final long jobs;
+
+        /** Number of locally computed leaves. */
+        private final long leaves;
+
+        /** Number of subproblems found in memo cache. */
+        private final long memoHits;
+
+        /** Number of subproblems found in progress. */
+        private final long dedupHits;
+
+        /**
+         * @param jobs Number of spawned jobs.
+         * @param leaves Number of locally computed leaves.
+         * @param memoHits Number of subproblems found in memo cache.
+         * @param dedupHits Number of subproblems found in progress.
+         */
+        private Stats(long jobs, long leaves, long memoHits, long dedupHits) {
+            this.jobs = jobs;
+            this.leaves = leaves;
+            this.memoHits = memoHits;
+            this.dedupHits = dedupHits;
+        }
+
+        /**
+         * @return Number of spawned jobs.
+         */
+        public long getJobs() {
+            return jobs;
+        }
+
+        /**
+         * @return Number of locally computed leaves.
+         */
+        public long getLeaves() {
+            return leaves;
+        }
+
+        /**
+         * @return Number of subproblems found in memo cache.
+         */
+        public long getMemoHits() {
+            return memoHits;
+        }
+
+        /**
+         * @return Number of subproblems found in progress.
+         */
+        public long getDedupHits() {
+            return dedupHits;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return "Stats [jobs=" + jobs + ", leaves=" + leaves + ", memoHits=" + memoHits +
+                ", dedupHits=" + dedupHits + ']';
+        }
+    }
+
+    /**
+     * Computation in progress on the local node.
+     */
+    private static class InFlight<R> {
+        /** Listeners. */
+        private List<Runnable> lsnrs = new ArrayList<>();
+
+        /** Result. */
+        private R res;
+
+        /** Error. */
+        private RuntimeException err;
+
+        /**
+         * @param lsnr Listener to run once computation is done.
+         */
+        private void listen(Runnable lsnr) {
+            synchronized (this) {
+                if (lsnrs != null) {
+                    lsnrs.add(lsnr);
+
+                    return;
+                }
+            }
+
+            lsnr.run();
+        }
+
+        /**
+         * @param res Result.
+         * @param err Error.
+         */
+        private void complete(R res, RuntimeException err) {
+            List<Runnable> toRun;
+
+            synchronized (this) {
+                this.res = res;
+                this.err = err;
+
+                toRun = lsnrs;
+
+                lsnrs = null;
+            }
+
+            for (Runnable lsnr : toRun)
+                lsnr.run();
+        }
+
+        /**
+         * @return Result.
+         */
+        private synchronized R result() {
+            if (err != null)
+                throw new IgniteException("Failed to compute subproblem.", err);
+
+            return res;
+        }
+    }
+}
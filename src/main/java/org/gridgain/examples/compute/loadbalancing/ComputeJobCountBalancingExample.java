@@ -27,7 +27,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCompute;
 import org.apache.ignite.IgniteException;
@@ -41,6 +40,7 @@ import org.apache.ignite.resources.IgniteInstanceResource;
 import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveJobCountLoadProbe;
 import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveLoadBalancingSpi;
 import org.gridgain.examples.ExampleNodeStartup;
+import org.gridgain.examples.nodelocal.NodeMetrics;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
@@ -53,6 +53,9 @@ import org.springframework.core.io.FileSystemResource;
  * The longer example is run the more difference you will see in the total number of jobs that are
  * executed on the nodes.
  *
+ * The job count probe does not take into account how fast nodes execute jobs. See {@link WeightedLoadProbe} and
+ * {@link LoadProbeSimulationExample} for a probe that also considers job latency and CPU load.
+ *
  * To demonstrate the example start a remote node before using {@link ExampleNodeStartup}.
  */
 public class ComputeJobCountBalancingExample {
@@ -158,18 +161,11 @@ public class ComputeJobCountBalancingExample {
 
         /** {@inheritDoc} */
         @Override public Object execute() throws IgniteException {
-            ConcurrentMap<String, AtomicInteger> localMap = ignite.cluster().nodeLocalMap();
-
-            AtomicInteger pending = localMap.get("pending");
+            JobMetrics m = JobMetrics.get(ignite);
 
-            if (pending == null) {
-                AtomicInteger old = localMap.putIfAbsent("pending", pending = new AtomicInteger());
-
-                if (old != null)
-                    pending = old;
-            }
+            m.pending.add(1);
 
-            pending.incrementAndGet();
+            long start = System.currentTimeMillis();
 
             if (ignite.cluster().localNode().id().equals(slowNodeId)) {
                 // Holding job execution for 15 seconds. AdaptiveLoadBalancing should delegate more jobs to the other
@@ -182,19 +178,63 @@ public class ComputeJobCountBalancingExample {
                 }
             }
 
-            AtomicInteger finished = localMap.get("finished");
+            long executed = m.executed.add(1);
+
+            m.duration.record(System.currentTimeMillis() - start);
+
+            System.out.println("Jobs stat [executed = " + executed + ", pending = " + m.pending.add(-1) + ']');
+
+            return null;
+        }
+    }
+
+    /**
+     * Metrics of {@link BalancingJob} resolved from the registry of a node once and kept in the node local map.
+     */
+    private static class JobMetrics {
+        /** Node-local map key. */
+        private static final String KEY = JobMetrics.class.getName();
+
+        /** Upper bounds of job duration histogram buckets, in milliseconds. */
+        private static final long[] DURATION_BOUNDS = {10, 100, 1000, 10_000, 20_000};
 
-            if (finished == null) {
-                AtomicInteger old = localMap.putIfAbsent("finished", finished = new AtomicInteger());
+        /** Number of jobs being executed. */
+        private final NodeMetrics.Gauge pending;
+
+        /** Number of executed jobs. Not a striped counter, because the exact value is printed after every job. */
+        private final NodeMetrics.Gauge executed;
+
+        /** Job duration in milliseconds. */
+        private final NodeMetrics.Histogram duration;
+
+        /**
+         * @param ignite Local Ignite instance.
+         */
+        private JobMetrics(Ignite ignite) {
+            NodeMetrics registry = NodeMetrics.get(ignite);
+
+            pending = registry.gauge("pending");
+            executed = registry.gauge("executed");
+            duration = registry.histogram("durationMs", DURATION_BOUNDS);
+        }
+
+        /**
+         * @param ignite Local Ignite instance.
+         * @return Metrics of the local node.
+         */
+        static JobMetrics get(Ignite ignite) {
+            ConcurrentMap<String, JobMetrics> locMap = ignite.cluster().nodeLocalMap();
+
+            JobMetrics metrics = locMap.get(KEY);
+
+            if (metrics == null) {
+                JobMetrics old = locMap.putIfAbsent(KEY, metrics = new JobMetrics(ignite));
 
                 if (old != null)
-                    finished = old;
+                    metrics = old;
             }
 
-            System.out.println("Jobs stat [executed = " + finished.incrementAndGet() + ", pending = "
-                + pending.decrementAndGet() + ']');
-
-            return null;
+            return metrics;
         }
     }
 }
@@ -0,0 +1,198 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.loadbalancing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.compute.ComputeJob;
+import org.apache.ignite.compute.ComputeJobResult;
+import org.apache.ignite.compute.ComputeTaskAdapter;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.apache.ignite.spi.collision.jobstealing.JobStealingCollisionSpi;
+import org.apache.ignite.spi.collision.jobstealing.JobStealingDisabled;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Demonstrates how {@link JobStealingCollisionSpi} shortens the makespan of a batch of jobs when one node executes
+ * jobs much slower than the others, as in {@link ComputeJobCountBalancingExample}.
+ * <p>
+ * Jobs are mapped to nodes evenly. Every node executes at most {@link JobStealingNodeStartup#ACTIVE_JOBS_THRESHOLD}
+ * jobs at a time and keeps the rest in the waiting queue. The node that started the example is slow, so its queue
+ * drains last. With stealing enabled, nodes that run out of jobs steal waiting jobs from the slow node and execute
+ * them at their own speed. The same batch is executed with jobs annotated with {@link JobStealingDisabled} to get
+ * the makespan without stealing.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using {@link JobStealingNodeStartup}.
+ */
+public class ComputeJobStealingExample {
+    /** Execution time of a job on the slow node. */
+    private static final long SLOW_JOB_TIME = 2000;
+
+    /** Execution time of a job on other nodes. */
+    private static final long FAST_JOB_TIME = 100;
+
+    /** Number of jobs mapped to every node. */
+    private static final int JOBS_PER_NODE = 4 * JobStealingNodeStartup.ACTIVE_JOBS_THRESHOLD;
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        try (Ignite ignite = Ignition.start(JobStealingNodeStartup.configuration())) {
+            if (ignite.cluster().nodes().size() < 2)
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            UUID slowNodeId = ignite.cluster().localNode().id();
+
+            // Warm up.
+            ignite.compute().execute(new StealingTask(false), slowNodeId);
+
+            long noStealing = execute(ignite, false, slowNodeId);
+            long stealing = execute(ignite, true, slowNodeId);
+
+            System.out.println();
+            System.out.println(">>> Makespan without stealing: " + noStealing + "ms");
+            System.out.println(">>> Makespan with stealing:    " + stealing + "ms");
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param stealing Whether jobs can be stolen.
+     * @param slowNodeId Slow node ID.
+     * @return Makespan in milliseconds.
+     */
+    private static long execute(Ignite ignite, boolean stealing, UUID slowNodeId) {
+        long start = System.currentTimeMillis();
+
+        Map<UUID, Integer> execNodes = ignite.compute().execute(new StealingTask(stealing), slowNodeId);
+
+        long time = System.currentTimeMillis() - start;
+
+        System.out.println(">>> Batch executed [stealing=" + stealing + ", time=" + time + "ms, jobsOnSlowNode=" +
+            execNodes.get(slowNodeId) + ", jobsByNode=" + execNodes + ']');
+
+        return time;
+    }
+
+    /**
+     * Maps {@link #JOBS_PER_NODE} jobs to every node and returns the number of jobs executed by every node.
+     */
+    private static class StealingTask extends ComputeTaskAdapter<UUID, Map<UUID, Integer>> {
+        /** Whether jobs can be stolen. */
+        private final boolean stealing;
+
+        /**
+         * @param stealing Whether jobs can be stolen.
+         */
+        StealingTask(boolean stealing) {
+            this.stealing = stealing;
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Map<? extends ComputeJob, ClusterNode> map(List<ClusterNode> list,
+            UUID slowNodeId) throws IgniteException {
+            Map<ComputeJob, ClusterNode> jobs = new HashMap<>();
+
+            for (ClusterNode node : list) {
+                for (int i = 0; i < JOBS_PER_NODE; i++)
+                    jobs.put(stealing ? new StealableJob(slowNodeId) : new PinnedJob(slowNodeId), node);
+            }
+
+            return jobs;
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Map<UUID, Integer> reduce(List<ComputeJobResult> list) throws IgniteException {
+            Map<UUID, Integer> res = new HashMap<>();
+
+            for (ComputeJobResult jobRes : list) {
+                UUID nodeId = jobRes.getData();
+
+                Integer cnt = res.get(nodeId);
+
+                res.put(nodeId, cnt == null ? 1 : cnt + 1);
+            }
+
+            return res;
+        }
+    }
+
+    /**
+     * Job which execution is slowed down on the slow node. Returns ID of the node that executed it.
+     */
+    private static class StealableJob implements ComputeJob {
+        /** ID of the slow node. */
+        private final UUID slowNodeId;
+
+        /** */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param slowNodeId ID of the slow node.
+         */
+        StealableJob(UUID slowNodeId) {
+            this.slowNodeId = slowNodeId;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void cancel() {
+            // Ignore for this example.
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object execute() throws IgniteException {
+            UUID locId = ignite.cluster().localNode().id();
+
+            try {
+                Thread.sleep(locId.equals(slowNodeId) ? SLOW_JOB_TIME : FAST_JOB_TIME);
+            }
+            catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+
+            return locId;
+        }
+    }
+
+    /**
+     * Job that is never stolen.
+     */
+    @JobStealingDisabled
+    private static class PinnedJob extends StealableJob {
+        /**
+         * @param slowNodeId ID of the slow node.
+         */
+        PinnedJob(UUID slowNodeId) {
+            super(slowNodeId);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.loadbalancing;
+
+import java.io.File;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.spi.collision.jobstealing.JobStealingCollisionSpi;
+import org.apache.ignite.spi.failover.jobstealing.JobStealingFailoverSpi;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Starts a server node with job stealing enabled.
+ *
+ * Refer to {@link ComputeJobStealingExample} for details.
+ */
+public class JobStealingNodeStartup {
+    /** Number of jobs executed in parallel on a node, the rest of jobs wait in the queue. */
+    public static final int ACTIVE_JOBS_THRESHOLD = 4;
+
+    /** Node steals jobs from other nodes when the number of its waiting jobs is at or below this threshold. */
+    public static final int WAIT_JOBS_THRESHOLD = 0;
+
+    /** Maximum number of times a job may be stolen. */
+    public static final int MAX_STEALING_ATTEMPTS = 5;
+
+    /**
+     * Start up a node with job stealing configuration.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        Ignition.start(configuration());
+    }
+
+    /**
+     * Loads example configuration and enables job stealing. The collision SPI must be configured on every node
+     * that executes jobs, the failover SPI must be configured on nodes that execute tasks.
+     *
+     * @return Configuration.
+     */
+    public static IgniteConfiguration configuration() {
+        DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+
+        new XmlBeanDefinitionReader(factory).loadBeanDefinitions(new FileSystemResource(
+            new File("config/example-ignite.xml")));
+
+        IgniteConfiguration cfg = factory.getBean(IgniteConfiguration.class);
+
+        JobStealingCollisionSpi colSpi = new JobStealingCollisionSpi();
+
+        colSpi.setActiveJobsThreshold(ACTIVE_JOBS_THRESHOLD);
+        colSpi.setWaitJobsThreshold(WAIT_JOBS_THRESHOLD);
+        colSpi.setMaximumStealingAttempts(MAX_STEALING_ATTEMPTS);
+
+        // Steal requests expire quickly, so that idle nodes ask again soon.
+        colSpi.setMessageExpireTime(1000);
+
+        cfg.setCollisionSpi(colSpi);
+
+        JobStealingFailoverSpi failSpi = new JobStealingFailoverSpi();
+
+        failSpi.setMaximumFailoverAttempts(MAX_STEALING_ATTEMPTS);
+
+        cfg.setFailoverSpi(failSpi);
+
+        // Nodes learn about idle neighbours from metrics updates.
+        cfg.setMetricsUpdateFrequency(500);
+
+        return cfg;
+    }
+}
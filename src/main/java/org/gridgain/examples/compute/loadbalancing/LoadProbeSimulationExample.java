@@ -0,0 +1,302 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.loadbalancing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCompute;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.compute.ComputeJob;
+import org.apache.ignite.compute.ComputeJobResult;
+import org.apache.ignite.compute.ComputeTaskFuture;
+import org.apache.ignite.compute.ComputeTaskSplitAdapter;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.events.DiscoveryEvent;
+import org.apache.ignite.events.Event;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.lang.IgniteInClosure;
+import org.apache.ignite.lang.IgniteFuture;
+import org.apache.ignite.lang.IgnitePredicate;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveCpuLoadProbe;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveJobCountLoadProbe;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveLoadBalancingSpi;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveLoadProbe;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveProcessingTimeLoadProbe;
+import org.gridgain.examples.ExampleNodeStartup;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Compares load probes of {@link AdaptiveLoadBalancingSpi} in the slow-node scenario of
+ * {@link ComputeJobCountBalancingExample}: jobs executed on the node that started the example take
+ * {@link #SLOW_JOB_TIME} while jobs on other nodes take {@link #FAST_JOB_TIME}.
+ * <p>
+ * For every probe the example starts a local node with the probe configured, executes {@link #TASKS} tasks keeping
+ * {@link #PARALLELISM} of them in flight, and reports throughput, task latency percentiles and the share of jobs
+ * sent to the slow node. The probes compared are the stock job count, CPU and processing time probes and
+ * {@link WeightedLoadProbe}.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using {@link ExampleNodeStartup}.
+ */
+public class LoadProbeSimulationExample {
+    /** Execution time of a job on the slow node. */
+    private static final long SLOW_JOB_TIME = 500;
+
+    /** Execution time of a job on other nodes. */
+    private static final long FAST_JOB_TIME = 50;
+
+    /** Number of jobs per task per node. */
+    private static final int JOBS_PER_NODE = 4;
+
+    /** Number of tasks executed for every probe. */
+    private static final int TASKS = 200;
+
+    /** Number of tasks in flight. */
+    private static final int PARALLELISM = 8;
+
+    /** Warmup tasks, not included into statistics. */
+    private static final int WARMUP_TASKS = 20;
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        WeightedLoadProbe weighted = new WeightedLoadProbe();
+
+        weighted.setJobsWeight(1);
+        weighted.setLatencyWeight(10);
+        weighted.setCpuWeight(1);
+
+        Map<String, AdaptiveLoadProbe> probes = new LinkedHashMap<>();
+
+        probes.put("Job count", new AdaptiveJobCountLoadProbe(false));
+        probes.put("CPU", new AdaptiveCpuLoadProbe(false, true, 0));
+        probes.put("Processing time", new AdaptiveProcessingTimeLoadProbe(true));
+        probes.put("Weighted", weighted);
+
+        List<String> results = new ArrayList<>();
+
+        for (Map.Entry<String, AdaptiveLoadProbe> e : probes.entrySet()) {
+            System.out.println(">>> Simulating probe: " + e.getValue());
+
+            results.add(e.getKey() + ": " + simulate(e.getValue()));
+        }
+
+        System.out.println();
+        System.out.println(">>> Simulation results [slowJobTime=" + SLOW_JOB_TIME + "ms, fastJobTime=" +
+            FAST_JOB_TIME + "ms, tasks=" + TASKS + ", parallelism=" + PARALLELISM + ']');
+
+        for (String res : results)
+            System.out.println(">>>   " + res);
+    }
+
+    /**
+     * Starts local node with the given probe and executes the tasks.
+     *
+     * @param probe Load probe.
+     * @return Simulation result.
+     * @throws Exception If failed.
+     */
+    private static String simulate(final AdaptiveLoadProbe probe) throws Exception {
+        AdaptiveLoadBalancingSpi loadSpi = new AdaptiveLoadBalancingSpi();
+
+        loadSpi.setLoadProbe(probe);
+
+        IgniteConfiguration cfg = configuration();
+
+        cfg.setLoadBalancingSpi(loadSpi);
+
+        try (Ignite ignite = Ignition.start(cfg)) {
+            if (ignite.cluster().nodes().size() < 2)
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            if (probe instanceof WeightedLoadProbe) {
+                ignite.events().localListen(new IgnitePredicate<Event>() {
+                    @Override public boolean apply(Event evt) {
+                        ((WeightedLoadProbe)probe).onNodeLeft(((DiscoveryEvent)evt).eventNode().id());
+
+                        return true;
+                    }
+                }, EventType.EVT_NODE_LEFT, EventType.EVT_NODE_FAILED);
+            }
+
+            final UUID slowNodeId = ignite.cluster().localNode().id();
+
+            IgniteCompute compute = ignite.compute().withAsync();
+
+            final Semaphore inFlight = new Semaphore(PARALLELISM);
+
+            final long[] latencies = new long[TASKS];
+            final int[] slowJobs = new int[1];
+            final int[] totalJobs = new int[1];
+
+            long start = 0;
+
+            for (int i = -WARMUP_TASKS; i < TASKS; i++) {
+                if (i == 0) {
+                    // Wait for warmup tasks.
+                    inFlight.acquire(PARALLELISM);
+                    inFlight.release(PARALLELISM);
+
+                    start = System.nanoTime();
+                }
+
+                inFlight.acquire();
+
+                final int idx = i;
+                final long taskStart = System.nanoTime();
+
+                compute.execute(new SimulationTask(), slowNodeId);
+
+                ComputeTaskFuture<int[]> fut = compute.future();
+
+                fut.listen(new IgniteInClosure<IgniteFuture<int[]>>() {
+                    @Override public void apply(IgniteFuture<int[]> f) {
+                        try {
+                            int[] res = f.get();
+
+                            if (idx >= 0) {
+                                synchronized (latencies) {
+                                    latencies[idx] = System.nanoTime() - taskStart;
+                                    slowJobs[0] += res[0];
+                                    totalJobs[0] += res[1];
+                                }
+                            }
+                        }
+                        finally {
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+
+            inFlight.acquire(PARALLELISM);
+
+            long dur = System.nanoTime() - start;
+
+            synchronized (latencies) {
+                Arrays.sort(latencies);
+
+                return String.format("throughput=%.1f tasks/s, p50=%dms, p99=%dms, max=%dms, slowNodeJobs=%.1f%%",
+                    TASKS * 1e9 / dur,
+                    latencies[TASKS / 2] / 1_000_000,
+                    latencies[TASKS * 99 / 100] / 1_000_000,
+                    latencies[TASKS - 1] / 1_000_000,
+                    100.0 * slowJobs[0] / totalJobs[0]);
+            }
+        }
+    }
+
+    /**
+     * @return Configuration loaded from the example configuration file.
+     */
+    private static IgniteConfiguration configuration() {
+        DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+
+        new XmlBeanDefinitionReader(factory).loadBeanDefinitions(new FileSystemResource(
+            new File("config/example-ignite.xml")));
+
+        return factory.getBean(IgniteConfiguration.class);
+    }
+
+    /**
+     * Splits into {@link #JOBS_PER_NODE} jobs per node, which are assigned to nodes by the load balancer.
+     * Returns the number of jobs executed on the slow node and the total number of jobs.
+     */
+    private static class SimulationTask extends ComputeTaskSplitAdapter<UUID, int[]> {
+        /** {@inheritDoc} */
+        @Override protected Collection<? extends ComputeJob> split(int nodesCnt,
+            UUID slowNodeId) throws IgniteException {
+            List<SimulationJob> list = new ArrayList<>();
+
+            for (int i = 0; i < nodesCnt * JOBS_PER_NODE; i++)
+                list.add(new SimulationJob(slowNodeId));
+
+            return list;
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public int[] reduce(List<ComputeJobResult> list) throws IgniteException {
+            int slow = 0;
+
+            for (ComputeJobResult res : list) {
+                if (res.<Boolean>getData())
+                    slow++;
+            }
+
+            return new int[] {slow, list.size()};
+        }
+    }
+
+    /**
+     * Job that is slowed down on the node that started the example.
+     */
+    private static class SimulationJob implements ComputeJob {
+        /** ID of the slow node. */
+        private final UUID slowNodeId;
+
+        /** */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param slowNodeId ID of the slow node.
+         */
+        SimulationJob(UUID slowNodeId) {
+            this.slowNodeId = slowNodeId;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void cancel() {
+            // Ignore for this example.
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object execute() throws IgniteException {
+            boolean slow = ignite.cluster().localNode().id().equals(slowNodeId);
+
+            try {
+                Thread.sleep(slow ? SLOW_JOB_TIME : FAST_JOB_TIME);
+            }
+            catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+
+            return slow;
+        }
+    }
+}
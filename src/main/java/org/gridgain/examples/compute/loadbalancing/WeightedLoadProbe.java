@@ -0,0 +1,234 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.loadbalancing;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.ignite.cluster.ClusterMetrics;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveLoadBalancingSpi;
+import org.apache.ignite.spi.loadbalancing.adaptive.AdaptiveLoadProbe;
+
+/**
+ * Load probe for {@link AdaptiveLoadBalancingSpi} that combines several node metrics:
+ * <ul>
+ *     <li>number of active and waiting jobs plus jobs sent to the node since the last metrics update;</li>
+ *     <li>exponentially weighted moving average of recent job latency (wait time plus execution time);</li>
+ *     <li>current CPU load.</li>
+ * </ul>
+ * The load is calculated as
+ * <pre>
+ * jobsWeight * jobs + latencyWeight * (jobs + 1) * latencySeconds + cpuWeight * cpuLoad
+ * </pre>
+ * The latency term estimates the time a new job will spend on the node, so a node that executes jobs slower receives
+ * fewer jobs even if its queue is as short as on the other nodes. Latency is sampled once per metrics update of
+ * a node: the sample is the average execution time of the jobs finished since the previous update, calculated from
+ * the total execution time and the number of executed jobs, plus the current wait time. Metrics that are not
+ * available are ignored.
+ * <p>
+ * The probe keeps latency averages by node, call {@link #onNodeLeft(UUID)} when a node leaves the topology.
+ */
+public class WeightedLoadProbe implements AdaptiveLoadProbe {
+    /** Minimal load, returned for idle nodes. */
+    private static final double MIN_LOAD = 0.01;
+
+    /** Weight of the job count. */
+    private double jobsWeight = 1;
+
+    /** Weight of the latency. */
+    private double latencyWeight = 1;
+
+    /** Weight of the CPU load. */
+    private double cpuWeight = 1;
+
+    /** Latency smoothing factor, weight of the new sample. */
+    private double smoothing = 0.3;
+
+    /** Latency averages by node. */
+    private final ConcurrentMap<UUID, Latency> latencies = new ConcurrentHashMap<>();
+
+    /** {@inheritDoc} */
+    @Override public double getLoad(ClusterNode node, int jobsSentSinceLastUpdate) {
+        ClusterMetrics metrics = node.metrics();
+
+        int jobs = Math.max(0, metrics.getCurrentActiveJobs()) + Math.max(0, metrics.getCurrentWaitingJobs()) +
+            jobsSentSinceLastUpdate;
+
+        double load = jobsWeight * jobs + latencyWeight * (jobs + 1) * latency(node.id(), metrics) / 1000;
+
+        double cpu = metrics.getCurrentCpuLoad();
+
+        if (cpu > 0)
+            load += cpuWeight * cpu;
+
+        return Math.max(load, MIN_LOAD);
+    }
+
+    /**
+     * @param nodeId Node ID.
+     * @param metrics Node metrics.
+     * @return Latency average in milliseconds.
+     */
+    private double latency(UUID nodeId, ClusterMetrics metrics) {
+        Latency latency = latencies.get(nodeId);
+
+        if (latency == null) {
+            Latency old = latencies.putIfAbsent(nodeId, latency = new Latency());
+
+            if (old != null)
+                latency = old;
+        }
+
+        return latency.update(metrics, smoothing);
+    }
+
+    /**
+     * Forgets latency average of a node.
+     *
+     * @param nodeId ID of the node that has left.
+     */
+    public void onNodeLeft(UUID nodeId) {
+        latencies.remove(nodeId);
+    }
+
+    /**
+     * @return Weight of the job count.
+     */
+    public double getJobsWeight() {
+        return jobsWeight;
+    }
+
+    /**
+     * @param jobsWeight Weight of the job count.
+     */
+    public void setJobsWeight(double jobsWeight) {
+        this.jobsWeight = jobsWeight;
+    }
+
+    /**
+     * @return Weight of the latency.
+     */
+    public double getLatencyWeight() {
+        return latencyWeight;
+    }
+
+    /**
+     * @param latencyWeight Weight of the latency, applied to the latency in seconds.
+     */
+    public void setLatencyWeight(double latencyWeight) {
+        this.latencyWeight = latencyWeight;
+    }
+
+    /**
+     * @return Weight of the CPU load.
+     */
+    public double getCpuWeight() {
+        return cpuWeight;
+    }
+
+    /**
+     * @param cpuWeight Weight of the CPU load, applied to the load in range {@code [0, 1]}.
+     */
+    public void setCpuWeight(double cpuWeight) {
+        this.cpuWeight = cpuWeight;
+    }
+
+    /**
+     * @return Latency smoothing factor.
+     */
+    public double getLatencySmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * @param smoothing Latency smoothing factor in range {@code (0, 1]}, the weight of the latest sample.
+     */
+    public void setLatencySmoothing(double smoothing) {
+        if (smoothing <= 0 || smoothing > 1)
+            throw new IllegalArgumentException("Smoothing factor must be in range (0, 1]: " + smoothing);
+
+        this.smoothing = smoothing;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "WeightedLoadProbe [jobsWeight=" + jobsWeight + ", latencyWeight=" + latencyWeight +
+            ", cpuWeight=" + cpuWeight + ", smoothing=" + smoothing + ']';
+    }
+
+    /**
+     * Latency average of a node.
+     */
+    private static class Latency {
+        /** Update time of the last sampled metrics. */
+        private long lastUpdateTime = -1;
+
+        /** Number of jobs executed as of the last sampled metrics. */
+        private long lastExecJobs = -1;
+
+        /** Total execution time of jobs as of the last sampled metrics. */
+        private long lastExecTime;
+
+        /** Average. */
+        private double avg = -1;
+
+        /**
+         * @param metrics Node metrics.
+         * @param smoothing Smoothing factor.
+         * @return Updated average.
+         */
+        private synchronized double update(ClusterMetrics metrics, double smoothing) {
+            long updateTime = metrics.getLastUpdateTime();
+
+            if (updateTime != lastUpdateTime) {
+                lastUpdateTime = updateTime;
+
+                long execJobs = metrics.getTotalExecutedJobs();
+                long execTime = metrics.getTotalJobsExecutionTime();
+
+                double exec = -1;
+
+                // Average over the interval, history averages would lag behind.
+                if (lastExecJobs >= 0 && execJobs > lastExecJobs)
+                    exec = (double)(execTime - lastExecTime) / (execJobs - lastExecJobs);
+
+                lastExecJobs = execJobs;
+                lastExecTime = execTime;
+
+                long running = metrics.getCurrentJobExecuteTime();
+
+                // A job running longer than the average is a sign of slowdown even if no jobs have finished.
+                if (running > 0 && running > exec)
+                    exec = running;
+
+                if (exec >= 0) {
+                    double sample = exec + Math.max(0, metrics.getCurrentJobWaitTime());
+
+                    avg = avg < 0 ? sample : smoothing * sample + (1 - smoothing) * avg;
+                }
+            }
+
+            return Math.max(0, avg);
+        }
+    }
+}
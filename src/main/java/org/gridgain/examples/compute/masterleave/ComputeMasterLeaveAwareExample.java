@@ -24,7 +24,6 @@ package org.gridgain.examples.compute.masterleave;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCompute;
@@ -36,11 +35,9 @@ import org.apache.ignite.compute.ComputeJobMasterLeaveAware;
 import org.apache.ignite.compute.ComputeJobResult;
 import org.apache.ignite.compute.ComputeTaskSession;
 import org.apache.ignite.compute.ComputeTaskSessionFullSupport;
-import org.apache.ignite.compute.ComputeTaskSessionScope;
 import org.apache.ignite.compute.ComputeTaskSplitAdapter;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
-import org.apache.ignite.resources.IgniteInstanceResource;
 import org.apache.ignite.resources.TaskSessionResource;
 import org.apache.ignite.spi.checkpoint.cache.CacheCheckpointSpi;
 import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
@@ -51,6 +48,9 @@ import org.jetbrains.annotations.Nullable;
  * Example demonstrates usage of {@link ComputeJobMasterLeaveAware} interface, checkpoints and task sessions with
  * ComputeTaskSessionScope.GLOBAL_SCOPE.
  *
+ * Job state is saved with {@link IncrementalCheckpointer} periodically in background, so the progress survives
+ * both master leaving and a node crash with failover of the job to another node.
+ *
  * The following example is considered to be demonstrating following these steps:
  * - start a remote node using {@link ComputeLeaveAwareNodeStartup};
  * - start this examples and check that the local node (started using this example) and the remote one are executing
@@ -60,11 +60,30 @@ import org.jetbrains.annotations.Nullable;
  * remote job execution is halted;
  * - start this example one more time;
  * - logs of the remote node must contain info saying that the job continues starting from some point that was saved
- * using checkpoints.
+ * using checkpoints;
+ * - logs of every node contain job throughput measured without and with checkpointing, and checkpoint statistics.
  */
 public class ComputeMasterLeaveAwareExample {
-    /** */
-    private final static String CHECKPOINT_KEY = "checkpoint_key";
+    /** Checkpoint period in milliseconds. */
+    private static final long CHECKPOINT_PERIOD = 1000;
+
+    /** Every 10th checkpoint is a full one, the rest are deltas. */
+    private static final int FULL_CHECKPOINT_EVERY = 10;
+
+    /** Number of buckets in job state. */
+    private static final int BUCKETS = 10_000;
+
+    /** State key of the processed items counter. */
+    private static final int CNT_KEY = -1;
+
+    /** Number of items processed between checks of the stop condition. */
+    private static final int ITEMS_PER_STEP = 100;
+
+    /** Number of hashing rounds simulating processing of an item. */
+    private static final int ROUNDS_PER_ITEM = 1000;
+
+    /** Duration of the run without checkpointing, which throughput with checkpointing is compared to. */
+    private static final long BASELINE_TIME = 5000;
 
     /**
      * Executes example.
@@ -95,11 +114,6 @@ public class ComputeMasterLeaveAwareExample {
         // Overriding default checkpoints SPI
         cfg.setCheckpointSpi(checkpointSpi);
 
-        HashMap<String, Object> attrs = new HashMap<>();
-        attrs.put(CHECKPOINT_KEY, "master_node");
-
-        cfg.setUserAttributes(attrs);
-
         try (Ignite ignite = Ignition.start(cfg)) {
             if (ignite.cluster().nodes().size() < 2)
                 throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
@@ -122,7 +136,7 @@ public class ComputeMasterLeaveAwareExample {
             ArrayList<MasterLeaveAwareJob> list = new ArrayList(nodesCnt);
 
             for (int i = 0; i < nodesCnt; i++)
-                list.add(new MasterLeaveAwareJob(ttl));
+                list.add(new MasterLeaveAwareJob(i, ttl));
 
             return list;
         }
@@ -139,8 +153,8 @@ public class ComputeMasterLeaveAwareExample {
     }
 
     private static class MasterLeaveAwareJob implements ComputeJob, ComputeJobMasterLeaveAware {
-        /** Counter value. */
-        private long cnt;
+        /** Job index, identifies job checkpoints across failovers and task executions. */
+        private int idx;
 
         /** Job execution time. */
         private long ttl;
@@ -152,16 +166,14 @@ public class ComputeMasterLeaveAwareExample {
         @TaskSessionResource
         ComputeTaskSession session;
 
-        /** */
-        @IgniteInstanceResource
-        Ignite ignite;
-
         /**
          * Constructor.
          *
+         * @param idx Job index.
          * @param ttl Job execution duration.
          */
-        public MasterLeaveAwareJob(long ttl) {
+        public MasterLeaveAwareJob(int idx, long ttl) {
+            this.idx = idx;
             this.ttl = ttl;
         }
 
@@ -172,58 +184,131 @@ public class ComputeMasterLeaveAwareExample {
 
         /** {@inheritDoc} */
         @Override public Long execute() throws IgniteException {
-            Long oldCnt = session.loadCheckpoint(checkpointKey());
+            IncrementalCheckpointer<Integer, Long> state = new IncrementalCheckpointer<>(session, "job-" + idx,
+                CHECKPOINT_PERIOD, FULL_CHECKPOINT_EVERY);
 
-            long startTs = System.currentTimeMillis();
+            long cnt = 0;
+
+            if (state.restore()) {
+                Long saved = state.get(CNT_KEY);
 
-            if (oldCnt != null) {
-                cnt = oldCnt;
+                cnt = saved == null ? 0 : saved;
 
                 System.out.println("Continue calculation. Previously stored value using checkpoints: " + cnt);
             }
             else
                 System.out.println("Start calculation from scratch");
 
-            while (!forceStop && (System.currentTimeMillis() - startTs < ttl)) {
-                cnt++;
+            // Same job on a scratch state which is never checkpointed.
+            IncrementalCheckpointer<Integer, Long> scratch = new IncrementalCheckpointer<>(session,
+                "job-" + idx + "-baseline", CHECKPOINT_PERIOD, FULL_CHECKPOINT_EVERY);
+
+            long baselineTs = System.currentTimeMillis();
 
-                // Block job execution for 2 second.
+            long baseline = throughput(run(scratch, 0, BASELINE_TIME), System.currentTimeMillis() - baselineTs);
+
+            long startTs = System.currentTimeMillis();
+            long startCnt = cnt;
+
+            state.start();
+
+            try {
+                cnt = run(state, cnt, ttl);
+            }
+            finally {
                 try {
-                    Thread.sleep(2000);
+                    state.close();
                 }
                 catch (InterruptedException e) {
-                    // Ignore
+                    Thread.currentThread().interrupt();
                 }
-
-                System.out.println("Cnt: " + cnt);
             }
 
+            long duration = System.currentTimeMillis() - startTs;
+
             if (forceStop) {
                 System.err.println("Stopped job execution");
 
-                // Using the global scope to preserve the state across task executions.
-                session.saveCheckpoint(checkpointKey(), cnt, ComputeTaskSessionScope.GLOBAL_SCOPE, 0);
+                // Save the latest changes, the rest has been saved in background.
+                state.checkpoint();
             }
             else
-                session.removeCheckpoint(checkpointKey());
+                state.removeCheckpoints();
+
+            long checkpointed = throughput(cnt - startCnt, duration);
+
+            System.out.println("Job throughput, items per second [withoutCheckpoints=" + baseline +
+                ", withCheckpoints=" + checkpointed + ", overhead=" + String.format("%.1f%%", baseline == 0 ? 0 :
+                (baseline - checkpointed) * 100.0 / baseline) + ']');
+            System.out.println(state.statistics(duration));
 
             return cnt;
         }
 
-        /** {@inheritDoc} */
-        @Override public void onMasterNodeLeft(ComputeTaskSession session) throws IgniteException {
-            System.err.println("Master left topology. Stopping the calculation...");
+        /**
+         * Processes items until the given time passes or the master leaves.
+         *
+         * @param state State.
+         * @param cnt Number of items processed before.
+         * @param time Time to run in milliseconds.
+         * @return Number of items processed, including the ones processed before.
+         */
+        private long run(IncrementalCheckpointer<Integer, Long> state, long cnt, long time) {
+            long startTs = System.currentTimeMillis();
+            long lastPrintTs = startTs;
 
-            forceStop = true;
+            while (!forceStop && (System.currentTimeMillis() - startTs < time)) {
+                for (int i = 0; i < ITEMS_PER_STEP; i++) {
+                    cnt++;
+
+                    // Each processed item updates a small part of a large state.
+                    int bucket = (int)(process(cnt) % BUCKETS);
+
+                    Long bucketCnt = state.get(bucket);
+
+                    state.put(bucket, bucketCnt == null ? 1 : bucketCnt + 1);
+                    state.put(CNT_KEY, cnt);
+                }
+
+                if (System.currentTimeMillis() - lastPrintTs >= 2000) {
+                    lastPrintTs = System.currentTimeMillis();
+
+                    System.out.println("Cnt: " + cnt);
+                }
+            }
+
+            return cnt;
         }
 
         /**
-         * Returns checkpoint key.
+         * Simulates processing of an item with a fixed amount of work.
          *
-         * @return Checkpoint key to use.
+         * @param item Item.
+         * @return Non-negative processing result.
          */
-        private String checkpointKey() {
-            return (String)ignite.configuration().getUserAttributes().get(CHECKPOINT_KEY);
+        private static long process(long item) {
+            long h = item;
+
+            for (int i = 0; i < ROUNDS_PER_ITEM; i++)
+                h = (h ^ (h >>> 29)) * 0x9E3779B97F4A7C15L;
+
+            return h >>> 1;
+        }
+
+        /**
+         * @param items Number of processed items.
+         * @param time Time in milliseconds.
+         * @return Items per second.
+         */
+        private static long throughput(long items, long time) {
+            return time == 0 ? 0 : items * 1000 / time;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void onMasterNodeLeft(ComputeTaskSession session) throws IgniteException {
+            System.err.println("Master left topology. Stopping the calculation...");
+
+            forceStop = true;
         }
     }
 }
@@ -0,0 +1,413 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.masterleave;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.compute.ComputeTaskSession;
+import org.apache.ignite.compute.ComputeTaskSessionScope;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Key-value state of a long-running job which is periodically checkpointed in background.
+ * <p>
+ * The job updates the state with {@link #put(Object, Object)} and {@link #remove(Object)}, which only mark keys
+ * as changed. A background thread takes a copy of the changed entries every {@code period} milliseconds and saves
+ * it with {@link ComputeTaskSession#saveCheckpoint(String, Object, ComputeTaskSessionScope, long)}, so the job
+ * thread is blocked only while the copy is taken. Every {@code fullEvery}-th checkpoint contains the whole state,
+ * the others contain only entries changed since the previous checkpoint.
+ * <p>
+ * Checkpoints are saved in {@link ComputeTaskSessionScope#GLOBAL_SCOPE}, so {@link #restore()} finds them after
+ * failover of the job to another node as well as in a new execution of the task.
+ */
+public class IncrementalCheckpointer<K, V> implements AutoCloseable {
+    /** Task session. */
+    private final ComputeTaskSession ses;
+
+    /** Checkpoint key prefix. */
+    private final String key;
+
+    /** Checkpoint period in milliseconds. */
+    private final long period;
+
+    /** Number of checkpoints between full ones. */
+    private final int fullEvery;
+
+    /** State. */
+    private final Map<K, V> state = new HashMap<>();
+
+    /** Keys updated since the last checkpoint. */
+    private final Set<K> updated = new HashSet<>();
+
+    /** Keys removed since the last checkpoint. */
+    private final Set<K> removed = new HashSet<>();
+
+    /** Sequence number of the last checkpoint. */
+    private long seq;
+
+    /** Sequence number of the last full checkpoint. */
+    private long fullSeq;
+
+    /** Mutex serializing checkpoints. */
+    private final Object saveMux = new Object();
+
+    /** Background checkpointing thread. */
+    private ScheduledExecutorService exec;
+
+    /** Number of full checkpoints. */
+    private long fullCnt;
+
+    /** Number of delta checkpoints. */
+    private long deltaCnt;
+
+    /** Total time the state was locked to take checkpoint copies, in nanoseconds. */
+    private long captureTime;
+
+    /** Total time spent saving checkpoints, in nanoseconds. */
+    private long saveTime;
+
+    /**
+     * @param ses Task session.
+     * @param key Checkpoint key prefix, must be unique for the job within the task.
+     * @param period Checkpoint period in milliseconds.
+     * @param fullEvery Number of checkpoints between full ones.
+     */
+    public IncrementalCheckpointer(ComputeTaskSession ses, String key, long period, int fullEvery) {
+        if (period <= 0 || fullEvery <= 0)
+            throw new IllegalArgumentException("Invalid checkpoint configuration [period=" + period +
+                ", fullEvery=" + fullEvery + ']');
+
+        this.ses = ses;
+        this.key = key;
+        this.period = period;
+        this.fullEvery = fullEvery;
+    }
+
+    /**
+     * Loads the latest full checkpoint and all delta checkpoints taken after it.
+     *
+     * @return {@code True} if state has been restored, {@code false} if there are no checkpoints.
+     */
+    public synchronized boolean restore() {
+        Full<K, V> full = ses.loadCheckpoint(fullKey());
+
+        if (full == null)
+            return false;
+
+        state.clear();
+        state.putAll(full.entries);
+
+        seq = fullSeq = full.seq;
+
+        for (Delta<K, V> delta = ses.loadCheckpoint(deltaKey(seq + 1)); delta != null;
+            delta = ses.loadCheckpoint(deltaKey(seq + 1))) {
+            state.putAll(delta.updated);
+
+            for (K k : delta.removed)
+                state.remove(k);
+
+            seq = delta.seq;
+        }
+
+        return true;
+    }
+
+    /**
+     * Starts periodic checkpoints.
+     */
+    public synchronized void start() {
+        if (exec != null)
+            throw new IllegalStateException("Checkpointer is already started: " + key);
+
+        exec = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "checkpointer-" + key);
+
+                t.setDaemon(true);
+
+                return t;
+            }
+        });
+
+        exec.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                try {
+                    checkpoint();
+                }
+                catch (IgniteException e) {
+                    // Next checkpoint will include all the changes, since they are not reset on failure.
+                    System.err.println("Failed to save checkpoint [key=" + key + ", err=" + e + ']');
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param k Key.
+     * @return Value.
+     */
+    @Nullable public synchronized V get(K k) {
+        return state.get(k);
+    }
+
+    /**
+     * @param k Key.
+     * @param v Value.
+     */
+    public synchronized void put(K k, V v) {
+        state.put(k, v);
+
+        updated.add(k);
+        removed.remove(k);
+    }
+
+    /**
+     * @param k Key.
+     */
+    public synchronized void remove(K k) {
+        state.remove(k);
+
+        updated.remove(k);
+        removed.add(k);
+    }
+
+    /**
+     * Saves checkpoint of the changes made since the previous one. Called periodically in background,
+     * and can be called by the job directly, e.g. before it is stopped.
+     */
+    public void checkpoint() {
+        synchronized (saveMux) {
+            Object cp;
+            String cpKey;
+            long cpSeq;
+            long prevFullSeq;
+
+            Set<K> capturedUpdated;
+            Set<K> capturedRemoved;
+
+            synchronized (this) {
+                if (updated.isEmpty() && removed.isEmpty() && seq > 0)
+                    return;
+
+                long start = System.nanoTime();
+
+                cpSeq = seq + 1;
+                prevFullSeq = fullSeq;
+
+                if (fullSeq == 0 || cpSeq - fullSeq >= fullEvery) {
+                    cp = new Full<>(cpSeq, new HashMap<>(state));
+                    cpKey = fullKey();
+                }
+                else {
+                    Map<K, V> upd = new HashMap<>();
+
+                    for (K k : updated)
+                        upd.put(k, state.get(k));
+
+                    cp = new Delta<>(cpSeq, upd, new HashSet<>(removed));
+                    cpKey = deltaKey(cpSeq);
+                }
+
+                capturedUpdated = new HashSet<>(updated);
+                capturedRemoved = new HashSet<>(removed);
+
+                updated.clear();
+                removed.clear();
+
+                captureTime += System.nanoTime() - start;
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                // Saved outside of the state lock, so the job is not blocked by serialization and network.
+                ses.saveCheckpoint(cpKey, cp, ComputeTaskSessionScope.GLOBAL_SCOPE, 0);
+            }
+            catch (IgniteException e) {
+                synchronized (this) {
+                    // Keep changes for the next checkpoint unless they have been overridden meanwhile.
+                    for (K k : capturedUpdated) {
+                        if (!removed.contains(k))
+                            updated.add(k);
+                    }
+
+                    for (K k : capturedRemoved) {
+                        if (!updated.contains(k))
+                            removed.add(k);
+                    }
+                }
+
+                throw e;
+            }
+
+            boolean full = cp instanceof Full;
+
+            synchronized (this) {
+                seq = cpSeq;
+
+                if (full) {
+                    fullSeq = cpSeq;
+                    fullCnt++;
+                }
+                else
+                    deltaCnt++;
+
+                saveTime += System.nanoTime() - start;
+            }
+
+            // Deltas preceding the new full checkpoint are not needed anymore.
+            if (full) {
+                for (long s = prevFullSeq + 1; s < cpSeq; s++)
+                    ses.removeCheckpoint(deltaKey(s));
+            }
+        }
+    }
+
+    /**
+     * Removes all checkpoints, should be called once the job is completed.
+     */
+    public void removeCheckpoints() {
+        long last;
+        long full;
+
+        synchronized (this) {
+            last = seq;
+            full = fullSeq;
+        }
+
+        ses.removeCheckpoint(fullKey());
+
+        for (long s = full + 1; s <= last; s++)
+            ses.removeCheckpoint(deltaKey(s));
+    }
+
+    /**
+     * Stops periodic checkpoints, waiting for the one in progress.
+     */
+    @Override public void close() throws InterruptedException {
+        ScheduledExecutorService exec;
+
+        synchronized (this) {
+            exec = this.exec;
+
+            this.exec = null;
+        }
+
+        if (exec != null) {
+            exec.shutdown();
+            exec.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns checkpoint statistics, including the share of job time during which the state was locked
+     * for taking checkpoint copies. This share is a lower bound of the overhead only, since saving checkpoints
+     * also takes CPU and memory bandwidth from the job; compare job throughput with and without checkpointing
+     * to measure the overhead.
+     *
+     * @param jobTime Job execution time in milliseconds.
+     * @return Statistics.
+     */
+    public synchronized String statistics(long jobTime) {
+        return "Checkpoint statistics [key=" + key +
+            ", full=" + fullCnt +
+            ", delta=" + deltaCnt +
+            ", captureTimeMs=" + TimeUnit.NANOSECONDS.toMillis(captureTime) +
+            ", saveTimeMs=" + TimeUnit.NANOSECONDS.toMillis(saveTime) +
+            ", lockedShare=" + String.format("%.3f%%", jobTime == 0 ? 0 :
+                TimeUnit.NANOSECONDS.toMillis(captureTime) * 100.0 / jobTime) + ']';
+    }
+
+    /**
+     * @return Key of full checkpoint.
+     */
+    private String fullKey() {
+        return key + "-full";
+    }
+
+    /**
+     * @param seq Sequence number.
+     * @return Key of delta checkpoint.
+     */
+    private String deltaKey(long seq) {
+        return key + "-delta-" + seq;
+    }
+
+    /**
+     * Full checkpoint.
+     */
+    private static class Full<K, V> implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Sequence number. */
+        private final long seq;
+
+        /** All entries. */
+        private final Map<K, V> entries;
+
+        /**
+         * @param seq Sequence number.
+         * @param entries All entries.
+         */
+        private Full(long seq, Map<K, V> entries) {
+            this.seq = seq;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Delta checkpoint.
+     */
+    private static class Delta<K, V> implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Sequence number. */
+        private final long seq;
+
+        /** Updated entries. */
+        private final Map<K, V> updated;
+
+        /** Removed keys. */
+        private final Set<K> removed;
+
+        /**
+         * @param seq Sequence number.
+         * @param updated Updated entries.
+         * @param removed Removed keys.
+         */
+        private Delta(long seq, Map<K, V> updated, Set<K> removed) {
+            this.seq = seq;
+            this.updated = updated;
+            this.removed = removed;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.compute.ComputeJob;
+import org.apache.ignite.compute.ComputeJobContext;
+import org.apache.ignite.compute.ComputeJobResult;
+import org.apache.ignite.compute.ComputeTaskAdapter;
+import org.apache.ignite.compute.ComputeTaskSession;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.apache.ignite.resources.JobContextResource;
+import org.apache.ignite.resources.TaskSessionResource;
+import org.gridgain.examples.ExampleNodeStartup;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This example synchronizes hundreds of jobs of a single task with {@link TaskLatch} instead of waiting for a
+ * {@link ComputeTaskSession} attribute as {@link ComputeJobsDistributedSynchronizationExample} does.
+ * <p>
+ * Waiting jobs are suspended and do not hold compute threads, so the number of jobs per node may exceed the size
+ * of the public thread pool. The release is propagated over a tree of nodes, so its latency grows logarithmically
+ * with the cluster size.
+ * <p>
+ * To demonstrate the example start several remote nodes before using {@link ExampleNodeStartup}.
+ */
+public class ComputeTaskLatchExample {
+    /** Number of jobs mapped to every node. */
+    private static final int JOBS_PER_NODE = 200;
+
+    /** Time the leader works before releasing the latch. */
+    private static final long LEADER_WORK_TIME = 1000;
+
+    /** Wait timeout. */
+    private static final long TIMEOUT = 30_000;
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            if (ignite.cluster().nodes().size() < 2)
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            String res = ignite.compute().execute(new LatchTask(), null);
+
+            System.out.println(res);
+        }
+    }
+
+    /**
+     * Maps {@link #JOBS_PER_NODE} jobs to every node. The very first job is the leader.
+     */
+    private static class LatchTask extends ComputeTaskAdapter<Object, String> {
+        /** */
+        @TaskSessionResource
+        private ComputeTaskSession session;
+
+        /** */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /** */
+        private TaskLatch latch;
+
+        /** */
+        private UUID lsnrId;
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Map<? extends ComputeJob, ClusterNode> map(List<ClusterNode> list,
+            Object arg) throws IgniteException {
+            List<UUID> nodeIds = new ArrayList<>(list.size());
+
+            for (ClusterNode node : list)
+                nodeIds.add(node.id());
+
+            latch = new TaskLatch(session, "leader", nodeIds);
+
+            lsnrId = latch.listen(ignite);
+
+            Map<LatchJob, ClusterNode> jobs = new HashMap<>();
+
+            int idx = 0;
+
+            for (ClusterNode node : list) {
+                for (int i = 0; i < JOBS_PER_NODE; i++, idx++)
+                    jobs.put(new LatchJob(latch, idx == 0), node);
+            }
+
+            System.out.println("Mapped jobs to nodes [totalCnt=" + jobs.size() + ", nodes=" + list.size() + ']');
+
+            return jobs;
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public String reduce(List<ComputeJobResult> list) throws IgniteException {
+            latch.close(ignite, lsnrId);
+
+            long releaseTime = 0;
+            long maxResumeTime = 0;
+
+            for (ComputeJobResult res : list) {
+                long time = res.getData();
+
+                if (time < 0)
+                    releaseTime = -time;
+                else
+                    maxResumeTime = Math.max(maxResumeTime, time);
+            }
+
+            return "All jobs released [jobs=" + list.size() +
+                ", lastResumeAfterRelease=" + (maxResumeTime - releaseTime) + "ms]";
+        }
+    }
+
+    /**
+     * Leader job works for a while and releases the latch, other jobs wait for the release. Every job returns the
+     * time it proceeded at; the leader returns negated release time. Note that the times are taken on different
+     * nodes, so the measured release latency includes clock difference.
+     */
+    private static class LatchJob implements ComputeJob {
+        /** */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /** */
+        @JobContextResource
+        private ComputeJobContext jobCtx;
+
+        /** */
+        private final TaskLatch latch;
+
+        /** */
+        private final boolean leader;
+
+        /** Whether the job has been suspended already. */
+        private boolean suspended;
+
+        /**
+         * @param latch Latch.
+         * @param leader Leader flag.
+         */
+        LatchJob(TaskLatch latch, boolean leader) {
+            this.latch = latch;
+            this.leader = leader;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void cancel() {
+            // No-op.
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object execute() throws IgniteException {
+            if (leader) {
+                try {
+                    Thread.sleep(LEADER_WORK_TIME);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new IgniteException("Job execution failed", e);
+                }
+
+                System.out.println("Leader processed the job, releasing waiting jobs ...");
+
+                long time = System.currentTimeMillis();
+
+                latch.release(ignite);
+
+                return -time;
+            }
+
+            if (!suspended) {
+                suspended = true;
+
+                // Release thread until the leader finishes.
+                if (!latch.await(ignite, jobCtx, TIMEOUT))
+                    return null;
+            }
+
+            if (!latch.isReleased(ignite))
+                throw new IgniteException("Timed out waiting for leader.");
+
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.compute.session;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.cluster.ClusterGroup;
+import org.apache.ignite.compute.ComputeJobContext;
+import org.apache.ignite.compute.ComputeTaskSession;
+import org.apache.ignite.lang.IgniteBiPredicate;
+import org.apache.ignite.lang.IgniteRunnable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * One-shot latch shared by the jobs of a task, an alternative to waiting for a session attribute.
+ * <p>
+ * The latch is released by a single {@link #release(Ignite)} call. The release message is propagated over
+ * a binary tree of the task nodes, where every node forwards it to two children, so releasing all nodes costs
+ * O(log N) message hops instead of N messages sent by one node. Jobs on the same node are released locally.
+ * <p>
+ * Waiting jobs are suspended with {@link ComputeJobContext#holdcc()} and resumed with
+ * {@link ComputeJobContext#callcc()} on release or timeout, so they do not occupy compute threads.
+ * <p>
+ * Usage:
+ * <ul>
+ *     <li>task creates the latch in {@code map(...)} and calls {@link #listen(Ignite)} before returning jobs;</li>
+ *     <li>jobs call {@link #await(Ignite, ComputeJobContext, long)} and return {@code null} if it returns
+ *     {@code false}, then check {@link #isReleased(Ignite)} once resumed;</li>
+ *     <li>task calls {@link #close(Ignite, UUID)} in {@code reduce(...)}.</li>
+ * </ul>
+ */
+public class TaskLatch implements Serializable {
+    /** */
+    private static final long serialVersionUID = 0L;
+
+    /** Node-local map key of the latch states. */
+    private static final String STATES_KEY = TaskLatch.class.getName() + "-states";
+
+    /** Node-local map key of the timeout timer. */
+    private static final String TIMER_KEY = TaskLatch.class.getName() + "-timer";
+
+    /** Latch ID, unique across task executions. */
+    private final String id;
+
+    /** IDs of the task nodes. */
+    private final List<UUID> nodeIds;
+
+    /**
+     * @param ses Task session.
+     * @param name Latch name, unique within the task.
+     * @param nodeIds IDs of the nodes jobs are mapped to.
+     */
+    public TaskLatch(ComputeTaskSession ses, String name, Collection<UUID> nodeIds) {
+        id = ses.getId() + "-" + name;
+
+        this.nodeIds = new ArrayList<>(nodeIds);
+    }
+
+    /**
+     * Registers release listeners on all task nodes. Must be called by the task before jobs are started.
+     *
+     * @param ignite Ignite instance.
+     * @return Listener ID to pass to {@link #close(Ignite, UUID)}.
+     */
+    public UUID listen(Ignite ignite) {
+        return ignite.message(nodes(ignite)).remoteListen(topic(), new ReleaseListener());
+    }
+
+    /**
+     * Unregisters release listeners and removes latch state from all task nodes.
+     *
+     * @param ignite Ignite instance.
+     * @param lsnrId Listener ID.
+     */
+    public void close(Ignite ignite, UUID lsnrId) {
+        ClusterGroup nodes = nodes(ignite);
+
+        ignite.message(nodes).stopRemoteListen(lsnrId);
+
+        ignite.compute(nodes).broadcast(new CleanupRunnable(id));
+    }
+
+    /**
+     * Releases the latch on all task nodes.
+     *
+     * @param ignite Ignite instance.
+     */
+    public void release(Ignite ignite) {
+        UUID locId = ignite.cluster().localNode().id();
+
+        // Local node becomes the root of the notification tree.
+        List<UUID> tree = new ArrayList<>(nodeIds.size());
+
+        tree.add(locId);
+
+        for (UUID nodeId : nodeIds) {
+            if (!nodeId.equals(locId))
+                tree.add(nodeId);
+        }
+
+        Release msg = new Release(tree);
+
+        state(ignite, id).release();
+
+        forward(ignite, msg, 0);
+    }
+
+    /**
+     * Suspends the job until the latch is released or timeout expires.
+     *
+     * @param ignite Ignite instance.
+     * @param jobCtx Job context.
+     * @param timeout Timeout in milliseconds, {@code 0} to wait forever.
+     * @return {@code True} if the latch is already released and the job may proceed, {@code false} if the job has
+     *      been suspended and must return {@code null} from its execution method.
+     */
+    public boolean await(Ignite ignite, final ComputeJobContext jobCtx, long timeout) {
+        final State state = state(ignite, id);
+
+        if (!state.suspend(jobCtx))
+            return true;
+
+        if (timeout > 0) {
+            timer(ignite).schedule(new Runnable() {
+                @Override public void run() {
+                    if (state.cancel(jobCtx))
+                        jobCtx.callcc();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        return false;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return {@code True} if the latch has been released on this node.
+     */
+    public boolean isReleased(Ignite ignite) {
+        return state(ignite, id).isReleased();
+    }
+
+    /**
+     * @return Message topic of this latch.
+     */
+    private String topic() {
+        return "TASK_LATCH-" + id;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Task nodes.
+     */
+    private ClusterGroup nodes(Ignite ignite) {
+        return ignite.cluster().forNodeIds(nodeIds);
+    }
+
+    /**
+     * Sends release message to children of the node at the given position of the tree. Children that have left
+     * are skipped and their children are notified instead.
+     *
+     * @param ignite Ignite instance.
+     * @param msg Message.
+     * @param idx Position of the parent node in the tree.
+     */
+    private void forward(Ignite ignite, Release msg, int idx) {
+        for (int child = 2 * idx + 1; child <= 2 * idx + 2 && child < msg.tree.size(); child++) {
+            try {
+                ignite.message(ignite.cluster().forNodeId(msg.tree.get(child))).send(topic(), msg);
+            }
+            catch (IgniteException ignored) {
+                forward(ignite, msg, child);
+            }
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param id Latch ID.
+     * @return Node-local latch state.
+     */
+    private static State state(Ignite ignite, String id) {
+        ConcurrentMap<String, ConcurrentMap<String, State>> locMap = ignite.cluster().nodeLocalMap();
+
+        ConcurrentMap<String, State> states = locMap.get(STATES_KEY);
+
+        if (states == null) {
+            ConcurrentMap<String, State> old = locMap.putIfAbsent(STATES_KEY,
+                states = new ConcurrentHashMap<String, State>());
+
+            if (old != null)
+                states = old;
+        }
+
+        State state = states.get(id);
+
+        if (state == null) {
+            State old = states.putIfAbsent(id, state = new State());
+
+            if (old != null)
+                state = old;
+        }
+
+        return state;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Node-local timer.
+     */
+    private static ScheduledExecutorService timer(Ignite ignite) {
+        ConcurrentMap<String, ScheduledExecutorService> locMap = ignite.cluster().nodeLocalMap();
+
+        ScheduledExecutorService timer = locMap.get(TIMER_KEY);
+
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "task-latch-timer");
+
+                    t.setDaemon(true);
+
+                    return t;
+                }
+            });
+
+            ScheduledExecutorService old = locMap.putIfAbsent(TIMER_KEY, timer);
+
+            if (old != null) {
+                timer.shutdown();
+
+                timer = old;
+            }
+        }
+
+        return timer;
+    }
+
+    /**
+     * Node-local latch state.
+     */
+    private static class State {
+        /** Released flag. */
+        private boolean released;
+
+        /** Suspended jobs. */
+        private List<ComputeJobContext> waiters = new ArrayList<>();
+
+        /**
+         * @param jobCtx Job context.
+         * @return {@code False} if latch is released, {@code true} if the job has been suspended.
+         */
+        private synchronized boolean suspend(ComputeJobContext jobCtx) {
+            if (released)
+                return false;
+
+            jobCtx.holdcc();
+
+            waiters.add(jobCtx);
+
+            return true;
+        }
+
+        /**
+         * @param jobCtx Job context.
+         * @return {@code True} if the job was still waiting and must be resumed by the caller.
+         */
+        private synchronized boolean cancel(ComputeJobContext jobCtx) {
+            return waiters != null && waiters.remove(jobCtx);
+        }
+
+        /**
+         * Releases the latch and resumes suspended jobs.
+         */
+        private void release() {
+            List<ComputeJobContext> toResume;
+
+            synchronized (this) {
+                if (released)
+                    return;
+
+                released = true;
+
+                toResume = waiters;
+
+                waiters = null;
+            }
+
+            for (ComputeJobContext jobCtx : toResume)
+                jobCtx.callcc();
+        }
+
+        /**
+         * @return Released flag.
+         */
+        private synchronized boolean isReleased() {
+            return released;
+        }
+    }
+
+    /**
+     * Release message.
+     */
+    private static class Release implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Notification tree, children of the node at position {@code i} are at {@code 2i + 1} and {@code 2i + 2}. */
+        private final List<UUID> tree;
+
+        /**
+         * @param tree Notification tree.
+         */
+        private Release(List<UUID> tree) {
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * Listener releasing the latch on a node and forwarding the message down the tree.
+     */
+    private class ReleaseListener implements IgniteBiPredicate<UUID, Release> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /** {@inheritDoc} */
+        @Override public boolean apply(UUID nodeId, Release msg) {
+            state(ignite, id).release();
+
+            int idx = msg.tree.indexOf(ignite.cluster().localNode().id());
+
+            if (idx >= 0)
+                forward(ignite, msg, idx);
+
+            return true;
+        }
+    }
+
+    /**
+     * Removes latch state from a node.
+     */
+    private static class CleanupRunnable implements IgniteRunnable {
+        /** Latch ID. */
+        private final String id;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param id Latch ID.
+         */
+        private CleanupRunnable(String id) {
+            this.id = id;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            ConcurrentMap<String, ConcurrentMap<String, State>> locMap = ignite.cluster().nodeLocalMap();
+
+            ConcurrentMap<String, State> states = locMap.get(STATES_KEY);
+
+            if (states != null)
+                states.remove(id);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.affinity;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cache.*;
+import org.apache.ignite.cache.affinity.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.gridgain.examples.nodelocal.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Executes closures collocated with many keys at once. Keys are grouped by primary node and partition and every node
+ * receives a single job, which processes its partitions in parallel and returns results of all its keys.
+ * <p>
+ * Before and after processing a partition the job checks that the local node is still primary for it. If the
+ * partition has moved, results of its keys are discarded and the keys are remapped and executed again, up to
+ * the given number of attempts. Keys of a node that failed or left are retried the same way. Therefore a closure
+ * may be executed more than once for the same key and should be idempotent.
+ */
+public class AffinityBatchCompute {
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Maximum number of attempts per key. */
+    private final int maxAttempts;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Cache name.
+     * @param maxAttempts Maximum number of attempts per key.
+     */
+    public AffinityBatchCompute(Ignite ignite, String cacheName, int maxAttempts) {
+        this.ignite = ignite;
+        this.cacheName = cacheName;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Applies closure to every key on its primary node.
+     *
+     * @param keys Keys.
+     * @param clo Closure receiving key and its local value ({@code null} if absent).
+     * @return Results by key.
+     */
+    public <K, V, R> Map<K, R> forEachKey(Collection<K> keys, KeyClosure<K, V, R> clo) {
+        return forEachPartition(keys, new KeyClosureAdapter<>(clo));
+    }
+
+    /**
+     * Applies closure to keys of every partition on its primary node.
+     *
+     * @param keys Keys.
+     * @param clo Closure receiving partition and local entries of its keys.
+     * @return Results by key.
+     */
+    public <K, V, R> Map<K, R> forEachPartition(Collection<K> keys, PartitionClosure<K, V, R> clo) {
+        Map<K, R> res = new HashMap<>(keys.size());
+
+        Collection<K> remaining = keys;
+
+        for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+            if (attempt > maxAttempts)
+                throw new IgniteException("Failed to process keys in " + maxAttempts + " attempts: " + remaining);
+
+            remaining = executeOnce(remaining, clo, res);
+        }
+
+        return res;
+    }
+
+    /**
+     * Maps keys to nodes and executes one job per node.
+     *
+     * @param keys Keys.
+     * @param clo Closure.
+     * @param res Results to add to.
+     * @return Keys to retry.
+     */
+    private <K, V, R> Collection<K> executeOnce(Collection<K> keys, PartitionClosure<K, V, R> clo, Map<K, R> res) {
+        Affinity<K> aff = ignite.affinity(cacheName);
+
+        Map<ClusterNode, Map<Integer, List<K>>> mapping = new HashMap<>();
+
+        for (K key : keys) {
+            int part = aff.partition(key);
+
+            ClusterNode node = aff.mapPartitionToNode(part);
+
+            if (node == null)
+                throw new IgniteException("No primary node for partition: " + part);
+
+            Map<Integer, List<K>> parts = mapping.get(node);
+
+            if (parts == null)
+                mapping.put(node, parts = new HashMap<>());
+
+            List<K> partKeys = parts.get(part);
+
+            if (partKeys == null)
+                parts.put(part, partKeys = new ArrayList<>());
+
+            partKeys.add(key);
+        }
+
+        Map<ClusterNode, IgniteFuture<NodeResult<K, R>>> futs = new HashMap<>();
+
+        for (Map.Entry<ClusterNode, Map<Integer, List<K>>> e : mapping.entrySet()) {
+            IgniteCompute compute = ignite.compute(ignite.cluster().forNode(e.getKey())).withAsync();
+
+            compute.call(new NodeJob<>(cacheName, e.getValue(), clo));
+
+            futs.put(e.getKey(), compute.<NodeResult<K, R>>future());
+        }
+
+        Collection<K> retry = new ArrayList<>();
+
+        for (Map.Entry<ClusterNode, IgniteFuture<NodeResult<K, R>>> e : futs.entrySet()) {
+            try {
+                NodeResult<K, R> nodeRes = e.getValue().get();
+
+                res.putAll(nodeRes.results);
+
+                retry.addAll(nodeRes.moved);
+            }
+            catch (ClusterTopologyException ignored) {
+                // Node left, remap all its keys.
+                for (List<K> partKeys : mapping.get(e.getKey()).values())
+                    retry.addAll(partKeys);
+            }
+        }
+
+        return retry;
+    }
+
+    /**
+     * Closure applied to a single key.
+     */
+    public interface KeyClosure<K, V, R> extends Serializable {
+        /**
+         * @param key Key.
+         * @param val Local value of the key, {@code null} if absent.
+         * @return Result.
+         */
+        R apply(K key, V val);
+    }
+
+    /**
+     * Closure applied to keys of a partition.
+     */
+    public interface PartitionClosure<K, V, R> extends Serializable {
+        /**
+         * @param part Partition.
+         * @param entries Local entries of the keys, values of absent keys are {@code null}.
+         * @return Results by key.
+         */
+        Map<K, R> apply(int part, Map<K, V> entries);
+    }
+
+    /**
+     * Applies key closure to every key of a partition.
+     */
+    private static class KeyClosureAdapter<K, V, R> implements PartitionClosure<K, V, R> {
+        /** Key closure. */
+        private final KeyClosure<K, V, R> clo;
+
+        /**
+         * @param clo Key closure.
+         */
+        KeyClosureAdapter(KeyClosure<K, V, R> clo) {
+            this.clo = clo;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Map<K, R> apply(int part, Map<K, V> entries) {
+            Map<K, R> res = new HashMap<>(entries.size());
+
+            for (Map.Entry<K, V> e : entries.entrySet())
+                res.put(e.getKey(), clo.apply(e.getKey(), e.getValue()));
+
+            return res;
+        }
+    }
+
+    /**
+     * Results of a node job.
+     */
+    private static class NodeResult<K, R> implements Serializable {
+        /** Results by key. */
+        private final Map<K, R> results = new HashMap<>();
+
+        /** Keys of partitions that are not primary on the node. */
+        private final Collection<K> moved = new ArrayList<>();
+    }
+
+    /**
+     * Job processing partitions of a node in parallel.
+     */
+    private static class NodeJob<K, V, R> implements IgniteCallable<NodeResult<K, R>> {
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Keys by partition. */
+        private final Map<Integer, List<K>> parts;
+
+        /** Closure. */
+        private final PartitionClosure<K, V, R> clo;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param cacheName Cache name.
+         * @param parts Keys by partition.
+         * @param clo Closure.
+         */
+        NodeJob(String cacheName, Map<Integer, List<K>> parts, PartitionClosure<K, V, R> clo) {
+            this.cacheName = cacheName;
+            this.parts = parts;
+            this.clo = clo;
+        }
+
+        /** {@inheritDoc} */
+        @Override public NodeResult<K, R> call() throws Exception {
+            final IgniteCache<K, V> cache = ignite.cache(cacheName);
+            final Affinity<K> aff = ignite.affinity(cacheName);
+            final ClusterNode locNode = ignite.cluster().localNode();
+
+            Map<Integer, Future<Map<K, R>>> futs = new HashMap<>();
+
+            ForkJoinPool pool = NodeForkJoinPool.get(ignite);
+
+            for (final Map.Entry<Integer, List<K>> e : parts.entrySet()) {
+                futs.put(e.getKey(), pool.submit(new Callable<Map<K, R>>() {
+                    @Override public Map<K, R> call() {
+                        int part = e.getKey();
+
+                        if (!aff.isPrimary(locNode, e.getValue().get(0)))
+                            return null;
+
+                        Map<K, V> entries = new HashMap<>();
+
+                        for (K key : e.getValue())
+                            entries.put(key, cache.localPeek(key, CachePeekMode.PRIMARY));
+
+                        Map<K, R> res = clo.apply(part, entries);
+
+                        // Results are valid only if the partition stayed on this node.
+                        return aff.isPrimary(locNode, e.getValue().get(0)) ? res : null;
+                    }
+                }));
+            }
+
+            NodeResult<K, R> res = new NodeResult<>();
+
+            for (Map.Entry<Integer, Future<Map<K, R>>> e : futs.entrySet()) {
+                Map<K, R> partRes = e.getValue().get();
+
+                if (partRes != null)
+                    res.results.putAll(partRes);
+                else
+                    res.moved.addAll(parts.get(e.getKey()));
+            }
+
+            return res;
+        }
+    }
+}
@@ -64,6 +64,9 @@ public final class CacheAffinityExample {
 
                 // Co-locates jobs with data using Grid.mapKeysToNodes(...) method.
                 visitUsingMapKeysToNodes();
+
+                // Co-locates jobs with data sending one job per node with AffinityBatchCompute.
+                visitUsingAffinityBatch();
             }
         }
     }
@@ -134,4 +137,32 @@ public final class CacheAffinityExample {
             }
         }
     }
+
+    /**
+     * Collocates jobs with keys they need to work on using {@link AffinityBatchCompute}. Like
+     * {@code visitUsingMapKeysToNodes()} it sends a single job per node, processes partitions of the node in
+     * parallel, collects results of all keys and retries keys which partitions moved during execution.
+     */
+    private static void visitUsingAffinityBatch() {
+        Ignite ignite = Ignition.ignite();
+
+        Collection<Integer> keys = new ArrayList<>(KEY_CNT);
+
+        for (int i = 0; i < KEY_CNT; i++)
+            keys.add(i);
+
+        AffinityBatchCompute compute = new AffinityBatchCompute(ignite, CACHE_NAME, 3);
+
+        Map<Integer, Integer> lengths = compute.forEachKey(keys,
+            new AffinityBatchCompute.KeyClosure<Integer, String, Integer>() {
+                @Override public Integer apply(Integer key, String val) {
+                    // Value should never be 'null' as we are co-located with node that has a given key.
+                    System.out.println("Co-located using AffinityBatchCompute [key= " + key + ", value=" + val + ']');
+
+                    return val == null ? -1 : val.length();
+                }
+            });
+
+        System.out.println(">>> Value lengths: " + lengths);
+    }
 }
@@ -0,0 +1,266 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+import org.apache.ignite.configuration.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Distributed queue that moves items in chunks. Every element of the underlying {@link IgniteQueue} is a chunk of up
+ * to {@code chunkSize} items, so a single transactional queue update transfers a whole chunk instead of one item.
+ * <p>
+ * Producers either put collections with {@link #putAll(Collection)}, or put single items with {@link #put(Object)},
+ * which are buffered locally until a chunk is full or {@link #flush()} is called. Consumers take items with
+ * {@link #drainTo(Collection, int)} or {@link #take(Collection, int)}. A chunk is always taken from the queue as a
+ * whole; items exceeding the requested number are kept by this instance and returned by subsequent calls.
+ * <p>
+ * Items buffered by a producer or kept by a consumer live only in local memory and are lost if the node fails.
+ * {@link #close()} puts both back to the queue.
+ * The order of items is preserved within a chunk and between chunks of the same producer.
+ * Queue capacity is defined in chunks.
+ */
+public class BatchedQueue<T> implements AutoCloseable {
+    /** Underlying queue of chunks. */
+    private final IgniteQueue<ArrayList<T>> queue;
+
+    /** Maximum chunk size. */
+    private final int chunkSize;
+
+    /** Producer buffer lock. */
+    private final Object prodMux = new Object();
+
+    /** Items buffered by producer. */
+    private ArrayList<T> prodBuf;
+
+    /** Items taken from the queue but not yet returned to consumer. */
+    private final Deque<T> consBuf = new ArrayDeque<>();
+
+    /**
+     * @param ignite Ignite instance.
+     * @param name Queue name.
+     * @param capacity Queue capacity in chunks, {@code 0} for unbounded queue.
+     * @param chunkSize Maximum number of items in a chunk.
+     * @param cfg Collection configuration.
+     */
+    public BatchedQueue(Ignite ignite, String name, int capacity, int chunkSize, CollectionConfiguration cfg) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+
+        queue = ignite.queue(name, capacity, cfg);
+
+        this.chunkSize = chunkSize;
+
+        prodBuf = new ArrayList<>(chunkSize);
+    }
+
+    /**
+     * Buffers item and puts the buffer to the queue when a chunk is collected.
+     *
+     * @param item Item.
+     */
+    public void put(T item) {
+        ArrayList<T> chunk = null;
+
+        synchronized (prodMux) {
+            prodBuf.add(item);
+
+            if (prodBuf.size() >= chunkSize) {
+                chunk = prodBuf;
+
+                prodBuf = new ArrayList<>(chunkSize);
+            }
+        }
+
+        if (chunk != null)
+            queue.put(chunk);
+    }
+
+    /**
+     * Puts items to the queue in chunks, blocking while the queue is full.
+     *
+     * @param items Items.
+     */
+    public void putAll(Collection<? extends T> items) {
+        ArrayList<T> chunk = new ArrayList<>(Math.min(chunkSize, items.size()));
+
+        for (T item : items) {
+            chunk.add(item);
+
+            if (chunk.size() == chunkSize) {
+                queue.put(chunk);
+
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+
+        if (!chunk.isEmpty())
+            queue.put(chunk);
+    }
+
+    /**
+     * Puts items buffered by {@link #put(Object)} to the queue.
+     */
+    public void flush() {
+        ArrayList<T> chunk;
+
+        synchronized (prodMux) {
+            if (prodBuf.isEmpty())
+                return;
+
+            chunk = prodBuf;
+
+            prodBuf = new ArrayList<>(chunkSize);
+        }
+
+        queue.put(chunk);
+    }
+
+    /**
+     * Moves up to {@code maxItems} available items to the given collection without waiting.
+     *
+     * @param c Collection to add items to.
+     * @param maxItems Maximum number of items.
+     * @return Number of items added.
+     */
+    public int drainTo(Collection<? super T> c, int maxItems) {
+        synchronized (consBuf) {
+            int cnt = drainLocal(c, maxItems);
+
+            while (cnt < maxItems) {
+                ArrayList<T> chunk = queue.poll();
+
+                if (chunk == null)
+                    break;
+
+                consBuf.addAll(chunk);
+
+                cnt += drainLocal(c, maxItems - cnt);
+            }
+
+            return cnt;
+        }
+    }
+
+    /**
+     * Moves up to {@code maxItems} items to the given collection, waiting until at least one item is available.
+     *
+     * @param c Collection to add items to.
+     * @param maxItems Maximum number of items.
+     * @return Number of items added.
+     */
+    public int take(Collection<? super T> c, int maxItems) {
+        int cnt = drainTo(c, maxItems);
+
+        if (cnt > 0)
+            return cnt;
+
+        // Wait outside of the lock, so that other consumers of this instance may drain local items.
+        ArrayList<T> chunk = queue.take();
+
+        synchronized (consBuf) {
+            consBuf.addAll(chunk);
+
+            return drainTo(c, maxItems);
+        }
+    }
+
+    /**
+     * Moves up to {@code maxItems} items to the given collection, waiting up to the given timeout until at least
+     * one item is available.
+     *
+     * @param c Collection to add items to.
+     * @param maxItems Maximum number of items.
+     * @param timeout Timeout.
+     * @param unit Timeout unit.
+     * @return Number of items added, {@code 0} if timeout expired.
+     */
+    public int poll(Collection<? super T> c, int maxItems, long timeout, TimeUnit unit) {
+        int cnt = drainTo(c, maxItems);
+
+        if (cnt > 0)
+            return cnt;
+
+        ArrayList<T> chunk = queue.poll(timeout, unit);
+
+        if (chunk == null)
+            return 0;
+
+        synchronized (consBuf) {
+            consBuf.addAll(chunk);
+
+            return drainTo(c, maxItems);
+        }
+    }
+
+    /**
+     * @return Number of chunks in the queue.
+     */
+    public int chunks() {
+        return queue.size();
+    }
+
+    /**
+     * @return Underlying queue.
+     */
+    public IgniteQueue<ArrayList<T>> queue() {
+        return queue;
+    }
+
+    /**
+     * Puts items taken from the queue but not yet returned to consumer back to the queue, so that they are
+     * available to other consumers.
+     */
+    public void putBack() {
+        ArrayList<T> rest;
+
+        synchronized (consBuf) {
+            if (consBuf.isEmpty())
+                return;
+
+            rest = new ArrayList<>(consBuf);
+
+            consBuf.clear();
+        }
+
+        putAll(rest);
+    }
+
+    /**
+     * Moves items from the local consumer buffer. Must be called under lock.
+     *
+     * @param c Collection to add items to.
+     * @param maxItems Maximum number of items.
+     * @return Number of items added.
+     */
+    private int drainLocal(Collection<? super T> c, int maxItems) {
+        int cnt = 0;
+
+        while (cnt < maxItems && !consBuf.isEmpty()) {
+            c.add(consBuf.poll());
+
+            cnt++;
+        }
+
+        return cnt;
+    }
+
+    /**
+     * Flushes items buffered by producer and puts items kept by consumer back to the queue. The underlying queue
+     * is not removed.
+     */
+    @Override public void close() {
+        flush();
+
+        putBack();
+    }
+}
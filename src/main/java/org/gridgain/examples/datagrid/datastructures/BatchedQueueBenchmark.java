@@ -0,0 +1,137 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+import org.apache.ignite.configuration.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares throughput of a producer and a consumer exchanging items through a single-item {@link IgniteQueue} and
+ * through {@link BatchedQueue} with {@link PrefetchingQueueConsumer}. Both queues have the same capacity in items.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using
+ * {@link org.gridgain.examples.ExampleNodeStartup}, so that queue updates go over the network.
+ */
+public class BatchedQueueBenchmark {
+    /** Number of items to transfer. */
+    private static final int ITEM_CNT = 20_000;
+
+    /** Items per chunk. */
+    private static final int CHUNK_SIZE = 100;
+
+    /** Queue capacity in items. */
+    private static final int CAPACITY = 10_000;
+
+    /** Items prefetched by consumer. */
+    private static final int PREFETCH = 1_000;
+
+    /**
+     * @param args Arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            double single = single(ignite);
+            double batched = batched(ignite);
+
+            System.out.println();
+            System.out.println(String.format(">>> Items/sec: IgniteQueue=%.0f, BatchedQueue=%.0f", single, batched));
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Items per second.
+     * @throws Exception If failed.
+     */
+    private static double single(Ignite ignite) throws Exception {
+        final IgniteQueue<String> queue = ignite.queue("benchmark-single", CAPACITY, new CollectionConfiguration());
+
+        try {
+            return run(new Runnable() {
+                @Override public void run() {
+                    for (int i = 0; i < ITEM_CNT; i++)
+                        queue.put("Item-" + i);
+                }
+            }, new Runnable() {
+                @Override public void run() {
+                    for (int i = 0; i < ITEM_CNT; i++)
+                        queue.take();
+                }
+            });
+        }
+        finally {
+            queue.close();
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Items per second.
+     * @throws Exception If failed.
+     */
+    private static double batched(Ignite ignite) throws Exception {
+        final BatchedQueue<String> queue = new BatchedQueue<>(ignite, "benchmark-batched", CAPACITY / CHUNK_SIZE,
+            CHUNK_SIZE, new CollectionConfiguration());
+
+        try {
+            return run(new Runnable() {
+                @Override public void run() {
+                    for (int i = 0; i < ITEM_CNT; i++)
+                        queue.put("Item-" + i);
+
+                    queue.flush();
+                }
+            }, new Runnable() {
+                @Override public void run() {
+                    try (PrefetchingQueueConsumer<String> consumer = new PrefetchingQueueConsumer<>(queue, PREFETCH)) {
+                        for (int i = 0; i < ITEM_CNT; i++)
+                            consumer.take();
+                    }
+                    catch (InterruptedException e) {
+                        throw new IgniteInterruptedException(e);
+                    }
+                }
+            });
+        }
+        finally {
+            queue.queue().close();
+        }
+    }
+
+    /**
+     * Runs producer and consumer in parallel.
+     *
+     * @param producer Producer.
+     * @param consumer Consumer.
+     * @return Items per second.
+     * @throws Exception If failed.
+     */
+    private static double run(Runnable producer, Runnable consumer) throws Exception {
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+
+        try {
+            long start = System.nanoTime();
+
+            Future<?> prodFut = exec.submit(producer);
+            Future<?> consFut = exec.submit(consumer);
+
+            prodFut.get();
+            consFut.get();
+
+            return ITEM_CNT * 1e9 / (System.nanoTime() - start);
+        }
+        finally {
+            exec.shutdownNow();
+        }
+    }
+}
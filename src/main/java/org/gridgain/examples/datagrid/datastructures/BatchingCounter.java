@@ -0,0 +1,264 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Distributed counter that accumulates increments locally and flushes them to an {@link IgniteAtomicLong}
+ * in batches, so an increment is a local memory operation instead of a cluster-wide update.
+ * <p>
+ * Every node keeps unflushed deltas in padded stripes selected by thread, so threads of a node rarely contend.
+ * Deltas are flushed every {@code flushInterval} milliseconds and on {@link #flush()}. {@link #get()} flushes deltas
+ * on all nodes and returns an exact value, which includes all increments completed before the call;
+ * {@link #getFlushed()} returns the flushed value only and is cheap. Deltas not flushed yet are lost if a node fails,
+ * and deltas of a failed flush may be counted twice if the update was applied before the failure.
+ * <p>
+ * Instances with the same name on a node share the same stripes. The standard {@code LongAdder} is not used because
+ * the examples target Java 7.
+ */
+public class BatchingCounter implements AutoCloseable {
+    /** Number of stripes. */
+    private static final int STRIPES = 16;
+
+    /** Distance between stripes in the array, in longs, to place them in different cache lines. */
+    private static final int PAD = 8;
+
+    /** Node-local map key prefix of stripes. */
+    private static final String STRIPES_KEY = BatchingCounter.class.getName() + "-stripes-";
+
+    /** Node-local map key of the flush timer. */
+    private static final String TIMER_KEY = BatchingCounter.class.getName() + "-timer";
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Counter name. */
+    private final String name;
+
+    /** Flushed value. */
+    private final IgniteAtomicLong flushed;
+
+    /** Local deltas. */
+    private final AtomicLongArray deltas;
+
+    /** Periodic flush. */
+    private final ScheduledFuture<?> flushFut;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param name Counter name.
+     * @param flushInterval Flush interval in milliseconds.
+     */
+    public BatchingCounter(Ignite ignite, String name, long flushInterval) {
+        this.ignite = ignite;
+        this.name = name;
+
+        flushed = ignite.atomicLong(name, 0, true);
+
+        deltas = deltas(ignite, name);
+
+        flushFut = timer(ignite).scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                try {
+                    flush();
+                }
+                catch (IgniteException e) {
+                    // Retried on next flush, deltas are restored.
+                    e.printStackTrace();
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Increments counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * @param delta Delta.
+     */
+    public void add(long delta) {
+        deltas.addAndGet((int)(Thread.currentThread().getId() % STRIPES) * PAD, delta);
+    }
+
+    /**
+     * Flushes local deltas.
+     */
+    public void flush() {
+        flush(flushed, deltas);
+    }
+
+    /**
+     * Flushes deltas on all nodes and returns exact value.
+     *
+     * @return Value including all increments completed before the call.
+     */
+    public long get() {
+        ignite.compute(ignite.cluster()).broadcast(new FlushRunnable(name));
+
+        return flushed.get();
+    }
+
+    /**
+     * @return Flushed value, without deltas that have not been flushed yet.
+     */
+    public long getFlushed() {
+        return flushed.get();
+    }
+
+    /**
+     * @return Local deltas that have not been flushed yet.
+     */
+    public long localDelta() {
+        return sum(deltas, false);
+    }
+
+    /**
+     * Flushes local deltas and stops periodic flushing. The distributed value is not removed.
+     */
+    @Override public void close() {
+        flushFut.cancel(false);
+
+        flush();
+    }
+
+    /**
+     * Flushes deltas of a node. Flushes are serialized on the node-local deltas, so a flush started by
+     * {@link #get()} waits for a periodic flush that has taken deltas but not yet added them to the flushed value.
+     * <p>
+     * If the update fails, deltas are restored to be flushed later. The update may still have been applied,
+     * e.g. if the connection to the server failed after it, in which case the deltas are counted twice.
+     *
+     * @param flushed Flushed value.
+     * @param deltas Deltas.
+     */
+    private static void flush(IgniteAtomicLong flushed, AtomicLongArray deltas) {
+        synchronized (deltas) {
+            long delta = sum(deltas, true);
+
+            if (delta == 0)
+                return;
+
+            try {
+                flushed.addAndGet(delta);
+            }
+            catch (IgniteException e) {
+                // Restore deltas to flush them later.
+                deltas.addAndGet(0, delta);
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @param deltas Deltas.
+     * @param reset Whether to reset stripes.
+     * @return Sum of stripes.
+     */
+    private static long sum(AtomicLongArray deltas, boolean reset) {
+        long sum = 0;
+
+        for (int i = 0; i < STRIPES; i++)
+            sum += reset ? deltas.getAndSet(i * PAD, 0) : deltas.get(i * PAD);
+
+        return sum;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param name Counter name.
+     * @return Node-local deltas of the counter.
+     */
+    private static AtomicLongArray deltas(Ignite ignite, String name) {
+        ConcurrentMap<String, AtomicLongArray> locMap = ignite.cluster().nodeLocalMap();
+
+        AtomicLongArray deltas = locMap.get(STRIPES_KEY + name);
+
+        if (deltas == null) {
+            AtomicLongArray old = locMap.putIfAbsent(STRIPES_KEY + name, deltas = new AtomicLongArray(STRIPES * PAD));
+
+            if (old != null)
+                deltas = old;
+        }
+
+        return deltas;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Node-local flush timer.
+     */
+    private static ScheduledExecutorService timer(Ignite ignite) {
+        ConcurrentMap<String, ScheduledExecutorService> locMap = ignite.cluster().nodeLocalMap();
+
+        ScheduledExecutorService timer = locMap.get(TIMER_KEY);
+
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "batching-counter-flusher");
+
+                    t.setDaemon(true);
+
+                    return t;
+                }
+            });
+
+            ScheduledExecutorService old = locMap.putIfAbsent(TIMER_KEY, timer);
+
+            if (old != null) {
+                timer.shutdown();
+
+                timer = old;
+            }
+        }
+
+        return timer;
+    }
+
+    /**
+     * Flushes deltas of a counter on a node.
+     */
+    private static class FlushRunnable implements IgniteRunnable {
+        /** Counter name. */
+        private final String name;
+
+        /** Injected grid. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param name Counter name.
+         */
+        FlushRunnable(String name) {
+            this.name = name;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            ConcurrentMap<String, AtomicLongArray> locMap = ignite.cluster().nodeLocalMap();
+
+            AtomicLongArray deltas = locMap.get(STRIPES_KEY + name);
+
+            if (deltas != null)
+                flush(ignite.atomicLong(name, 0, true), deltas);
+        }
+    }
+}
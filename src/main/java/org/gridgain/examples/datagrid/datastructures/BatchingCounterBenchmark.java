@@ -0,0 +1,151 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares increments per second of {@link IgniteAtomicLong} and {@link BatchingCounter} when several threads on
+ * every node increment the same counter, and checks that the exact value of {@link BatchingCounter} matches the
+ * number of increments.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using
+ * {@link org.gridgain.examples.ExampleNodeStartup}.
+ */
+public class BatchingCounterBenchmark {
+    /** Number of incrementing threads per node. */
+    private static final int THREADS = 8;
+
+    /** Duration of every run in milliseconds. */
+    private static final long DURATION = 5_000;
+
+    /** Flush interval of the batching counter. */
+    private static final long FLUSH_INTERVAL = 100;
+
+    /**
+     * @param args Arguments.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            long atomicCnt = sum(ignite.compute().broadcast(new IncrementCallable("benchmark-atomic", false)));
+
+            IgniteAtomicLong atomic = ignite.atomicLong("benchmark-atomic", 0, false);
+
+            System.out.println(">>> IgniteAtomicLong [increments=" + atomicCnt + ", value=" + atomic.get() + ']');
+
+            atomic.close();
+
+            long batchingCnt = sum(ignite.compute().broadcast(new IncrementCallable("benchmark-batching", true)));
+
+            try (BatchingCounter cntr = new BatchingCounter(ignite, "benchmark-batching", FLUSH_INTERVAL)) {
+                System.out.println(">>> BatchingCounter [increments=" + batchingCnt + ", value=" + cntr.get() + ']');
+            }
+
+            ignite.atomicLong("benchmark-batching", 0, false).close();
+
+            int nodes = ignite.cluster().forServers().nodes().size();
+
+            System.out.println();
+            System.out.println(String.format(">>> Increments/sec [nodes=%d, threadsPerNode=%d]: " +
+                "IgniteAtomicLong=%.0f, BatchingCounter=%.0f", nodes, THREADS, atomicCnt * 1000.0 / DURATION,
+                batchingCnt * 1000.0 / DURATION));
+        }
+    }
+
+    /**
+     * @param cnts Counts.
+     * @return Sum.
+     */
+    private static long sum(Collection<Long> cnts) {
+        long sum = 0;
+
+        for (Long cnt : cnts)
+            sum += cnt;
+
+        return sum;
+    }
+
+    /**
+     * Increments a counter from several threads for {@link #DURATION} and returns the number of increments.
+     */
+    private static class IncrementCallable implements IgniteCallable<Long> {
+        /** Counter name. */
+        private final String name;
+
+        /** Whether to use {@link BatchingCounter}. */
+        private final boolean batching;
+
+        /** Injected grid. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param name Counter name.
+         * @param batching Whether to use {@link BatchingCounter}.
+         */
+        IncrementCallable(String name, boolean batching) {
+            this.name = name;
+            this.batching = batching;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Long call() throws Exception {
+            final IgniteAtomicLong atomic = batching ? null : ignite.atomicLong(name, 0, true);
+
+            final BatchingCounter cntr = batching ? new BatchingCounter(ignite, name, FLUSH_INTERVAL) : null;
+
+            ExecutorService exec = Executors.newFixedThreadPool(THREADS);
+
+            final long end = System.currentTimeMillis() + DURATION;
+
+            List<Future<Long>> futs = new ArrayList<>(THREADS);
+
+            for (int i = 0; i < THREADS; i++) {
+                futs.add(exec.submit(new Callable<Long>() {
+                    @Override public Long call() {
+                        long cnt = 0;
+
+                        while (System.currentTimeMillis() < end) {
+                            if (batching)
+                                cntr.increment();
+                            else
+                                atomic.incrementAndGet();
+
+                            cnt++;
+                        }
+
+                        return cnt;
+                    }
+                }));
+            }
+
+            long total = 0;
+
+            try {
+                for (Future<Long> fut : futs)
+                    total += fut.get();
+            }
+            finally {
+                exec.shutdown();
+
+                if (cntr != null)
+                    cntr.close();
+            }
+
+            return total;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Consumer of a {@link BatchedQueue} that prefetches items in a background thread, so that taking an item is
+ * a local operation as long as the producers keep up. The thread takes chunks while fewer than {@code prefetch}
+ * items are buffered locally. Chunks are taken from the queue as a whole, so the rest of the last taken chunk
+ * is kept by the {@link BatchedQueue} instance and up to {@code prefetch + chunkSize - 1} items may be held locally.
+ * <p>
+ * Prefetched items are removed from the distributed queue and are lost if the node fails before they are taken.
+ * {@link #close()} puts prefetched items that have not been taken, together with the rest of the last chunk,
+ * back to the queue.
+ */
+public class PrefetchingQueueConsumer<T> implements AutoCloseable {
+    /** Queue. */
+    private final BatchedQueue<T> queue;
+
+    /** Number of items to prefetch. */
+    private final int prefetch;
+
+    /** Local buffer. */
+    private final BlockingQueue<T> buf = new LinkedBlockingQueue<>();
+
+    /** Prefetching thread. */
+    private final Thread fetcher;
+
+    /** Stop flag. */
+    private volatile boolean stopped;
+
+    /** Prefetch error. */
+    private volatile IgniteException err;
+
+    /**
+     * @param queue Queue.
+     * @param prefetch Number of items to prefetch.
+     */
+    public PrefetchingQueueConsumer(BatchedQueue<T> queue, int prefetch) {
+        if (prefetch <= 0)
+            throw new IllegalArgumentException("Prefetch size must be positive: " + prefetch);
+
+        this.queue = queue;
+        this.prefetch = prefetch;
+
+        fetcher = new Thread(new Runnable() {
+            @Override public void run() {
+                fetch();
+            }
+        }, "queue-prefetcher");
+
+        fetcher.setDaemon(true);
+
+        fetcher.start();
+    }
+
+    /**
+     * Prefetch loop.
+     */
+    private void fetch() {
+        List<T> items = new ArrayList<>(prefetch);
+
+        try {
+            while (!stopped) {
+                int free = prefetch - buf.size();
+
+                if (free <= 0) {
+                    synchronized (this) {
+                        while (!stopped && buf.size() >= prefetch)
+                            wait();
+                    }
+
+                    continue;
+                }
+
+                if (queue.poll(items, free, 100, TimeUnit.MILLISECONDS) > 0) {
+                    buf.addAll(items);
+
+                    items.clear();
+                }
+            }
+        }
+        catch (InterruptedException ignored) {
+            // Closed.
+        }
+        catch (IgniteException e) {
+            if (!stopped)
+                err = e;
+        }
+    }
+
+    /**
+     * Takes an item, waiting if necessary.
+     *
+     * @return Item.
+     * @throws InterruptedException If interrupted.
+     */
+    public T take() throws InterruptedException {
+        for (;;) {
+            T item = poll(100, TimeUnit.MILLISECONDS);
+
+            if (item != null)
+                return item;
+        }
+    }
+
+    /**
+     * Takes an item, waiting up to the given timeout.
+     *
+     * @param timeout Timeout.
+     * @param unit Timeout unit.
+     * @return Item or {@code null} if timeout expired.
+     * @throws InterruptedException If interrupted.
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        checkError();
+
+        T item = buf.poll(timeout, unit);
+
+        if (item != null)
+            onTaken();
+
+        return item;
+    }
+
+    /**
+     * Moves up to {@code maxItems} prefetched items to the given collection without waiting.
+     *
+     * @param c Collection to add items to.
+     * @param maxItems Maximum number of items.
+     * @return Number of items added.
+     */
+    public int drainTo(Collection<? super T> c, int maxItems) {
+        checkError();
+
+        int cnt = buf.drainTo(c, maxItems);
+
+        if (cnt > 0)
+            onTaken();
+
+        return cnt;
+    }
+
+    /**
+     * @return Number of prefetched items.
+     */
+    public int prefetched() {
+        return buf.size();
+    }
+
+    /**
+     * Wakes up the prefetching thread.
+     */
+    private synchronized void onTaken() {
+        notifyAll();
+    }
+
+    /**
+     * Rethrows prefetch error.
+     */
+    private void checkError() {
+        IgniteException e = err;
+
+        if (e != null && buf.isEmpty())
+            throw new IgniteException("Failed to prefetch items.", e);
+    }
+
+    /**
+     * Stops prefetching.
+     *
+     * @return Prefetched items that have not been taken.
+     */
+    public List<T> stop() {
+        stopped = true;
+
+        synchronized (this) {
+            notifyAll();
+        }
+
+        try {
+            fetcher.join();
+        }
+        catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<T> rest = new ArrayList<>();
+
+        buf.drainTo(rest);
+
+        return rest;
+    }
+
+    /**
+     * Stops prefetching and puts items that have not been taken back to the queue.
+     */
+    @Override public void close() {
+        List<T> rest = stop();
+
+        if (!rest.isEmpty())
+            queue.putAll(rest);
+
+        queue.putBack();
+    }
+}
@@ -0,0 +1,542 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cache.*;
+import org.apache.ignite.cache.affinity.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.configuration.*;
+
+import javax.cache.expiry.*;
+import javax.cache.processor.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Distributed queue split into independent lanes to avoid contention on a single queue head and tail.
+ * <p>
+ * Every lane is a sequence of slot entries with its own header entry holding head and tail indexes. Indexes grow
+ * without bound and a slot entry is removed when its item is taken, so a lane holds at most its capacity of
+ * items at a time. All entries of
+ * a lane are collocated by an affinity key, and affinity keys of lanes are chosen on creation so that lanes are
+ * spread evenly over the primary nodes. Lanes are kept in an {@code ATOMIC} cache, header updates are single-key
+ * entry processor invocations, so no transactions are involved.
+ * <p>
+ * Producers choose a lane round-robin with {@link #offer(Object)} or by hash of a key with
+ * {@link #offer(Object, Object)}. Consumers first poll lanes whose primary is the local node and steal from
+ * other lanes when local lanes are empty.
+ * <p>
+ * Ordering guarantees:
+ * <ul>
+ *     <li>items of a lane are taken in the order of their slots, which is the order in which {@code offer} calls
+ *     reserved them; so items offered with the same key by one producer are taken in the order they were offered;
+ *     </li>
+ *     <li>there is no order between items of different lanes, including items offered round-robin by one producer;
+ *     </li>
+ *     <li>with several consumers items are taken in lane order, but may be processed in any order.</li>
+ * </ul>
+ * A slot is reserved before its item is written. If the item is not written within {@link #SLOT_TIMEOUT}
+ * milliseconds, the consumer marks the slot as skipped with {@code putIfAbsent} and moves on, so a consumer may
+ * block for up to {@link #SLOT_TIMEOUT} milliseconds per slot that is reserved but not written. The producer also
+ * writes with {@code putIfAbsent}, so exactly one of them wins: a late producer finds the mark, removes it and
+ * offers the item to a new slot, so the item is neither lost nor taken before the items it was offered before.
+ * Marks expire after {@link #MARK_TTL} milliseconds, so marks of producers that failed between reserving and
+ * writing do not stay in the cache. A producer that writes later than that checks whether its item has been taken
+ * and offers it again otherwise.
+ * <p>
+ * An item is removed from the cache when a consumer takes it, so it is lost if the consumer fails before
+ * processing it.
+ */
+public class ShardedQueue<T> {
+    /** Time consumers wait for a reserved slot to be written before skipping it. */
+    public static final long SLOT_TIMEOUT = 5000;
+
+    /** Time a skipped slot mark is kept in the cache. */
+    public static final long MARK_TTL = 10 * SLOT_TIMEOUT;
+
+    /** Key of the lane affinity keys. */
+    private static final String LANES_KEY = "lanes";
+
+    /** Lanes cache. */
+    private final IgniteCache<Object, Object> cache;
+
+    /** Lanes cache view creating entries that expire after {@link #MARK_TTL}. */
+    private final IgniteCache<Object, Object> markCache;
+
+    /** Affinity. */
+    private final Affinity<Object> aff;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Affinity keys of lanes. */
+    private final int[] lanes;
+
+    /** Lane capacity. */
+    private final int laneCap;
+
+    /** Round-robin counter of producers. */
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    /** Round-robin counter of consumers. */
+    private final AtomicInteger nextPoll = new AtomicInteger();
+
+    /** Number of items taken from local lanes. */
+    private final AtomicLong locTaken = new AtomicLong();
+
+    /** Number of items stolen from other lanes. */
+    private final AtomicLong stolen = new AtomicLong();
+
+    /**
+     * Gets or creates a sharded queue.
+     *
+     * @param ignite Ignite instance.
+     * @param name Queue name, also the name of the cache lanes are stored in.
+     * @param laneCnt Number of lanes, ignored if the queue exists.
+     * @param laneCap Capacity of a lane.
+     * @param backups Number of backups.
+     */
+    public ShardedQueue(Ignite ignite, String name, int laneCnt, int laneCap, int backups) {
+        if (laneCnt <= 0 || laneCap <= 0)
+            throw new IllegalArgumentException("Number of lanes and lane capacity must be positive.");
+
+        CacheConfiguration<Object, Object> cfg = new CacheConfiguration<>(name);
+
+        cfg.setAtomicityMode(CacheAtomicityMode.ATOMIC);
+        cfg.setCacheMode(CacheMode.PARTITIONED);
+        cfg.setBackups(backups);
+        cfg.setWriteSynchronizationMode(CacheWriteSynchronizationMode.FULL_SYNC);
+
+        this.ignite = ignite;
+        this.laneCap = laneCap;
+
+        cache = ignite.getOrCreateCache(cfg);
+        markCache = cache.withExpiryPolicy(new CreatedExpiryPolicy(new Duration(TimeUnit.MILLISECONDS, MARK_TTL)));
+        aff = ignite.affinity(name);
+
+        int[] created = spreadLanes(laneCnt);
+
+        Object existing = cache.getAndPutIfAbsent(LANES_KEY, created);
+
+        lanes = existing != null ? (int[])existing : created;
+    }
+
+    /**
+     * Chooses affinity keys of lanes so that primaries of lanes follow the data nodes round-robin.
+     *
+     * @param laneCnt Number of lanes.
+     * @return Affinity keys.
+     */
+    private int[] spreadLanes(int laneCnt) {
+        List<ClusterNode> nodes = new ArrayList<>(ignite.cluster().forDataNodes(cache.getName()).nodes());
+
+        Map<ClusterNode, Deque<Integer>> candidates = new HashMap<>();
+
+        for (ClusterNode node : nodes)
+            candidates.put(node, new ArrayDeque<Integer>());
+
+        // Collect partition representatives of every node.
+        for (int part = 0; part < aff.partitions(); part++) {
+            ClusterNode node = aff.mapPartitionToNode(part);
+
+            if (candidates.containsKey(node))
+                candidates.get(node).add(part);
+        }
+
+        if (nodes.isEmpty())
+            throw new IgniteException("No data nodes for queue cache: " + cache.getName());
+
+        int[] res = new int[laneCnt];
+
+        for (int lane = 0; lane < laneCnt; lane++) {
+            Integer part = null;
+
+            // Take a partition of the next node, or of any node if the next one has no partitions left.
+            for (int i = 0; i < nodes.size() && part == null; i++)
+                part = candidates.get(nodes.get((lane + i) % nodes.size())).poll();
+
+            if (part == null)
+                throw new IgniteException("Number of lanes exceeds number of partitions: " + laneCnt);
+
+            res[lane] = firstKey(part);
+        }
+
+        return res;
+    }
+
+    /**
+     * @param part Partition.
+     * @return The smallest non-negative integer key mapped to the partition.
+     */
+    private int firstKey(int part) {
+        for (int key = 0; ; key++) {
+            if (aff.partition(key) == part)
+                return key;
+        }
+    }
+
+    /**
+     * Offers item to the next lane round-robin.
+     *
+     * @param item Item.
+     * @return {@code False} if the lane is full.
+     */
+    public boolean offer(T item) {
+        return offerToLane(Math.abs(nextLane.getAndIncrement() % lanes.length), item);
+    }
+
+    /**
+     * Offers item to the lane chosen by hash of the key.
+     *
+     * @param key Key.
+     * @param item Item.
+     * @return {@code False} if the lane is full.
+     */
+    public boolean offer(Object key, T item) {
+        return offerToLane(Math.abs(key.hashCode() % lanes.length), item);
+    }
+
+    /**
+     * Puts item to the next lane round-robin, waiting while the lane is full.
+     *
+     * @param item Item.
+     * @throws IgniteInterruptedException If interrupted.
+     */
+    public void put(T item) {
+        int lane = Math.abs(nextLane.getAndIncrement() % lanes.length);
+
+        for (int backoff = 1; !offerToLane(lane, item); backoff = Math.min(backoff * 2, 100))
+            sleep(backoff);
+    }
+
+    /**
+     * Polls local lanes first, then other lanes.
+     *
+     * @return Item or {@code null} if all lanes are empty.
+     */
+    public T poll() {
+        ClusterNode loc = ignite.cluster().localNode();
+
+        int start = Math.abs(nextPoll.getAndIncrement() % lanes.length);
+
+        List<Integer> remote = new ArrayList<>();
+
+        for (int i = 0; i < lanes.length; i++) {
+            int lane = (start + i) % lanes.length;
+
+            if (aff.isPrimary(loc, lanes[lane])) {
+                T item = pollLane(lane);
+
+                if (item != null) {
+                    locTaken.incrementAndGet();
+
+                    return item;
+                }
+            }
+            else
+                remote.add(lane);
+        }
+
+        // Steal from other lanes.
+        for (int lane : remote) {
+            T item = pollLane(lane);
+
+            if (item != null) {
+                stolen.incrementAndGet();
+
+                return item;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Takes item, waiting while all lanes are empty.
+     *
+     * @return Item.
+     * @throws IgniteInterruptedException If interrupted.
+     */
+    public T take() {
+        for (int backoff = 1; ; backoff = Math.min(backoff * 2, 100)) {
+            T item = poll();
+
+            if (item != null)
+                return item;
+
+            sleep(backoff);
+        }
+    }
+
+    /**
+     * Counts items written to slots that have not been taken yet. Slots that are reserved but not written, which
+     * may end up skipped, are not counted. Reads all slots between head and tail of every lane.
+     *
+     * @return Total number of items in all lanes.
+     */
+    public long size() {
+        Set<Object> hdrKeys = new HashSet<>();
+
+        for (int lane = 0; lane < lanes.length; lane++)
+            hdrKeys.add(new LaneKey(lane, -1, lanes[lane]));
+
+        Set<Object> slotKeys = new HashSet<>();
+
+        for (Map.Entry<Object, Object> e : cache.getAll(hdrKeys).entrySet()) {
+            LaneKey hdrKey = (LaneKey)e.getKey();
+            LaneHeader hdr = (LaneHeader)e.getValue();
+
+            for (long idx = hdr.head; idx < hdr.tail; idx++)
+                slotKeys.add(new LaneKey(hdrKey.lane, idx, hdrKey.affKey));
+        }
+
+        long size = 0;
+
+        for (Object val : cache.getAll(slotKeys).values()) {
+            if (!(val instanceof SlotMark))
+                size++;
+        }
+
+        return size;
+    }
+
+    /**
+     * @return Number of items this instance has taken from lanes of the local node.
+     */
+    public long localTaken() {
+        return locTaken.get();
+    }
+
+    /**
+     * @return Number of items this instance has stolen from lanes of other nodes.
+     */
+    public long stolen() {
+        return stolen.get();
+    }
+
+    /**
+     * @return Number of lanes.
+     */
+    public int lanes() {
+        return lanes.length;
+    }
+
+    /**
+     * Destroys the queue cache.
+     */
+    public void destroy() {
+        ignite.destroyCache(cache.getName());
+    }
+
+    /**
+     * @param lane Lane.
+     * @param item Item.
+     * @return {@code False} if the lane is full.
+     */
+    private boolean offerToLane(int lane, T item) {
+        for (;;) {
+            long start = System.currentTimeMillis();
+
+            long idx = cache.invoke(new LaneKey(lane, -1, lanes[lane]), new ReserveTail(laneCap));
+
+            if (idx < 0)
+                return false;
+
+            LaneKey key = new LaneKey(lane, idx, lanes[lane]);
+
+            if (cache.putIfAbsent(key, item)) {
+                // The mark of a skipped slot may have expired before the write. Take the item back unless
+                // a consumer has taken it.
+                if (System.currentTimeMillis() - start > MARK_TTL && cache.getAndRemove(key) != null)
+                    continue;
+
+                return true;
+            }
+
+            // Consumer has given up waiting and skipped the slot, nobody else writes it.
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * @param lane Lane.
+     * @return Item or {@code null} if the lane is empty.
+     */
+    @SuppressWarnings("unchecked")
+    private T pollLane(int lane) {
+        for (;;) {
+            long idx = cache.invoke(new LaneKey(lane, -1, lanes[lane]), new ReserveHead());
+
+            if (idx < 0)
+                return null;
+
+            LaneKey key = new LaneKey(lane, idx, lanes[lane]);
+
+            long end = System.currentTimeMillis() + SLOT_TIMEOUT;
+
+            for (int backoff = 1; ; backoff = Math.min(backoff * 2, 100)) {
+                Object item = cache.getAndRemove(key);
+
+                if (item != null)
+                    return (T)item;
+
+                // Producer has reserved the slot but not written it yet. Skip the slot unless the producer
+                // has written it meanwhile.
+                if (System.currentTimeMillis() > end && markCache.putIfAbsent(key, SlotMark.SKIPPED))
+                    break;
+
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * @param millis Time to sleep.
+     * @throws IgniteInterruptedException If interrupted.
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IgniteInterruptedException(e);
+        }
+    }
+
+    /**
+     * Key of a lane header ({@code idx == -1}) or a lane slot.
+     */
+    private static class LaneKey implements Serializable {
+        /** Lane. */
+        private final int lane;
+
+        /** Slot index. */
+        private final long idx;
+
+        /** Affinity key of the lane. */
+        @AffinityKeyMapped
+        private final int affKey;
+
+        /**
+         * @param lane Lane.
+         * @param idx Slot index, {@code -1} for header.
+         * @param affKey Affinity key of the lane.
+         */
+        LaneKey(int lane, long idx, int affKey) {
+            this.lane = lane;
+            this.idx = idx;
+            this.affKey = affKey;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (!(o instanceof LaneKey))
+                return false;
+
+            LaneKey key = (LaneKey)o;
+
+            return lane == key.lane && idx == key.idx && affKey == key.affKey;
+        }
+
+        /** {@inheritDoc} */
+        @Override public int hashCode() {
+            int res = lane;
+
+            res = 31 * res + (int)(idx ^ (idx >>> 32));
+            res = 31 * res + affKey;
+
+            return res;
+        }
+    }
+
+    /**
+     * Slot mark.
+     */
+    private enum SlotMark {
+        /** Slot skipped by a consumer. */
+        SKIPPED
+    }
+
+    /**
+     * Lane header.
+     */
+    private static class LaneHeader implements Serializable {
+        /** Index of the next slot to take. */
+        private long head;
+
+        /** Index of the next slot to offer. */
+        private long tail;
+    }
+
+    /**
+     * Reserves tail slot of a lane if the lane is not full.
+     */
+    private static class ReserveTail implements CacheEntryProcessor<Object, Object, Long> {
+        /** Lane capacity. */
+        private final int cap;
+
+        /**
+         * @param cap Lane capacity.
+         */
+        ReserveTail(int cap) {
+            this.cap = cap;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Long process(MutableEntry<Object, Object> entry, Object... args) {
+            LaneHeader hdr = entry.exists() ? (LaneHeader)entry.getValue() : new LaneHeader();
+
+            if (hdr.tail - hdr.head >= cap)
+                return -1L;
+
+            LaneHeader upd = new LaneHeader();
+
+            upd.head = hdr.head;
+            upd.tail = hdr.tail + 1;
+
+            entry.setValue(upd);
+
+            return hdr.tail;
+        }
+    }
+
+    /**
+     * Reserves head slot of a lane if the lane is not empty.
+     */
+    private static class ReserveHead implements CacheEntryProcessor<Object, Object, Long> {
+        /** {@inheritDoc} */
+        @Override public Long process(MutableEntry<Object, Object> entry, Object... args) {
+            if (!entry.exists())
+                return -1L;
+
+            LaneHeader hdr = (LaneHeader)entry.getValue();
+
+            if (hdr.head >= hdr.tail)
+                return -1L;
+
+            LaneHeader upd = new LaneHeader();
+
+            upd.head = hdr.head + 1;
+            upd.tail = hdr.tail;
+
+            entry.setValue(upd);
+
+            return hdr.head;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.datastructures;
+
+import org.apache.ignite.*;
+import org.apache.ignite.configuration.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Compares throughput of several producers and consumers sharing a single {@link IgniteQueue} and
+ * a {@link ShardedQueue} with the same total capacity.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using
+ * {@link org.gridgain.examples.ExampleNodeStartup}, so that lanes are spread over several nodes.
+ */
+public class ShardedQueueExample {
+    /** Number of producer threads. */
+    private static final int PRODUCERS = 4;
+
+    /** Number of consumer threads. */
+    private static final int CONSUMERS = 4;
+
+    /** Number of lanes. */
+    private static final int LANES = 16;
+
+    /** Total capacity. */
+    private static final int CAPACITY = 16_000;
+
+    /** Duration of every run in milliseconds. */
+    private static final long DURATION = 10_000;
+
+    /**
+     * @param args Arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            final IgniteQueue<String> single = ignite.queue("single-queue", CAPACITY, new CollectionConfiguration());
+
+            double singleRate = run(new Producer() {
+                @Override public void put(String item) {
+                    single.put(item);
+                }
+            }, new Consumer() {
+                @Override public String poll() {
+                    return single.poll();
+                }
+            });
+
+            single.close();
+
+            final ShardedQueue<String> sharded = new ShardedQueue<>(ignite, "sharded-queue", LANES,
+                CAPACITY / LANES, 1);
+
+            double shardedRate = run(new Producer() {
+                @Override public void put(String item) {
+                    sharded.put(item);
+                }
+            }, new Consumer() {
+                @Override public String poll() {
+                    return sharded.poll();
+                }
+            });
+
+            System.out.println();
+            System.out.println(String.format(">>> Items/sec: IgniteQueue=%.0f, ShardedQueue=%.0f [lanes=%d, " +
+                "localTaken=%d, stolen=%d]", singleRate, shardedRate, sharded.lanes(), sharded.localTaken(),
+                sharded.stolen()));
+
+            sharded.destroy();
+        }
+    }
+
+    /**
+     * Runs producers and consumers for {@link #DURATION}.
+     *
+     * @param producer Producer.
+     * @param consumer Consumer.
+     * @return Items consumed per second.
+     * @throws Exception If failed.
+     */
+    private static double run(final Producer producer, final Consumer consumer) throws Exception {
+        ExecutorService exec = Executors.newFixedThreadPool(PRODUCERS + CONSUMERS);
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong consumed = new AtomicLong();
+
+        for (int i = 0; i < PRODUCERS; i++) {
+            final int producerIdx = i;
+
+            exec.submit(new Callable<Void>() {
+                @Override public Void call() {
+                    for (long cnt = 0; !stop.get(); cnt++)
+                        producer.put("Item-" + producerIdx + "-" + cnt);
+
+                    return null;
+                }
+            });
+        }
+
+        for (int i = 0; i < CONSUMERS; i++) {
+            exec.submit(new Callable<Void>() {
+                @Override public Void call() throws Exception {
+                    while (!stop.get()) {
+                        if (consumer.poll() != null)
+                            consumed.incrementAndGet();
+                        else
+                            Thread.sleep(1);
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        Thread.sleep(DURATION);
+
+        stop.set(true);
+
+        // Interrupt producers blocked on a full queue.
+        exec.shutdownNow();
+        exec.awaitTermination(1, TimeUnit.MINUTES);
+
+        return consumed.get() * 1000.0 / DURATION;
+    }
+
+    /**
+     * Producer side of a queue.
+     */
+    private interface Producer {
+        /**
+         * @param item Item.
+         */
+        void put(String item);
+    }
+
+    /**
+     * Consumer side of a queue.
+     */
+    private interface Consumer {
+        /**
+         * @return Item or {@code null} if queue is empty.
+         */
+        String poll();
+    }
+}
@@ -0,0 +1,601 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import javax.cache.event.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Continuous query listener that decouples notification threads from a slow user listener.
+ * <p>
+ * Events are spread over key ranges (by key hash) and put to a bounded buffer of the range. Every range
+ * is drained by a pool of workers in batches of up to {@code batchSize} events, at most one batch per range
+ * at a time, so updates of the same key are delivered in order. A range is drained {@code window} milliseconds
+ * after its first pending event arrives, which gives updates a chance to be batched and coalesced.
+ * <p>
+ * When a range buffer is full the {@link OverflowPolicy} decides what happens with a notification thread.
+ * Note that {@link OverflowPolicy#BLOCK} propagates back pressure to the cache, since notification
+ * thread is blocked until the listener catches up.
+ */
+public class BatchingContinuousQueryListener<K, V> implements CacheEntryUpdatedListener<K, V>, AutoCloseable {
+    /**
+     * Buffer overflow policy.
+     */
+    public enum OverflowPolicy {
+        /** Every update is delivered, notification thread waits for free space. */
+        BLOCK,
+
+        /**
+         * Pending updates of the same key are merged into one carrying the first old value and the last new value,
+         * notification thread waits for free space only when the buffer is full of distinct keys.
+         */
+        COALESCE,
+
+        /** The oldest pending update of the range is dropped. */
+        DROP_OLDEST
+    }
+
+    /**
+     * Listener receiving batches of updates.
+     */
+    public interface BatchListener<K, V> {
+        /**
+         * @param range Key range.
+         * @param updates Updates in the order they were received.
+         */
+        public void onBatch(int range, List<Update<K, V>> updates);
+    }
+
+    /** Batch listener. */
+    private final BatchListener<K, V> lsnr;
+
+    /** Overflow policy. */
+    private final OverflowPolicy plc;
+
+    /** Maximum number of events in a batch. */
+    private final int batchSize;
+
+    /** Delay before a range is drained in milliseconds. */
+    private final long window;
+
+    /** Key ranges. */
+    private final List<Range> ranges;
+
+    /** Workers. */
+    private final ScheduledExecutorService exec;
+
+    /** Closed flag. */
+    private volatile boolean closed;
+
+    /** Number of received updates. */
+    private final AtomicLong received = new AtomicLong();
+
+    /** Number of delivered updates. */
+    private final AtomicLong delivered = new AtomicLong();
+
+    /** Number of updates merged into pending ones. */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /** Number of dropped updates. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Number of times an update found its range buffer full. */
+    private final AtomicLong overflows = new AtomicLong();
+
+    /** Total time updates spent in buffers, in nanoseconds. */
+    private final AtomicLong totalLag = new AtomicLong();
+
+    /** Maximum time an update spent in buffer, in nanoseconds. */
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /**
+     * @param lsnr Batch listener.
+     * @param plc Overflow policy.
+     * @param capacity Total buffer capacity, split evenly between key ranges.
+     * @param rangeCnt Number of key ranges.
+     * @param batchSize Maximum number of events in a batch.
+     * @param window Delay before a range is drained in milliseconds, {@code 0} to drain immediately.
+     * @param threads Number of worker threads.
+     */
+    public BatchingContinuousQueryListener(BatchListener<K, V> lsnr, OverflowPolicy plc, int capacity, int rangeCnt,
+        int batchSize, long window, int threads) {
+        if (capacity < rangeCnt || rangeCnt <= 0 || batchSize <= 0 || window < 0 || threads <= 0)
+            throw new IllegalArgumentException("Invalid buffer configuration [capacity=" + capacity +
+                ", rangeCnt=" + rangeCnt + ", batchSize=" + batchSize + ", window=" + window +
+                ", threads=" + threads + ']');
+
+        this.lsnr = lsnr;
+        this.plc = plc;
+        this.batchSize = batchSize;
+        this.window = window;
+
+        ranges = new ArrayList<>(rangeCnt);
+
+        for (int i = 0; i < rangeCnt; i++)
+            ranges.add(new Range(i, capacity / rangeCnt));
+
+        exec = Executors.newScheduledThreadPool(threads);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void onUpdated(Iterable<CacheEntryEvent<? extends K, ? extends V>> evts) {
+        for (CacheEntryEvent<? extends K, ? extends V> e : evts) {
+            if (closed)
+                return;
+
+            received.incrementAndGet();
+
+            K key = e.getKey();
+
+            Range range = ranges.get((key.hashCode() & Integer.MAX_VALUE) % ranges.size());
+
+            try {
+                range.add(new Update<K, V>(key, e.getOldValue(), e.getValue(), e.getEventType()));
+            }
+            catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+
+                dropped.incrementAndGet();
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting updates, delivers pending ones and stops workers.
+     */
+    @Override public void close() throws InterruptedException {
+        closed = true;
+
+        for (Range range : ranges)
+            range.wakeUp();
+
+        exec.shutdown();
+        exec.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        // Deliver updates which were not scheduled before shutdown.
+        for (Range range : ranges)
+            range.flush();
+    }
+
+    /**
+     * @return Number of received updates.
+     */
+    public long receivedCount() {
+        return received.get();
+    }
+
+    /**
+     * @return Number of delivered updates.
+     */
+    public long deliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return Number of updates merged into pending updates of the same key.
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return Number of dropped updates.
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Number of times an update found its range buffer full.
+     */
+    public long overflowCount() {
+        return overflows.get();
+    }
+
+    /**
+     * @return Number of updates waiting for delivery.
+     */
+    public int pendingCount() {
+        int res = 0;
+
+        for (Range range : ranges)
+            res += range.size();
+
+        return res;
+    }
+
+    /**
+     * @return Current lag, i.e. age of the oldest pending update, in milliseconds.
+     */
+    public long currentLag() {
+        long now = System.nanoTime();
+        long res = 0;
+
+        for (Range range : ranges)
+            res = Math.max(res, range.age(now));
+
+        return TimeUnit.NANOSECONDS.toMillis(res);
+    }
+
+    /**
+     * @return Average time between receiving and delivering an update, in milliseconds.
+     */
+    public double averageLag() {
+        long cnt = delivered.get();
+
+        return cnt == 0 ? 0 : totalLag.get() / 1_000_000.0 / cnt;
+    }
+
+    /**
+     * @return Maximum time between receiving and delivering an update, in milliseconds.
+     */
+    public long maximumLag() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLag.get());
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "BatchingContinuousQueryListener [plc=" + plc +
+            ", received=" + receivedCount() +
+            ", delivered=" + deliveredCount() +
+            ", coalesced=" + coalescedCount() +
+            ", dropped=" + droppedCount() +
+            ", overflows=" + overflowCount() +
+            ", pending=" + pendingCount() +
+            ", curLag=" + currentLag() +
+            ", avgLag=" + String.format("%.2f", averageLag()) +
+            ", maxLag=" + maximumLag() + ']';
+    }
+
+    /**
+     * @param batch Delivered batch.
+     */
+    private void onDelivered(List<Update<K, V>> batch) {
+        long now = System.nanoTime();
+
+        for (Update<K, V> u : batch) {
+            long lag = now - u.receiveTime;
+
+            totalLag.addAndGet(lag);
+
+            long max = maxLag.get();
+
+            while (lag > max && !maxLag.compareAndSet(max, lag))
+                max = maxLag.get();
+        }
+
+        delivered.addAndGet(batch.size());
+    }
+
+    /**
+     * Buffer of a key range.
+     */
+    private class Range implements Runnable {
+        /** Range index. */
+        private final int idx;
+
+        /** Capacity. */
+        private final int capacity;
+
+        /** Pending updates. */
+        private final ArrayDeque<Update<K, V>> buf;
+
+        /** Pending updates by key, used by {@link OverflowPolicy#COALESCE} only. */
+        private final Map<K, Update<K, V>> pending;
+
+        /** Lock. */
+        private final Lock lock = new ReentrantLock();
+
+        /** Condition signalled when buffer has free space. */
+        private final Condition notFull = lock.newCondition();
+
+        /** Whether drain is scheduled or running. */
+        private boolean scheduled;
+
+        /**
+         * @param idx Range index.
+         * @param capacity Capacity.
+         */
+        private Range(int idx, int capacity) {
+            this.idx = idx;
+            this.capacity = capacity;
+
+            buf = new ArrayDeque<>(capacity);
+            pending = plc == OverflowPolicy.COALESCE ? new HashMap<K, Update<K, V>>() : null;
+        }
+
+        /**
+         * @param u Update.
+         * @throws InterruptedException If interrupted while waiting for free space.
+         */
+        private void add(Update<K, V> u) throws InterruptedException {
+            lock.lock();
+
+            try {
+                if (pending != null) {
+                    Update<K, V> prev = pending.get(u.key);
+
+                    if (prev != null) {
+                        prev.merge(u);
+
+                        coalesced.incrementAndGet();
+
+                        return;
+                    }
+                }
+
+                if (buf.size() >= capacity) {
+                    overflows.incrementAndGet();
+
+                    if (plc == OverflowPolicy.DROP_OLDEST) {
+                        buf.poll();
+
+                        dropped.incrementAndGet();
+                    }
+                    else {
+                        while (buf.size() >= capacity && !closed)
+                            notFull.await();
+
+                        if (closed) {
+                            dropped.incrementAndGet();
+
+                            return;
+                        }
+                    }
+                }
+
+                buf.add(u);
+
+                if (pending != null)
+                    pending.put(u.key, u);
+
+                if (!scheduled && !closed) {
+                    try {
+                        exec.schedule(this, window, TimeUnit.MILLISECONDS);
+
+                        scheduled = true;
+                    }
+                    catch (RejectedExecutionException ignored) {
+                        // Closed concurrently, update will be delivered on close.
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            List<Update<K, V>> batch = poll();
+
+            if (!batch.isEmpty())
+                deliver(batch);
+
+            lock.lock();
+
+            try {
+                scheduled = false;
+
+                if (!buf.isEmpty() && !closed) {
+                    try {
+                        exec.execute(this);
+
+                        scheduled = true;
+                    }
+                    catch (RejectedExecutionException ignored) {
+                        // Closed concurrently, remaining updates will be delivered on close.
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Delivers all pending updates in the calling thread.
+         */
+        private void flush() {
+            for (List<Update<K, V>> batch = poll(); !batch.isEmpty(); batch = poll())
+                deliver(batch);
+        }
+
+        /**
+         * @return Next batch, possibly empty.
+         */
+        private List<Update<K, V>> poll() {
+            lock.lock();
+
+            try {
+                List<Update<K, V>> batch = new ArrayList<>(Math.min(batchSize, buf.size()));
+
+                while (batch.size() < batchSize && !buf.isEmpty()) {
+                    Update<K, V> u = buf.poll();
+
+                    if (pending != null)
+                        pending.remove(u.key);
+
+                    batch.add(u);
+                }
+
+                notFull.signalAll();
+
+                return batch;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @param batch Batch.
+         */
+        private void deliver(List<Update<K, V>> batch) {
+            try {
+                lsnr.onBatch(idx, Collections.unmodifiableList(batch));
+            }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            onDelivered(batch);
+        }
+
+        /**
+         * Wakes up notification threads waiting for free space.
+         */
+        private void wakeUp() {
+            lock.lock();
+
+            try {
+                notFull.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return Number of pending updates.
+         */
+        private int size() {
+            lock.lock();
+
+            try {
+                return buf.size();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @param now Current time in nanoseconds.
+         * @return Age of the oldest pending update in nanoseconds.
+         */
+        private long age(long now) {
+            lock.lock();
+
+            try {
+                Update<K, V> u = buf.peek();
+
+                return u == null ? 0 : now - u.receiveTime;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Buffered cache update.
+     */
+    public static class Update<K, V> {
+        /** Key. */
+        private final K key;
+
+        /** Old value. */
+        private final V oldVal;
+
+        /** New value. */
+        private V val;
+
+        /** Event type. */
+        private EventType type;
+
+        /** Number of updates merged into this one. */
+        private int merged = 1;
+
+        /** Time the update was received in nanoseconds. */
+        private final long receiveTime = System.nanoTime();
+
+        /**
+         * @param key Key.
+         * @param oldVal Old value.
+         * @param val New value.
+         * @param type Event type.
+         */
+        private Update(K key, V oldVal, V val, EventType type) {
+            this.key = key;
+            this.oldVal = oldVal;
+            this.val = val;
+            this.type = type;
+        }
+
+        /**
+         * @param u Later update of the same key.
+         */
+        private void merge(Update<K, V> u) {
+            val = u.val;
+            type = u.type;
+
+            merged += u.merged;
+        }
+
+        /**
+         * @return Key.
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return Value before the first of the merged updates.
+         */
+        public V getOldValue() {
+            return oldVal;
+        }
+
+        /**
+         * @return Value after the last of the merged updates.
+         */
+        public V getValue() {
+            return val;
+        }
+
+        /**
+         * @return Type of the last of the merged updates.
+         */
+        public EventType getEventType() {
+            return type;
+        }
+
+        /**
+         * @return Number of cache updates this update represents.
+         */
+        public int getMergedCount() {
+            return merged;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return "Update [key=" + key + ", oldVal=" + oldVal + ", val=" + val + ", type=" + type +
+                ", merged=" + merged + ']';
+        }
+    }
+}
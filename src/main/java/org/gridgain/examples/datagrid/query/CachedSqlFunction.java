@@ -0,0 +1,211 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Base class for expensive custom SQL functions. Static methods annotated with
+ * {@link org.apache.ignite.cache.query.annotations.QuerySqlFunction} delegate to an instance of this class,
+ * which adds:
+ * <ul>
+ *     <li>memoization of deterministic functions in a bounded per-node LRU cache;</li>
+ *     <li>batch evaluation of array arguments, where only cache misses are passed
+ *     to {@link #evaluateBatch(List)} in a single call;</li>
+ *     <li>call count, cache hit and latency metrics.</li>
+ * </ul>
+ * Instances should be registered in {@link SqlFunctionRegistry} so that metrics can be collected by name.
+ */
+public abstract class CachedSqlFunction<T, R> {
+    /** Function name. */
+    private final String name;
+
+    /** Memoized results, {@code null} if the function is not deterministic. */
+    private final Map<T, R> cache;
+
+    /** Number of calls, including every element of batch calls. */
+    private final AtomicLong calls = new AtomicLong();
+
+    /** Number of calls served from cache. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Number of batch calls. */
+    private final AtomicLong batches = new AtomicLong();
+
+    /** Number of evaluated arguments. */
+    private final AtomicLong evals = new AtomicLong();
+
+    /** Total evaluation time in nanoseconds. */
+    private final AtomicLong evalTime = new AtomicLong();
+
+    /**
+     * @param name Function name.
+     * @param cacheSize Maximum number of memoized results, {@code 0} if the function is not deterministic.
+     */
+    protected CachedSqlFunction(String name, final int cacheSize) {
+        this.name = name;
+
+        if (cacheSize > 0) {
+            cache = Collections.synchronizedMap(new LinkedHashMap<T, R>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<T, R> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+        }
+        else
+            cache = null;
+    }
+
+    /**
+     * @return Function name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Evaluates the function for a single argument.
+     *
+     * @param arg Argument.
+     * @return Result.
+     */
+    protected abstract R evaluate(T arg);
+
+    /**
+     * Evaluates the function for several arguments at once. Override when the function can amortize
+     * its cost over a batch, default implementation evaluates arguments one by one.
+     *
+     * @param args Arguments.
+     * @return Results in the same order as arguments.
+     */
+    protected List<R> evaluateBatch(List<T> args) {
+        List<R> res = new ArrayList<>(args.size());
+
+        for (T arg : args)
+            res.add(evaluate(arg));
+
+        return res;
+    }
+
+    /**
+     * Applies the function to a single argument.
+     *
+     * @param arg Argument.
+     * @return Result.
+     */
+    public R apply(T arg) {
+        calls.incrementAndGet();
+
+        if (cache != null && arg != null) {
+            R res = cache.get(arg);
+
+            if (res != null) {
+                hits.incrementAndGet();
+
+                return res;
+            }
+        }
+
+        long start = System.nanoTime();
+
+        R res = evaluate(arg);
+
+        evalTime.addAndGet(System.nanoTime() - start);
+        evals.incrementAndGet();
+
+        if (cache != null && arg != null && res != null)
+            cache.put(arg, res);
+
+        return res;
+    }
+
+    /**
+     * Applies the function to an array of arguments, which is how H2 passes {@code ARRAY} values.
+     *
+     * @param args Arguments.
+     * @return Results in the same order as arguments.
+     */
+    @SuppressWarnings("unchecked")
+    public Object[] applyAll(Object[] args) {
+        if (args == null)
+            return null;
+
+        calls.addAndGet(args.length);
+        batches.incrementAndGet();
+
+        Object[] res = new Object[args.length];
+
+        List<T> misses = new ArrayList<>();
+        List<Integer> missIdxs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            T arg = (T)args[i];
+
+            R r = cache != null && arg != null ? cache.get(arg) : null;
+
+            if (r != null) {
+                hits.incrementAndGet();
+
+                res[i] = r;
+            }
+            else {
+                misses.add(arg);
+                missIdxs.add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long start = System.nanoTime();
+
+            List<R> evaluated = evaluateBatch(misses);
+
+            evalTime.addAndGet(System.nanoTime() - start);
+            evals.addAndGet(misses.size());
+
+            if (evaluated == null || evaluated.size() != misses.size())
+                throw new IllegalStateException("Batch evaluation of function " + name + " returned " +
+                    (evaluated == null ? "null" : evaluated.size() + " results") + " for " + misses.size() +
+                    " arguments.");
+
+            for (int i = 0; i < misses.size(); i++) {
+                T arg = misses.get(i);
+                R r = evaluated.get(i);
+
+                res[missIdxs.get(i)] = r;
+
+                if (cache != null && arg != null && r != null)
+                    cache.put(arg, r);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * @return Snapshot of function metrics on this node.
+     */
+    public SqlFunctionMetrics metrics() {
+        return new SqlFunctionMetrics(name, calls.get(), hits.get(), batches.get(), evals.get(), evalTime.get(),
+            cache == null ? 0 : cache.size());
+    }
+}
@@ -27,10 +27,14 @@ import org.apache.ignite.cache.query.*;
 
 import javax.cache.*;
 import javax.cache.event.*;
+import java.util.*;
 
 /**
  * This examples demonstrates continuous query API.
  * <p>
+ * Update notifications are handed over to {@link BatchingContinuousQueryListener}, so the listener is called
+ * from its own worker pool in batches and repeated updates of the same key are coalesced.
+ * <p>
  * Remote nodes should always be started with special configuration file which
  * enables P2P class loading: {@code 'ggstart.{sh|bat} ADVANCED-EXAMPLES-DIR/config/example-ignite.xml'}.
  */
@@ -65,13 +69,24 @@ public class ContinuousQueryExample {
                     }
                 });
 
-                // Callback that is called locally when update notifications are received.
-                qry.setLocalListener(new CacheEntryUpdatedListener<Integer, String>() {
-                    @Override public void onUpdated(Iterable<CacheEntryEvent<? extends Integer, ? extends String>> events) {
-                        for (CacheEntryEvent<? extends Integer, ? extends String> e : events)
-                            System.out.println("Queried entry [key=" + e.getKey() + ", val=" + e.getValue() + ']');
-                    }
-                });
+                // Callback that is called from worker pool when a batch of update notifications is ready.
+                BatchingContinuousQueryListener<Integer, String> lsnr = new BatchingContinuousQueryListener<>(
+                    new BatchingContinuousQueryListener.BatchListener<Integer, String>() {
+                        @Override public void onBatch(int range,
+                            List<BatchingContinuousQueryListener.Update<Integer, String>> updates) {
+                            for (BatchingContinuousQueryListener.Update<Integer, String> u : updates)
+                                System.out.println("Queried entry [range=" + range + ", key=" + u.getKey() +
+                                    ", val=" + u.getValue() + ", merged=" + u.getMergedCount() + ']');
+                        }
+                    },
+                    BatchingContinuousQueryListener.OverflowPolicy.COALESCE,
+                    /*capacity*/1024,
+                    /*key ranges*/4,
+                    /*batch size*/64,
+                    /*window*/100,
+                    /*threads*/2);
+
+                qry.setLocalListener(lsnr);
 
                 qry.setInitialQuery(new ScanQuery<Integer, String>());
 
@@ -80,13 +95,20 @@ public class ContinuousQueryExample {
                     for (Cache.Entry<Integer, String> e : cur)
                         System.out.println("Iterated entry [key=" + e.getKey() + ", val=" + e.getValue() + ']');
 
-                    // Add a few more keys and watch more query notifications.
-                    for (int i = keyCnt; i < keyCnt + 5; i++)
-                        cache.put(i, Integer.toString(i));
+                    // Add a few more keys and update them several times to watch notifications being coalesced.
+                    for (int n = 0; n < 3; n++) {
+                        for (int i = keyCnt; i < keyCnt + 5; i++)
+                            cache.put(i, i + "-" + n);
+                    }
 
                     // Wait for a while while callback is notified about remaining puts.
                     Thread.sleep(2000);
                 }
+                finally {
+                    lsnr.close();
+                }
+
+                System.out.println(lsnr);
             }
         }
     }
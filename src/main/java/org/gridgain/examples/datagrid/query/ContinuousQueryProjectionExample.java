@@ -0,0 +1,108 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import org.apache.ignite.*;
+import org.apache.ignite.configuration.*;
+import org.gridgain.examples.model.*;
+
+import java.util.*;
+
+/**
+ * This example demonstrates continuous query which delivers only a projection of updated values.
+ * <p>
+ * {@link ProjectingContinuousQuery} computes salary delta of an updated {@link Person} on the primary node,
+ * so the listener receives a {@link Double} instead of the old and new persons.
+ * <p>
+ * Remote nodes should always be started with special configuration file which
+ * enables P2P class loading: {@code 'ggstart.{sh|bat} ADVANCED-EXAMPLES-DIR/config/example-ignite.xml'}.
+ */
+public class ContinuousQueryProjectionExample {
+    /** Cache name. */
+    private static final String CACHE_NAME = ContinuousQueryProjectionExample.class.getSimpleName();
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            System.out.println();
+            System.out.println(">>> Cache continuous query projection example started.");
+
+            CacheConfiguration<PersonKey, Person> cc = new CacheConfiguration<>(CACHE_NAME);
+
+            try (IgniteCache<PersonKey, Person> cache = ignite.createCache(cc)) {
+                Organization org = new Organization("GridGain");
+
+                List<Person> persons = new ArrayList<>();
+
+                for (int i = 0; i < 10; i++) {
+                    Person p = new Person(org, "First" + i, "Last" + i, 1000 + i * 100, "Long resume text " + i);
+
+                    persons.add(p);
+
+                    cache.put(p.key(), p);
+                }
+
+                try (ProjectingContinuousQuery<PersonKey, Person, Double> qry = new ProjectingContinuousQuery<>(ignite,
+                    CACHE_NAME,
+                    new ProjectingContinuousQuery.Transformer<PersonKey, Person, Double>() {
+                        @Override public Double transform(PersonKey key, Person oldVal, Person val) {
+                            double delta = (val == null ? 0 : val.getSalary()) -
+                                (oldVal == null ? 0 : oldVal.getSalary());
+
+                            // Updates that do not change the salary are not delivered at all.
+                            return delta == 0 ? null : delta;
+                        }
+                    },
+                    new ProjectingContinuousQuery.Listener<PersonKey, Double>() {
+                        @Override public void onUpdated(PersonKey key, Double delta) {
+                            System.out.println("Salary changed [personId=" + key + ", delta=" + delta + ']');
+                        }
+
+                        @Override public void onLost(UUID nodeId, long cnt) {
+                            System.out.println("Salary changes lost [nodeId=" + nodeId + ", cnt=" + cnt + ']');
+                        }
+                    })) {
+                    qry.start();
+
+                    for (Person p : persons) {
+                        Person upd = new Person(p);
+
+                        // Every other person gets a raise, the rest get only resume update.
+                        if (p.getId() % 2 == 0)
+                            upd.setSalary(p.getSalary() * 1.1);
+                        else
+                            upd.setResume(p.getResume() + " Updated.");
+
+                        cache.put(upd.key(), upd);
+                    }
+
+                    // Wait for a while while listener is notified about updates.
+                    Thread.sleep(2000);
+                }
+            }
+        }
+    }
+}
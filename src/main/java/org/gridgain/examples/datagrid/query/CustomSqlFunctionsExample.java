@@ -25,12 +25,17 @@ import org.apache.ignite.*;
 import org.apache.ignite.cache.query.*;
 import org.apache.ignite.cache.query.annotations.*;
 import org.apache.ignite.configuration.*;
+import org.apache.ignite.lang.*;
 
 import java.util.*;
 
 /**
  * This example shows how to implement and configure custom SQL functions.
  * <p>
+ * {@link Functions#square(Integer)} delegates to {@link CachedSqlFunction}, so its results are memoized
+ * in a per-node LRU cache, arrays of arguments are evaluated in one batch by {@link Functions#squares(Object[])}
+ * and call metrics are collected from all nodes at the end of the example.
+ * <p>
  * This example is intended for custom SQL functions demonstration and is not supposed to run with remote nodes,
  * however, it can be launched in cluster. In order to do that make sure all nodes in topology have
  * {@link Functions} on class path and are configured in the same way.
@@ -52,13 +57,39 @@ public class CustomSqlFunctionsExample {
             try (IgniteCache<Integer, Integer> c = ignite.createCache(cc)) {
                 Random r = new Random();
 
-                for (int i = 0; i < 10; i++)
-                    c.put(r.nextInt(1000), r.nextInt(1000));
+                // Values repeat, so most of the function calls are served from cache.
+                for (int i = 0; i < 100; i++)
+                    c.put(i, r.nextInt(20));
 
                 SqlFieldsQuery q = new SqlFieldsQuery("select _val, square(_val) from Integer");
 
-                for (List<?> row : c.query(q))
-                    System.out.println(row.get(0) + " -> " + row.get(1));
+                for (int i = 0; i < 3; i++) {
+                    for (List<?> row : c.query(q))
+                        System.out.println(row.get(0) + " -> " + row.get(1));
+                }
+
+                // Whole array is passed to the function in a single call.
+                Object[] vals = new Object[] {1, 2, 3, 100, 200};
+
+                SqlFieldsQuery batchQ = new SqlFieldsQuery("select squares(?)").setArgs((Object)vals);
+
+                for (List<?> row : c.query(batchQ))
+                    System.out.println(Arrays.toString(vals) + " -> " + Arrays.toString((Object[])row.get(0)));
+
+                Collection<Collection<SqlFunctionMetrics>> metrics = ignite.compute().broadcast(
+                    new IgniteCallable<Collection<SqlFunctionMetrics>>() {
+                        @Override public Collection<SqlFunctionMetrics> call() {
+                            return SqlFunctionRegistry.metrics();
+                        }
+                    });
+
+                Collection<SqlFunctionMetrics> all = new ArrayList<>();
+
+                for (Collection<SqlFunctionMetrics> nodeMetrics : metrics)
+                    all.addAll(nodeMetrics);
+
+                for (SqlFunctionMetrics m : SqlFunctionMetrics.merge(all))
+                    System.out.println(m);
             }
         }
     }
@@ -67,17 +98,38 @@ public class CustomSqlFunctionsExample {
      * Function definitions.
      */
     public static class Functions {
+        /** Square function, memoizing up to 1000 results per node. */
+        private static final CachedSqlFunction<Integer, Integer> SQUARE =
+            new CachedSqlFunction<Integer, Integer>("square", 1000) {
+                @Override protected Integer evaluate(Integer x) {
+                    return x == null ? null : x * x;
+                }
+            };
+
+        static {
+            SqlFunctionRegistry.register(SQUARE);
+        }
+
         /**
          * Function must be a static method.
          *
          * @param x Argument.
          * @return Square of given value.
          */
-        @QuerySqlFunction
-        public static int square(int x) {
-            System.out.println("Custom function has been called with argument: " + x);
+        @QuerySqlFunction(deterministic = true)
+        public static Integer square(Integer x) {
+            return SQUARE.apply(x);
+        }
 
-            return x * x;
+        /**
+         * Batch version of {@link #square(Integer)} accepting SQL {@code ARRAY}.
+         *
+         * @param xs Arguments.
+         * @return Squares of given values.
+         */
+        @QuerySqlFunction(deterministic = true)
+        public static Object[] squares(Object[] xs) {
+            return SQUARE.applyAll(xs);
         }
     }
 }
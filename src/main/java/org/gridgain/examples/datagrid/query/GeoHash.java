@@ -0,0 +1,173 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import com.vividsolutions.jts.geom.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Geohash-like grid over a fixed rectangular area. Every point is mapped to a cell whose ID is built by
+ * interleaving the bits of the cell column and row, so cells sharing an ID prefix are spatially close.
+ * <p>
+ * Used by {@link SpatialKey} to colocate spatially close entries and by {@link SpatialQueryRouter}
+ * to find the cells touched by a query geometry.
+ */
+public class GeoHash implements Serializable {
+    /** */
+    private static final long serialVersionUID = 0L;
+
+    /** Minimum X coordinate of the covered area. */
+    private final double minX;
+
+    /** Minimum Y coordinate of the covered area. */
+    private final double minY;
+
+    /** Maximum X coordinate of the covered area. */
+    private final double maxX;
+
+    /** Maximum Y coordinate of the covered area. */
+    private final double maxY;
+
+    /** Number of bits per axis, i.e. geohash prefix length is twice this value. */
+    private final int bits;
+
+    /**
+     * @param area Area covered by the grid. Points outside are clamped to the border cells.
+     * @param bits Number of bits per axis, from 1 to 15.
+     */
+    public GeoHash(Envelope area, int bits) {
+        if (area.isNull() || area.getWidth() <= 0 || area.getHeight() <= 0)
+            throw new IllegalArgumentException("Area must have positive width and height: " + area);
+
+        if (bits < 1 || bits > 15)
+            throw new IllegalArgumentException("Bits per axis must be between 1 and 15: " + bits);
+
+        minX = area.getMinX();
+        minY = area.getMinY();
+        maxX = area.getMaxX();
+        maxY = area.getMaxY();
+
+        this.bits = bits;
+    }
+
+    /**
+     * @return Number of cells per axis.
+     */
+    public int cellsPerAxis() {
+        return 1 << bits;
+    }
+
+    /**
+     * @param geo Geometry.
+     * @return Cell of the geometry centroid.
+     */
+    public int cell(Geometry geo) {
+        Point centroid = geo.getCentroid();
+
+        return cell(centroid.getX(), centroid.getY());
+    }
+
+    /**
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     * @return Cell containing the point.
+     */
+    public int cell(double x, double y) {
+        return interleave(column(x), row(y));
+    }
+
+    /**
+     * Returns all cells intersecting the given envelope.
+     *
+     * @param env Envelope.
+     * @param maxCells Maximum number of cells to return.
+     * @return Cells or {@code null} if the envelope covers more than {@code maxCells} cells.
+     */
+    public Collection<Integer> cells(Envelope env, int maxCells) {
+        int col0 = column(env.getMinX());
+        int col1 = column(env.getMaxX());
+        int row0 = row(env.getMinY());
+        int row1 = row(env.getMaxY());
+
+        if ((long)(col1 - col0 + 1) * (row1 - row0 + 1) > maxCells)
+            return null;
+
+        Collection<Integer> cells = new ArrayList<>();
+
+        for (int col = col0; col <= col1; col++) {
+            for (int row = row0; row <= row1; row++)
+                cells.add(interleave(col, row));
+        }
+
+        return cells;
+    }
+
+    /**
+     * @param x X coordinate.
+     * @return Cell column.
+     */
+    private int column(double x) {
+        return index(x, minX, maxX);
+    }
+
+    /**
+     * @param y Y coordinate.
+     * @return Cell row.
+     */
+    private int row(double y) {
+        return index(y, minY, maxY);
+    }
+
+    /**
+     * @param v Coordinate.
+     * @param min Minimum coordinate.
+     * @param max Maximum coordinate.
+     * @return Index of the grid line containing the coordinate.
+     */
+    private int index(double v, double min, double max) {
+        int n = cellsPerAxis();
+
+        int idx = (int)((v - min) / (max - min) * n);
+
+        return Math.max(0, Math.min(n - 1, idx));
+    }
+
+    /**
+     * Interleaves column and row bits, starting from the most significant column bit as geohash does.
+     *
+     * @param col Column.
+     * @param row Row.
+     * @return Cell ID.
+     */
+    private int interleave(int col, int row) {
+        int res = 0;
+
+        for (int i = bits - 1; i >= 0; i--) {
+            res = (res << 1) | ((col >>> i) & 1);
+            res = (res << 1) | ((row >>> i) & 1);
+        }
+
+        return res;
+    }
+}
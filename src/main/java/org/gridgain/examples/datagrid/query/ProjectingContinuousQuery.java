@@ -0,0 +1,480 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cache.*;
+import org.apache.ignite.cache.query.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+
+import javax.cache.*;
+import javax.cache.event.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Continuous query that transforms updates on the data nodes and delivers only the projection to the listener.
+ * <p>
+ * The remote filter applies {@link Transformer} to every update, hands the result (if it is not {@code null}) to
+ * a node-local sender and rejects the update, so the full old and new values never leave the data nodes. The sender
+ * sends projections to the subscriber node in its own thread as ordered messages, so a slow or departed subscriber
+ * never stalls cache updates, and updates of the same key stay in order.
+ * <p>
+ * The filter runs on the primary and backup nodes of the updated key, and projections are sent only from the node
+ * that is primary for the key when it processes the update. Projections carry the partition update counter, and
+ * the subscriber delivers only the first projection of every update, so an update is not duplicated when both the
+ * old and the new primary send it while a partition moves. An update may still be lost if the primary fails before
+ * its projection is sent, or if no node considers itself primary while the partition moves, since backups do not
+ * send projections.
+ * <p>
+ * Projections that cannot be delivered, because the send buffer of a node is full or sending fails, are counted
+ * and reported to {@link Listener#onLost(UUID, long)}.
+ * <p>
+ * Transformer is executed remotely, so it must be serializable and either be on the class path of all nodes or
+ * be loaded with P2P class loading.
+ */
+public class ProjectingContinuousQuery<K, V, T> implements AutoCloseable {
+    /** Maximum number of projections buffered by the sender of a node. */
+    private static final int SEND_BUF_SIZE = 10_000;
+
+    /** Maximum number of projections sent in one message. */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /** Time after which an idle sender stops, in milliseconds. */
+    private static final long SENDER_IDLE_TIMEOUT = 60_000;
+
+    /** Delay before the next send after a failure, in milliseconds. */
+    private static final long SEND_RETRY_DELAY = 100;
+
+    /**
+     * Transforms an update to the projection delivered to the listener.
+     */
+    public interface Transformer<K, V, T> extends Serializable {
+        /**
+         * @param key Key.
+         * @param oldVal Old value or {@code null} if entry has been created.
+         * @param val New value or {@code null} if entry has been removed.
+         * @return Projection or {@code null} to skip the update.
+         */
+        public T transform(K key, V oldVal, V val);
+    }
+
+    /**
+     * Receives projections.
+     */
+    public interface Listener<K, T> {
+        /**
+         * @param key Key.
+         * @param projection Projection.
+         */
+        public void onUpdated(K key, T projection);
+
+        /**
+         * Called when a data node has failed to deliver projections. With backups the same updates may still
+         * have been delivered from another node.
+         *
+         * @param nodeId Data node ID.
+         * @param cnt Number of lost projections.
+         */
+        public void onLost(UUID nodeId, long cnt);
+    }
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Transformer. */
+    private final Transformer<K, V, T> transformer;
+
+    /** Listener. */
+    private final Listener<K, T> lsnr;
+
+    /** Message topic unique for this query. */
+    private final String topic = "PROJECTING_CQ_" + UUID.randomUUID();
+
+    /** Last delivered update counters by partition. */
+    private final Map<Integer, Long> delivered = new HashMap<>();
+
+    /** Local message listener. */
+    private IgniteBiPredicate<UUID, ProjectionBatch<K, T>> msgLsnr;
+
+    /** Continuous query cursor. */
+    private QueryCursor<Cache.Entry<K, V>> cur;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Cache name.
+     * @param transformer Transformer.
+     * @param lsnr Listener.
+     */
+    public ProjectingContinuousQuery(Ignite ignite, String cacheName, Transformer<K, V, T> transformer,
+        Listener<K, T> lsnr) {
+        this.ignite = ignite;
+        this.cacheName = cacheName;
+        this.transformer = transformer;
+        this.lsnr = lsnr;
+    }
+
+    /**
+     * Starts listening for updates.
+     */
+    public void start() {
+        if (cur != null)
+            throw new IllegalStateException("Query is already started.");
+
+        msgLsnr = new IgniteBiPredicate<UUID, ProjectionBatch<K, T>>() {
+            @Override public boolean apply(UUID nodeId, ProjectionBatch<K, T> batch) {
+                onBatch(nodeId, batch);
+
+                return true;
+            }
+        };
+
+        ignite.message().localListen(topic, msgLsnr);
+
+        ContinuousQuery<K, V> qry = new ContinuousQuery<>();
+
+        qry.setRemoteFilter(new ProjectingFilter<>(cacheName, topic, ignite.cluster().localNode().id(), transformer));
+
+        // Filter never passes an update, but local listener is mandatory.
+        qry.setLocalListener(new CacheEntryUpdatedListener<K, V>() {
+            @Override public void onUpdated(Iterable<CacheEntryEvent<? extends K, ? extends V>> evts) {
+                // No-op.
+            }
+        });
+
+        IgniteCache<K, V> cache = ignite.cache(cacheName);
+
+        cur = cache.query(qry);
+    }
+
+    /**
+     * Stops listening for updates. Senders on data nodes stop after {@link #SENDER_IDLE_TIMEOUT}.
+     */
+    @Override public void close() {
+        if (cur != null) {
+            cur.close();
+
+            cur = null;
+        }
+
+        if (msgLsnr != null) {
+            ignite.message().stopLocalListen(topic, msgLsnr);
+
+            msgLsnr = null;
+        }
+    }
+
+    /**
+     * Delivers projections of a batch skipping the ones already delivered from other nodes.
+     *
+     * @param nodeId Sender node ID.
+     * @param batch Batch.
+     */
+    private synchronized void onBatch(UUID nodeId, ProjectionBatch<K, T> batch) {
+        if (batch.lost > 0)
+            lsnr.onLost(nodeId, batch.lost);
+
+        for (Projection<K, T> p : batch.projections) {
+            if (p.cntr >= 0) {
+                Long last = delivered.get(p.part);
+
+                if (last != null && p.cntr <= last)
+                    continue;
+
+                delivered.put(p.part, p.cntr);
+            }
+
+            lsnr.onUpdated(p.key, p.val);
+        }
+    }
+
+    /**
+     * Remote filter handing projections of updates to the node-local sender.
+     */
+    private static class ProjectingFilter<K, V, T> implements CacheEntryEventSerializableFilter<K, V> {
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Message topic. */
+        private final String topic;
+
+        /** Subscriber node ID. */
+        private final UUID subscriberId;
+
+        /** Transformer. */
+        private final Transformer<K, V, T> transformer;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /**
+         * @param cacheName Cache name.
+         * @param topic Message topic.
+         * @param subscriberId Subscriber node ID.
+         * @param transformer Transformer.
+         */
+        private ProjectingFilter(String cacheName, String topic, UUID subscriberId, Transformer<K, V, T> transformer) {
+            this.cacheName = cacheName;
+            this.topic = topic;
+            this.subscriberId = subscriberId;
+            this.transformer = transformer;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean evaluate(CacheEntryEvent<? extends K, ? extends V> evt) {
+            K key = evt.getKey();
+
+            // Backups do not send projections. Duplicates sent by old and new primaries are skipped by counter.
+            if (!ignite.affinity(cacheName).isPrimary(ignite.cluster().localNode(), key))
+                return false;
+
+            T val = transformer.transform(key, evt.getOldValue(), evt.getValue());
+
+            if (val != null) {
+                long cntr = evt instanceof CacheQueryEntryEvent ?
+                    ((CacheQueryEntryEvent<? extends K, ? extends V>)evt).getPartitionUpdateCounter() : -1;
+
+                Projection<K, T> p = new Projection<>(ignite.affinity(cacheName).partition(key), cntr, key, val);
+
+                // Sender stops when idle, in that case the next attempt starts a new one.
+                for (;;) {
+                    if (ProjectionSender.<K, T>get(ignite, topic, subscriberId).add(p))
+                        break;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Node-local sender of projections of a query. Sends buffered projections in batches from its own thread.
+     */
+    private static class ProjectionSender<K, T> implements Runnable {
+        /** Ignite instance. */
+        private final Ignite ignite;
+
+        /** Message topic, also the node-local map key. */
+        private final String topic;
+
+        /** Subscriber node ID. */
+        private final UUID subscriberId;
+
+        /** Buffered projections. */
+        private final BlockingQueue<Projection<K, T>> buf = new ArrayBlockingQueue<>(SEND_BUF_SIZE);
+
+        /** Number of lost projections not reported yet. */
+        private final AtomicLong lost = new AtomicLong();
+
+        /** Stopped flag. */
+        private boolean stopped;
+
+        /**
+         * @param ignite Ignite instance.
+         * @param topic Message topic.
+         * @param subscriberId Subscriber node ID.
+         */
+        private ProjectionSender(Ignite ignite, String topic, UUID subscriberId) {
+            this.ignite = ignite;
+            this.topic = topic;
+            this.subscriberId = subscriberId;
+        }
+
+        /**
+         * Gets or starts the sender of a query on the local node.
+         *
+         * @param ignite Local Ignite instance.
+         * @param topic Message topic.
+         * @param subscriberId Subscriber node ID.
+         * @return Sender.
+         */
+        @SuppressWarnings("unchecked")
+        private static <K, T> ProjectionSender<K, T> get(Ignite ignite, String topic, UUID subscriberId) {
+            ConcurrentMap<String, ProjectionSender<K, T>> locMap = ignite.cluster().nodeLocalMap();
+
+            ProjectionSender<K, T> snd = locMap.get(topic);
+
+            if (snd == null) {
+                ProjectionSender<K, T> old = locMap.putIfAbsent(topic,
+                    snd = new ProjectionSender<>(ignite, topic, subscriberId));
+
+                if (old != null)
+                    snd = old;
+                else {
+                    Thread t = new Thread(snd, "projection-sender-" + topic);
+
+                    t.setDaemon(true);
+
+                    t.start();
+                }
+            }
+
+            return snd;
+        }
+
+        /**
+         * Buffers projection. Never blocks: if the buffer is full, the projection is counted as lost.
+         *
+         * @param p Projection.
+         * @return {@code False} if the sender has stopped.
+         */
+        private synchronized boolean add(Projection<K, T> p) {
+            if (stopped)
+                return false;
+
+            if (!buf.offer(p))
+                lost.incrementAndGet();
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            IgniteMessaging msg = ignite.message(ignite.cluster().forNodeId(subscriberId));
+
+            try {
+                while (true) {
+                    Projection<K, T> first = buf.poll(SENDER_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+
+                    if (first == null) {
+                        if (stopIfIdle())
+                            return;
+
+                        continue;
+                    }
+
+                    List<Projection<K, T>> batch = new ArrayList<>();
+
+                    batch.add(first);
+
+                    buf.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                    long lostCnt = lost.getAndSet(0);
+
+                    try {
+                        msg.sendOrdered(topic, new ProjectionBatch<>(batch, lostCnt), 0);
+                    }
+                    catch (IgniteException ignored) {
+                        if (ignite.cluster().node(subscriberId) == null) {
+                            // Subscriber has left, query will be undeployed.
+                            stop();
+
+                            return;
+                        }
+
+                        // Report the batch as lost with the next successful send.
+                        lost.addAndGet(lostCnt + batch.size());
+
+                        Thread.sleep(SEND_RETRY_DELAY);
+                    }
+                }
+            }
+            catch (InterruptedException ignored) {
+                stop();
+            }
+        }
+
+        /**
+         * @return {@code True} if the sender has been stopped.
+         */
+        private synchronized boolean stopIfIdle() {
+            if (!buf.isEmpty() || lost.get() > 0)
+                return false;
+
+            stop();
+
+            return true;
+        }
+
+        /**
+         * Stops the sender.
+         */
+        private synchronized void stop() {
+            stopped = true;
+
+            ignite.cluster().<String, ProjectionSender<K, T>>nodeLocalMap().remove(topic, this);
+        }
+    }
+
+    /**
+     * Projection of an update.
+     */
+    private static class Projection<K, T> implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Partition. */
+        private final int part;
+
+        /** Partition update counter, {@code -1} if unknown. */
+        private final long cntr;
+
+        /** Key. */
+        private final K key;
+
+        /** Projection. */
+        private final T val;
+
+        /**
+         * @param part Partition.
+         * @param cntr Partition update counter.
+         * @param key Key.
+         * @param val Projection.
+         */
+        private Projection(int part, long cntr, K key, T val) {
+            this.part = part;
+            this.cntr = cntr;
+            this.key = key;
+            this.val = val;
+        }
+    }
+
+    /**
+     * Projections message.
+     */
+    private static class ProjectionBatch<K, T> implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Projections. */
+        private final List<Projection<K, T>> projections;
+
+        /** Number of projections lost since the previous message. */
+        private final long lost;
+
+        /**
+         * @param projections Projections.
+         * @param lost Number of projections lost since the previous message.
+         */
+        private ProjectionBatch(List<Projection<K, T>> projections, long lost) {
+            this.projections = projections;
+            this.lost = lost;
+        }
+    }
+}
@@ -0,0 +1,672 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cache.affinity.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.events.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.gridgain.examples.datagrid.query.UpdateJournalService.*;
+
+/**
+ * Continuous query which can be resumed after a client reconnect without rescanning the whole cache.
+ * <p>
+ * Updates are journaled by {@link UpdateJournalService} which must be deployed on data nodes of the cache
+ * under the given service name. The query remembers the last seen update counter of every partition. On
+ * {@link #start()} and {@link #resume()} every primary node returns updates missed since that counter, or all
+ * entries of the partition if its history is gone (journal has been overwritten or partition has moved).
+ * The first start always scans all partitions, which plays the role of the initial query, and the scan of every
+ * partition is consistent with the update stream that follows it.
+ * <p>
+ * A gap in counters or a new journal epoch detected in the live stream triggers the same procedure for
+ * the affected partition only. The query also listens for discovery events: a joining data node is subscribed
+ * as soon as its service is deployed, so it streams updates once it becomes primary, and partitions whose primary
+ * has changed are synchronized with the new primary. Updates lost in the live stream are found by a periodic
+ * check of journal positions: a partition whose journal stays ahead of the query for two checks in a row is
+ * synchronized as well.
+ */
+public class ResumableContinuousQuery<K, V> implements AutoCloseable {
+    /** Maximum number of attempts to find primary nodes for all partitions. */
+    private static final int MAX_SYNC_ATTEMPTS = 5;
+
+    /** Interval of journal position checks, in milliseconds. */
+    private static final long CHECK_INTERVAL = 5000;
+
+    /** Delay between attempts to subscribe on a joined node, in milliseconds. */
+    private static final long SUBSCRIBE_RETRY_DELAY = 1000;
+
+    /**
+     * Query listener.
+     */
+    public interface Listener<K, V> {
+        /**
+         * @param key Key.
+         * @param val New value or {@code null} if entry has been removed.
+         */
+        public void onUpdated(K key, @Nullable V val);
+
+        /**
+         * Called before entries of a rescanned partition are delivered. Entries of the partition that are not
+         * delivered after this call have been removed.
+         *
+         * @param part Partition.
+         */
+        public void onRescan(int part);
+    }
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Name of deployed {@link UpdateJournalService}. */
+    private final String svcName;
+
+    /** Listener. */
+    private final Listener<K, V> lsnr;
+
+    /** Subscription ID, the same across reconnects. */
+    private final UUID subId = UUID.randomUUID();
+
+    /** Message topic. */
+    private final String topic = "RESUMABLE_CQ_" + subId;
+
+    /** Last seen positions by partition. */
+    private final Map<Integer, Position> positions = new HashMap<>();
+
+    /** Primary nodes by partition, as of the last topology change seen. */
+    private final Map<Integer, UUID> primaries = new HashMap<>();
+
+    /** Live updates received while their partitions are being synchronized. */
+    private final Map<Integer, List<Update<K, V>>> buffered = new HashMap<>();
+
+    /** Executor synchronizing partitions with gaps in live stream and checking journal positions. */
+    private final ScheduledExecutorService resyncExec = Executors.newSingleThreadScheduledExecutor();
+
+    /** Partitions that were behind their journals at the previous position check. */
+    private Set<Integer> lagging = Collections.emptySet();
+
+    /** Position check future. */
+    private ScheduledFuture<?> checkFut;
+
+    /** Serializes partition synchronization of the caller of {@link #resume()} and the resync executor. */
+    private final Object syncMux = new Object();
+
+    /** Local message listener. */
+    private IgniteBiPredicate<UUID, Update<K, V>> msgLsnr;
+
+    /** Discovery event listener. */
+    private IgnitePredicate<Event> discoLsnr;
+
+    /** Number of missed updates replayed from journals. */
+    private long replayed;
+
+    /** Number of rescanned partitions. */
+    private long rescanned;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Cache name.
+     * @param svcName Name of deployed {@link UpdateJournalService}.
+     * @param lsnr Listener.
+     */
+    public ResumableContinuousQuery(Ignite ignite, String cacheName, String svcName, Listener<K, V> lsnr) {
+        this.ignite = ignite;
+        this.cacheName = cacheName;
+        this.svcName = svcName;
+        this.lsnr = lsnr;
+    }
+
+    /**
+     * Starts the query, delivering all cache entries first.
+     */
+    public void start() {
+        resume();
+    }
+
+    /**
+     * Resumes the query after client reconnect, delivering missed updates.
+     */
+    public void resume() {
+        synchronized (this) {
+            if (msgLsnr != null)
+                ignite.message().stopLocalListen(topic, msgLsnr);
+
+            msgLsnr = new IgniteBiPredicate<UUID, Update<K, V>>() {
+                @Override public boolean apply(UUID nodeId, Update<K, V> u) {
+                    onMessage(u);
+
+                    return true;
+                }
+            };
+
+            ignite.message().localListen(topic, msgLsnr);
+
+            if (discoLsnr == null) {
+                discoLsnr = new IgnitePredicate<Event>() {
+                    @Override public boolean apply(Event evt) {
+                        onTopologyChanged((DiscoveryEvent)evt);
+
+                        return true;
+                    }
+                };
+
+                ignite.events().localListen(discoLsnr, EventType.EVT_NODE_JOINED, EventType.EVT_NODE_LEFT,
+                    EventType.EVT_NODE_FAILED);
+            }
+
+            if (checkFut == null) {
+                checkFut = resyncExec.scheduleWithFixedDelay(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            checkPositions();
+                        }
+                        catch (IgniteException e) {
+                            // Keep checking, the cluster may be reconnecting.
+                            System.err.println("Failed to check journal positions: " + e.getMessage());
+                        }
+                    }
+                }, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        Collection<Integer> parts = new ArrayList<>();
+
+        for (int p = 0; p < ignite.affinity(cacheName).partitions(); p++)
+            parts.add(p);
+
+        // Remember current primaries before the sync, so that changes made during the sync are caught later.
+        changedPrimaries();
+
+        sync(parts);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() {
+        resyncExec.shutdownNow();
+
+        synchronized (this) {
+            if (msgLsnr != null) {
+                ignite.message().stopLocalListen(topic, msgLsnr);
+
+                msgLsnr = null;
+            }
+
+            if (discoLsnr != null) {
+                ignite.events().stopLocalListen(discoLsnr);
+
+                discoLsnr = null;
+            }
+        }
+
+        ignite.compute(ignite.cluster().forDataNodes(cacheName)).broadcast(new UnsubscribeRunnable(svcName, subId));
+    }
+
+    /**
+     * @return Number of missed updates replayed from journals.
+     */
+    public synchronized long replayedCount() {
+        return replayed;
+    }
+
+    /**
+     * @return Number of rescanned partitions.
+     */
+    public synchronized long rescannedCount() {
+        return rescanned;
+    }
+
+    /**
+     * Compares journal positions on primary nodes with the last seen ones and synchronizes partitions which
+     * have been behind for two checks in a row. A single check may see updates that are still in flight.
+     */
+    private void checkPositions() {
+        Collection<Map<Integer, Position>> res = ignite.compute(ignite.cluster().forDataNodes(cacheName))
+            .broadcast(new PositionsCallable(svcName));
+
+        Set<Integer> behind = new HashSet<>();
+
+        synchronized (this) {
+            for (Map<Integer, Position> nodeRes : res) {
+                for (Map.Entry<Integer, Position> e : nodeRes.entrySet()) {
+                    Integer p = e.getKey();
+
+                    if (buffered.containsKey(p))
+                        continue;
+
+                    Position pos = positions.get(p);
+                    Position journalPos = e.getValue();
+
+                    if (pos == null || !pos.getEpoch().equals(journalPos.getEpoch()) ||
+                        pos.getCounter() < journalPos.getCounter())
+                        behind.add(p);
+                }
+            }
+        }
+
+        Set<Integer> parts = new HashSet<>(behind);
+
+        parts.retainAll(lagging);
+
+        lagging = behind;
+
+        if (!parts.isEmpty())
+            sync(parts);
+    }
+
+    /**
+     * Subscribes on a joined data node and synchronizes partitions whose primary has changed.
+     *
+     * @param evt Discovery event.
+     */
+    private void onTopologyChanged(DiscoveryEvent evt) {
+        final ClusterNode node = evt.eventNode();
+
+        final boolean joined = evt.type() == EventType.EVT_NODE_JOINED;
+
+        try {
+            resyncExec.submit(new Runnable() {
+                @Override public void run() {
+                    if (joined)
+                        subscribe(node);
+
+                    Collection<Integer> changed = changedPrimaries();
+
+                    if (!changed.isEmpty())
+                        sync(changed);
+                }
+            });
+        }
+        catch (RejectedExecutionException ignored) {
+            // Query is closed.
+        }
+    }
+
+    /**
+     * Subscribes on a joined node once the service is deployed there. The node may become primary for some
+     * partitions only after rebalancing, and its first update then comes with a new epoch and triggers the sync.
+     *
+     * @param node Joined node.
+     */
+    private void subscribe(ClusterNode node) {
+        for (int i = 0; i < MAX_SYNC_ATTEMPTS; i++) {
+            if (ignite.cluster().forDataNodes(cacheName).node(node.id()) == null)
+                return; // Not a data node or has already left.
+
+            try {
+                if (ignite.compute(ignite.cluster().forNode(node)).call(
+                    new SubscribeCallable(svcName, subId, ignite.cluster().localNode().id(), topic)))
+                    return;
+
+                Thread.sleep(SUBSCRIBE_RETRY_DELAY);
+            }
+            catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+
+                return;
+            }
+            catch (IgniteException e) {
+                if (ignite.cluster().node(node.id()) == null)
+                    return;
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Updates remembered primary nodes.
+     *
+     * @return Partitions whose primary has changed since the previous call.
+     */
+    private synchronized Collection<Integer> changedPrimaries() {
+        Affinity<Object> aff = ignite.affinity(cacheName);
+
+        Collection<Integer> changed = new ArrayList<>();
+
+        for (int p = 0; p < aff.partitions(); p++) {
+            ClusterNode primary = aff.mapPartitionToNode(p);
+
+            UUID id = primary == null ? null : primary.id();
+
+            UUID old = primaries.put(p, id);
+
+            if (old != null && !old.equals(id))
+                changed.add(p);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Synchronizes partitions with their primary nodes.
+     *
+     * @param parts Partitions.
+     */
+    private void sync(Collection<Integer> parts) {
+        synchronized (syncMux) {
+            sync0(parts);
+        }
+    }
+
+    /**
+     * Must be called under {@link #syncMux}.
+     *
+     * @param parts Partitions.
+     */
+    private void sync0(Collection<Integer> parts) {
+        Set<Integer> remaining = new HashSet<>(parts);
+
+        synchronized (this) {
+            for (Integer p : remaining) {
+                if (!buffered.containsKey(p))
+                    buffered.put(p, new ArrayList<Update<K, V>>());
+            }
+        }
+
+        try {
+            for (int i = 0; i < MAX_SYNC_ATTEMPTS && !remaining.isEmpty(); i++) {
+                Map<Integer, Position> req = new HashMap<>();
+
+                synchronized (this) {
+                    for (Integer p : remaining)
+                        req.put(p, positions.get(p));
+                }
+
+                // Primary may change between mapping and execution, so partitions are checked on the nodes.
+                Collection<Collection<Snapshot<K, V>>> res = ignite.compute(ignite.cluster().forDataNodes(cacheName))
+                    .broadcast(new SyncCallable<K, V>(svcName, subId, ignite.cluster().localNode().id(), topic, req));
+
+                for (Collection<Snapshot<K, V>> nodeRes : res) {
+                    for (Snapshot<K, V> s : nodeRes) {
+                        if (remaining.remove(s.getPartition()))
+                            apply(s);
+                    }
+                }
+            }
+
+            if (!remaining.isEmpty())
+                throw new IgniteException("Failed to find primary nodes for partitions: " + remaining);
+        }
+        finally {
+            synchronized (this) {
+                for (Integer p : parts) {
+                    List<Update<K, V>> live = buffered.remove(p);
+
+                    if (live != null) {
+                        for (Update<K, V> u : live)
+                            onMessage(u);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param s Partition snapshot.
+     */
+    private synchronized void apply(Snapshot<K, V> s) {
+        Position pos = positions.get(s.getPartition());
+
+        if (s.isRescan()) {
+            lsnr.onRescan(s.getPartition());
+
+            for (Map.Entry<K, V> e : s.getEntries().entrySet())
+                lsnr.onUpdated(e.getKey(), e.getValue());
+
+            rescanned++;
+        }
+        else {
+            for (Update<K, V> u : s.getUpdates()) {
+                if (u.getCounter() > pos.getCounter()) {
+                    lsnr.onUpdated(u.getKey(), u.getValue());
+
+                    replayed++;
+                }
+            }
+        }
+
+        positions.put(s.getPartition(), s.getPosition());
+    }
+
+    /**
+     * @param u Live update.
+     */
+    private synchronized void onMessage(Update<K, V> u) {
+        int p = u.getPartition();
+
+        List<Update<K, V>> buf = buffered.get(p);
+
+        if (buf != null) {
+            buf.add(u);
+
+            return;
+        }
+
+        Position pos = positions.get(p);
+
+        if (pos != null && pos.getEpoch().equals(u.getEpoch()) && u.getCounter() <= pos.getCounter() + 1) {
+            if (u.getCounter() == pos.getCounter() + 1) {
+                lsnr.onUpdated(u.getKey(), u.getValue());
+
+                positions.put(p, new Position(pos.getEpoch(), u.getCounter()));
+            }
+
+            // Otherwise it is a duplicate of already delivered update.
+            return;
+        }
+
+        // Gap or new epoch, synchronize the partition buffering live updates meanwhile.
+        buf = new ArrayList<>();
+
+        buf.add(u);
+
+        buffered.put(p, buf);
+
+        final Collection<Integer> parts = Collections.singleton(p);
+
+        try {
+            resyncExec.submit(new Runnable() {
+                @Override public void run() {
+                    sync(parts);
+                }
+            });
+        }
+        catch (RejectedExecutionException ignored) {
+            // Query is closed.
+        }
+    }
+
+    /**
+     * Unsubscribes from journal service on a data node.
+     */
+    private static class UnsubscribeRunnable implements IgniteRunnable {
+        /** Service name. */
+        private final String svcName;
+
+        /** Subscription ID. */
+        private final UUID subId;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param svcName Service name.
+         * @param subId Subscription ID.
+         */
+        private UnsubscribeRunnable(String svcName, UUID subId) {
+            this.svcName = svcName;
+            this.subId = subId;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            UpdateJournalService<?, ?> svc = ignite.services().service(svcName);
+
+            if (svc != null)
+                svc.unsubscribe(subId);
+        }
+    }
+
+    /**
+     * Returns journal positions of primary partitions of a data node.
+     */
+    private static class PositionsCallable implements IgniteCallable<Map<Integer, Position>> {
+        /** Service name. */
+        private final String svcName;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param svcName Service name.
+         */
+        private PositionsCallable(String svcName) {
+            this.svcName = svcName;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Map<Integer, Position> call() {
+            UpdateJournalService<?, ?> svc = ignite.services().service(svcName);
+
+            return svc == null ? Collections.<Integer, Position>emptyMap() : svc.positions();
+        }
+    }
+
+    /**
+     * Subscribes to journal service on a data node.
+     */
+    private static class SubscribeCallable implements IgniteCallable<Boolean> {
+        /** Service name. */
+        private final String svcName;
+
+        /** Subscription ID. */
+        private final UUID subId;
+
+        /** Subscriber node ID. */
+        private final UUID nodeId;
+
+        /** Topic. */
+        private final String topic;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param svcName Service name.
+         * @param subId Subscription ID.
+         * @param nodeId Subscriber node ID.
+         * @param topic Topic.
+         */
+        private SubscribeCallable(String svcName, UUID subId, UUID nodeId, String topic) {
+            this.svcName = svcName;
+            this.subId = subId;
+            this.nodeId = nodeId;
+            this.topic = topic;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Boolean call() {
+            UpdateJournalService<?, ?> svc = ignite.services().service(svcName);
+
+            // Service may not be deployed on a just joined node yet.
+            if (svc == null)
+                return false;
+
+            svc.subscribe(subId, nodeId, topic);
+
+            return true;
+        }
+    }
+
+    /**
+     * Subscribes to journal service on a data node and returns snapshots of its primary partitions.
+     */
+    private static class SyncCallable<K, V> implements IgniteCallable<Collection<Snapshot<K, V>>> {
+        /** Service name. */
+        private final String svcName;
+
+        /** Subscription ID. */
+        private final UUID subId;
+
+        /** Subscriber node ID. */
+        private final UUID nodeId;
+
+        /** Topic. */
+        private final String topic;
+
+        /** Last seen positions of requested partitions, {@code null} values for unseen partitions. */
+        private final Map<Integer, Position> positions;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param svcName Service name.
+         * @param subId Subscription ID.
+         * @param nodeId Subscriber node ID.
+         * @param topic Topic.
+         * @param positions Last seen positions of requested partitions.
+         */
+        private SyncCallable(String svcName, UUID subId, UUID nodeId, String topic, Map<Integer, Position> positions) {
+            this.svcName = svcName;
+            this.subId = subId;
+            this.nodeId = nodeId;
+            this.topic = topic;
+            this.positions = positions;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Collection<Snapshot<K, V>> call() {
+            UpdateJournalService<K, V> svc = ignite.services().service(svcName);
+
+            if (svc == null)
+                throw new IgniteException("Update journal service is not deployed on node: " + svcName);
+
+            // Subscribe first, so no update falls between the snapshot and the live stream.
+            svc.subscribe(subId, nodeId, topic);
+
+            Collection<Snapshot<K, V>> res = new ArrayList<>();
+
+            for (Map.Entry<Integer, Position> e : positions.entrySet()) {
+                Snapshot<K, V> s = svc.snapshot(e.getKey(), e.getValue());
+
+                if (s != null)
+                    res.add(s);
+            }
+
+            return res;
+        }
+    }
+}
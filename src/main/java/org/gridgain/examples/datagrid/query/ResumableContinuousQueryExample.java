@@ -0,0 +1,130 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import java.util.Random;
+import javax.cache.CacheException;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteClientDisconnectedException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cluster.ClusterGroup;
+import org.gridgain.examples.ExampleNodeStartup;
+import org.gridgain.examples.clustering.ClientReconnectExample;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Example demonstrates continuous query that is resumed after client reconnect.
+ * <p>
+ * Unlike a plain continuous query with an initial scan query, {@link ResumableContinuousQuery} does not rescan
+ * the whole cache after reconnect. It fetches only the updates missed while the client was disconnected and
+ * rescans only partitions whose history is gone.
+ * <p>
+ * Follow the steps below to see the example in action:
+ * - Start two or more {@link ExampleNodeStartup};
+ * - Start this example;
+ * - Optionally start {@link ClientReconnectExample} which updates the same cache from another client;
+ * - Stop the remote node the client is connected to and wait for client disconnection message;
+ * - Start {@link ExampleNodeStartup} once again and see how many updates were replayed and partitions rescanned.
+ */
+public class ResumableContinuousQueryExample {
+    /** Cache name, the same as in {@link ClientReconnectExample}. */
+    private static final String CACHE_NAME = "test_cache";
+
+    /** Journal service name. */
+    private static final String SVC_NAME = "test_cache_journal";
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     */
+    public static void main(String[] args) throws Exception {
+        Ignition.setClientMode(true);
+
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            if (ignite.cluster().forServers().nodes().size() < 2)
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            IgniteCache<Integer, Integer> cache = ignite.getOrCreateCache(CACHE_NAME);
+
+            // Journal keeps up to 1000 recent updates per partition on its primary node.
+            ClusterGroup dataNodes = ignite.cluster().forDataNodes(CACHE_NAME);
+
+            ignite.services(dataNodes).deployNodeSingleton(SVC_NAME,
+                new UpdateJournalService<Integer, Integer>(CACHE_NAME, 1000));
+
+            ResumableContinuousQuery<Integer, Integer> qry = new ResumableContinuousQuery<>(ignite, CACHE_NAME,
+                SVC_NAME, new ResumableContinuousQuery.Listener<Integer, Integer>() {
+                    @Override public void onUpdated(Integer key, @Nullable Integer val) {
+                        System.out.println("Updated [key=" + key + ", val=" + val + ']');
+                    }
+
+                    @Override public void onRescan(int part) {
+                        System.out.println("Rescanning partition: " + part);
+                    }
+                });
+
+            try {
+                qry.start();
+
+                System.out.println("Query started [replayed=" + qry.replayedCount() +
+                    ", rescanned=" + qry.rescannedCount() + ']');
+
+                Random rand = new Random();
+
+                while (true) {
+                    try {
+                        cache.put(rand.nextInt(1000), rand.nextInt(10_000));
+
+                        Thread.sleep(1000);
+                    }
+                    catch (CacheException e) {
+                        if (e.getCause() instanceof IgniteClientDisconnectedException) {
+                            IgniteClientDisconnectedException ex = (IgniteClientDisconnectedException)e.getCause();
+
+                            System.out.println("Client lost connection to the cluster. Waiting for reconnect...");
+
+                            ex.reconnectFuture().get();
+
+                            long replayed = qry.replayedCount();
+                            long rescanned = qry.rescannedCount();
+
+                            // Fetch only missed updates instead of running the initial query once again.
+                            qry.resume();
+
+                            System.out.println("Query resumed [replayed=" + (qry.replayedCount() - replayed) +
+                                ", rescanned=" + (qry.rescannedCount() - rescanned) + ']');
+
+                            cache = ignite.getOrCreateCache(CACHE_NAME);
+                        }
+                        else
+                            throw e;
+                    }
+                }
+            }
+            finally {
+                qry.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import com.vividsolutions.jts.geom.*;
+import org.apache.ignite.cache.affinity.*;
+
+import java.io.*;
+
+/**
+ * Key of a spatial entry. Besides the entry ID it carries the centroid of the entry geometry and the {@link GeoHash}
+ * cell of the centroid. The cell is the affinity key, so all entries located in the same cell are stored in
+ * the same partition, and a cell ID used as an {@link Integer} key maps to that partition as well.
+ * <p>
+ * An annotated field is used rather than a custom {@link AffinityKeyMapper}, because with the default binary
+ * marshaller a mapper receives keys in binary form and could not read the coordinates.
+ */
+public class SpatialKey implements Serializable {
+    /** */
+    private static final long serialVersionUID = 0L;
+
+    /** Entry ID. */
+    private final long id;
+
+    /** Centroid X coordinate. */
+    private final double x;
+
+    /** Centroid Y coordinate. */
+    private final double y;
+
+    /** Grid cell of the centroid. */
+    @AffinityKeyMapped
+    private final int cell;
+
+    /**
+     * @param id Entry ID.
+     * @param geo Entry geometry.
+     * @param geoHash Grid used to colocate entries.
+     */
+    public SpatialKey(long id, Geometry geo, GeoHash geoHash) {
+        Point centroid = geo.getCentroid();
+
+        this.id = id;
+
+        x = centroid.getX();
+        y = centroid.getY();
+
+        cell = geoHash.cell(x, y);
+    }
+
+    /**
+     * @return Entry ID.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return Centroid X coordinate.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return Centroid Y coordinate.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return Grid cell of the centroid.
+     */
+    public int getCell() {
+        return cell;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof SpatialKey))
+            return false;
+
+        SpatialKey key = (SpatialKey)o;
+
+        return id == key.id && Double.compare(x, key.x) == 0 && Double.compare(y, key.y) == 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return (int)(id ^ (id >>> 32));
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "SpatialKey [id=" + id + ", x=" + x + ", y=" + y + ", cell=" + cell + ']';
+    }
+}
@@ -24,16 +24,18 @@ package org.gridgain.examples.datagrid.query;
 import com.vividsolutions.jts.geom.*;
 import com.vividsolutions.jts.io.*;
 import org.apache.ignite.*;
-import org.apache.ignite.cache.query.*;
 import org.apache.ignite.cache.query.annotations.*;
+import org.apache.ignite.cluster.*;
 import org.apache.ignite.configuration.*;
 
-import javax.cache.*;
 import java.util.*;
 
 /**
  * This examples shows usage of spatial indexes.
  * <p>
+ * Entries are colocated by the {@link GeoHash} cell stored in {@link SpatialKey}, so spatially close points are
+ * stored in the same partition and {@link SpatialQueryRouter} sends a bounding box query only to the nodes owning the touched cells.
+ * <p>
  * Remote nodes should always be started with special configuration file which
  * enables P2P class loading: {@code 'ggstart.{sh|bat} ADVANCED-EXAMPLES-DIR/config/example-ignite.xml'}.
  */
@@ -41,39 +43,54 @@ public class SpatialQueryExample {
     /** Cache name. */
     private static final String CACHE_NAME = SpatialQueryExample.class.getSimpleName();
 
+    /** Size of the area points are generated in. */
+    private static final int AREA_SIZE = 10000;
+
     /**
      * @param args Command line arguments, none required.
      */
     public static void main(String[] args) throws Exception {
         try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
-            CacheConfiguration<Integer, Entry> cc = new CacheConfiguration<>(CACHE_NAME);
+            // 16 x 16 cells over the whole area.
+            GeoHash geoHash = new GeoHash(new Envelope(0, AREA_SIZE, 0, AREA_SIZE), 4);
+
+            CacheConfiguration<SpatialKey, Entry> cc = new CacheConfiguration<>(CACHE_NAME);
 
-            cc.setIndexedTypes(Integer.class, Entry.class);
+            cc.setIndexedTypes(SpatialKey.class, Entry.class);
 
-            try (IgniteCache<Integer, Entry> c = ignite.createCache(cc)) {
+            try (IgniteCache<SpatialKey, Entry> c = ignite.createCache(cc)) {
                 Random rnd = new Random();
 
                 WKTReader r = new WKTReader();
 
                 for (int i = 0; i < 1000; i++) {
-                    int x = rnd.nextInt(10000);
-                    int y = rnd.nextInt(10000);
+                    int x = rnd.nextInt(AREA_SIZE);
+                    int y = rnd.nextInt(AREA_SIZE);
 
                     Geometry geo = r.read("POINT(" + x + " " + y + ")");
 
-                    c.put(i, new Entry(geo));
+                    c.put(new SpatialKey(i, geo, geoHash), new Entry(geo));
                 }
 
-                SqlQuery<Integer, Entry> q = new SqlQuery<>(Entry.class, "coords && ?");
+                SpatialQueryRouter router = new SpatialQueryRouter(ignite, CACHE_NAME, geoHash);
+
+                int nodeCnt = ignite.cluster().forCacheNodes(CACHE_NAME).nodes().size();
 
                 for (int i = 0; i < 10; i++) {
-                    Geometry cond = r.read("POLYGON((0 0, 0 " + rnd.nextInt(10000) + ", " +
-                        rnd.nextInt(10000) + " " + rnd.nextInt(10000) + ", " +
-                        rnd.nextInt(10000) + " 0, 0 0))");
+                    int x0 = rnd.nextInt(AREA_SIZE);
+                    int y0 = rnd.nextInt(AREA_SIZE);
+                    int x1 = Math.min(AREA_SIZE, x0 + rnd.nextInt(AREA_SIZE / 5));
+                    int y1 = Math.min(AREA_SIZE, y0 + rnd.nextInt(AREA_SIZE / 5));
+
+                    Geometry cond = r.read("POLYGON((" + x0 + " " + y0 + ", " + x0 + " " + y1 + ", " +
+                        x1 + " " + y1 + ", " + x1 + " " + y0 + ", " + x0 + " " + y0 + "))");
+
+                    Collection<ClusterNode> nodes = router.nodes(cond);
 
-                    Collection<Cache.Entry<Integer, Entry>> entries = c.query(q.setArgs(cond)).getAll();
+                    Map<SpatialKey, Entry> entries = router.query(Entry.class, "coords && ?", cond, cond);
 
-                    System.out.println("Fetched points [cond=" + cond + ", cnt=" + entries.size() + ']');
+                    System.out.println("Fetched points [cond=" + cond + ", cnt=" + entries.size() +
+                        ", nodes=" + (nodes == null ? nodeCnt : nodes.size()) + '/' + nodeCnt + ']');
                 }
             }
         }
@@ -0,0 +1,208 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import com.vividsolutions.jts.geom.*;
+import org.apache.ignite.*;
+import org.apache.ignite.cache.affinity.*;
+import org.apache.ignite.cache.query.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+
+import javax.cache.*;
+import java.util.*;
+
+/**
+ * Routes spatial SQL queries only to the nodes owning the {@link GeoHash} cells that a query area touches.
+ * <p>
+ * Cache keys must be {@link SpatialKey}s built with the same {@link GeoHash}. The area
+ * envelope (expanded by {@link #setEntryExtent(double)} for non-point geometries) is mapped to cells, cells are
+ * mapped to partitions and partitions to primary nodes. Each of these nodes executes the query locally and the
+ * results are merged. If the area touches too many cells or all data nodes anyway, the query is executed
+ * as a regular distributed one.
+ */
+public class SpatialQueryRouter {
+    /** Default maximum number of cells to route by. */
+    public static final int DFLT_MAX_CELLS = 1024;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Grid used to build cache keys. */
+    private final GeoHash geoHash;
+
+    /** Maximum number of cells to route by. */
+    private int maxCells = DFLT_MAX_CELLS;
+
+    /** Maximum distance from an entry centroid to its geometry border. */
+    private double entryExtent;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Cache name.
+     * @param geoHash Grid used to build cache keys.
+     */
+    public SpatialQueryRouter(Ignite ignite, String cacheName, GeoHash geoHash) {
+        this.ignite = ignite;
+        this.cacheName = cacheName;
+        this.geoHash = geoHash;
+    }
+
+    /**
+     * @param maxCells Maximum number of cells to route by. Larger areas are queried on all nodes.
+     * @return {@code this} for chaining.
+     */
+    public SpatialQueryRouter setMaxCells(int maxCells) {
+        this.maxCells = maxCells;
+
+        return this;
+    }
+
+    /**
+     * @param entryExtent Maximum distance from an entry centroid to its geometry border, {@code 0} for points.
+     * @return {@code this} for chaining.
+     */
+    public SpatialQueryRouter setEntryExtent(double entryExtent) {
+        this.entryExtent = entryExtent;
+
+        return this;
+    }
+
+    /**
+     * Returns the nodes that own entries which may intersect the given area.
+     *
+     * @param area Query area.
+     * @return Nodes or {@code null} if the query has to be executed on all nodes.
+     */
+    public Collection<ClusterNode> nodes(Geometry area) {
+        Envelope env = new Envelope(area.getEnvelopeInternal());
+
+        env.expandBy(entryExtent);
+
+        Collection<Integer> cells = geoHash.cells(env, maxCells);
+
+        if (cells == null)
+            return null;
+
+        Affinity<Object> aff = ignite.affinity(cacheName);
+
+        // Cell ID is mapped to the same partition as all the entries of the cell.
+        Set<Integer> parts = new HashSet<>();
+
+        for (Integer cell : cells)
+            parts.add(aff.partition(cell));
+
+        Set<ClusterNode> nodes = new HashSet<>(aff.mapPartitionsToNodes(parts).values());
+
+        if (nodes.size() >= ignite.cluster().forCacheNodes(cacheName).nodes().size())
+            return null;
+
+        return nodes;
+    }
+
+    /**
+     * Executes SQL query on the nodes owning the given area.
+     *
+     * @param type Value type.
+     * @param sql SQL clause.
+     * @param area Query area used for routing, it is not passed to the query automatically.
+     * @param args Query arguments.
+     * @return Query results.
+     */
+    public <K, V> Map<K, V> query(Class<V> type, String sql, Geometry area, Object... args) {
+        Collection<ClusterNode> nodes = nodes(area);
+
+        Map<K, V> res = new HashMap<>();
+
+        if (nodes == null) {
+            IgniteCache<K, V> cache = ignite.cache(cacheName);
+
+            for (Cache.Entry<K, V> e : cache.query(new SqlQuery<K, V>(type, sql).setArgs(args)))
+                res.put(e.getKey(), e.getValue());
+        }
+        else {
+            Collection<Map<K, V>> nodeRes = ignite.compute(ignite.cluster().forNodes(nodes))
+                .broadcast(new LocalQueryCallable<K, V>(cacheName, type.getSimpleName(), sql, args));
+
+            // Backups may be queried along with primaries, so results are merged by key.
+            for (Map<K, V> r : nodeRes)
+                res.putAll(r);
+        }
+
+        return res;
+    }
+
+    /**
+     * Executes SQL query over the local data of a node.
+     */
+    private static class LocalQueryCallable<K, V> implements IgniteCallable<Map<K, V>> {
+        /** Cache name. */
+        private final String cacheName;
+
+        /** Value type name. */
+        private final String type;
+
+        /** SQL clause. */
+        private final String sql;
+
+        /** Query arguments. */
+        private final Object[] args;
+
+        /** Auto-inject grid instance. */
+        @IgniteInstanceResource
+        private Ignite ignite;
+
+        /**
+         * @param cacheName Cache name.
+         * @param type Value type name.
+         * @param sql SQL clause.
+         * @param args Query arguments.
+         */
+        private LocalQueryCallable(String cacheName, String type, String sql, Object[] args) {
+            this.cacheName = cacheName;
+            this.type = type;
+            this.sql = sql;
+            this.args = args;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Map<K, V> call() {
+            IgniteCache<K, V> cache = ignite.cache(cacheName);
+
+            SqlQuery<K, V> qry = new SqlQuery<>(type, sql);
+
+            qry.setArgs(args);
+            qry.setLocal(true);
+
+            Map<K, V> res = new HashMap<>();
+
+            for (Cache.Entry<K, V> e : cache.query(qry))
+                res.put(e.getKey(), e.getValue());
+
+            return res;
+        }
+    }
+}
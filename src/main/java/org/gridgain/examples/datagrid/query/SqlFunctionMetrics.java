@@ -0,0 +1,154 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Snapshot of {@link CachedSqlFunction} metrics. Snapshots from different nodes can be merged with
+ * {@link #merge(Collection)}.
+ */
+public class SqlFunctionMetrics implements Serializable {
+    /** */
+    private static final long serialVersionUID = 0L;
+
+    /** Function name. */
+    private final String name;
+
+    /** Number of calls. */
+    private final long calls;
+
+    /** Number of calls served from cache. */
+    private final long hits;
+
+    /** Number of batch calls. */
+    private final long batches;
+
+    /** Number of evaluated arguments. */
+    private final long evals;
+
+    /** Total evaluation time in nanoseconds. */
+    private final long evalTime;
+
+    /** Number of cached results. */
+    private final int cacheSize;
+
+    /**
+     * @param name Function name.
+     * @param calls Number of calls.
+     * @param hits Number of calls served from cache.
+     * @param batches Number of batch calls.
+     * @param evals Number of evaluated arguments.
+     * @param evalTime Total evaluation time in nanoseconds.
+     * @param cacheSize Number of cached results.
+     */
+    public SqlFunctionMetrics(String name, long calls, long hits, long batches, long evals, long evalTime,
+        int cacheSize) {
+        this.name = name;
+        this.calls = calls;
+        this.hits = hits;
+        this.batches = batches;
+        this.evals = evals;
+        this.evalTime = evalTime;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Sums up metrics of the same functions collected on different nodes.
+     *
+     * @param metrics Metrics.
+     * @return Merged metrics, one per function name.
+     */
+    public static Collection<SqlFunctionMetrics> merge(Collection<SqlFunctionMetrics> metrics) {
+        Map<String, SqlFunctionMetrics> res = new TreeMap<>();
+
+        for (SqlFunctionMetrics m : metrics) {
+            SqlFunctionMetrics old = res.get(m.name);
+
+            res.put(m.name, old == null ? m : new SqlFunctionMetrics(m.name, old.calls + m.calls, old.hits + m.hits,
+                old.batches + m.batches, old.evals + m.evals, old.evalTime + m.evalTime, old.cacheSize + m.cacheSize));
+        }
+
+        return res.values();
+    }
+
+    /**
+     * @return Function name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Number of calls, including every element of batch calls.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return Number of calls served from cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of batch calls.
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return Number of evaluated arguments.
+     */
+    public long getEvaluations() {
+        return evals;
+    }
+
+    /**
+     * @return Average evaluation time in microseconds.
+     */
+    public double getAverageEvaluationTime() {
+        return evals == 0 ? 0 : evalTime / 1000.0 / evals;
+    }
+
+    /**
+     * @return Number of cached results.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "SqlFunctionMetrics [name=" + name +
+            ", calls=" + calls +
+            ", hits=" + hits +
+            ", batches=" + batches +
+            ", evals=" + evals +
+            ", avgEvalTimeUs=" + String.format("%.2f", getAverageEvaluationTime()) +
+            ", cacheSize=" + cacheSize + ']';
+    }
+}
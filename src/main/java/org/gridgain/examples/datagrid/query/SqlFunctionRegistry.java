@@ -0,0 +1,70 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Per-node registry of {@link CachedSqlFunction}s. Functions are registered by the static initializer of the class
+ * holding the {@link org.apache.ignite.cache.query.annotations.QuerySqlFunction} methods. If the class is
+ * initialized again, e.g. when it is loaded by another class loader, the first registered function is kept.
+ */
+public class SqlFunctionRegistry {
+    /** Registered functions. */
+    private static final ConcurrentMap<String, CachedSqlFunction<?, ?>> FUNCS = new ConcurrentHashMap<>();
+
+    /**
+     * Ensures utility class is not instantiated.
+     */
+    private SqlFunctionRegistry() {
+        // No-op.
+    }
+
+    /**
+     * @param func Function.
+     * @return {@code False} if a function with the same name is already registered, in which case it is kept.
+     */
+    public static boolean register(CachedSqlFunction<?, ?> func) {
+        return FUNCS.putIfAbsent(func.name(), func) == null;
+    }
+
+    /**
+     * @param name Function name.
+     * @return Function or {@code null} if not registered on this node.
+     */
+    public static CachedSqlFunction<?, ?> function(String name) {
+        return FUNCS.get(name);
+    }
+
+    /**
+     * @return Metrics of all functions registered on this node.
+     */
+    public static Collection<SqlFunctionMetrics> metrics() {
+        Collection<SqlFunctionMetrics> res = new ArrayList<>(FUNCS.size());
+
+        for (CachedSqlFunction<?, ?> func : FUNCS.values())
+            res.add(func.metrics());
+
+        return res;
+    }
+}
@@ -0,0 +1,607 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.datagrid.query;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cache.affinity.*;
+import org.apache.ignite.cache.query.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.events.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.apache.ignite.services.*;
+import org.jetbrains.annotations.*;
+
+import javax.cache.*;
+import javax.cache.event.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Node singleton service keeping a bounded journal of recent updates per primary partition of a cache.
+ * Used by {@link ResumableContinuousQuery}.
+ * <p>
+ * Every update of a primary partition gets the next value of the partition update counter and is appended
+ * to the partition journal. Every subscriber has a bounded buffer and a sender thread, so a slow subscriber never
+ * stalls cache updates. Updates are put into the buffers under the journal lock, so they are sent in journal
+ * order. If a buffer is full or a send fails, the update is dropped for that subscriber, which finds the gap
+ * in counters and catches up from the journal. Journal is identified by a random epoch, so a subscriber knows that
+ * counters are comparable only while the epoch is the same. Journal is dropped when the node stops being
+ * the primary for the partition, so the history is never silently incomplete.
+ * <p>
+ * Ignite reports partition update counters with continuous query events, but keeps no history of updates that
+ * a reconnected subscriber could fetch by counter. The journal keeps that history. It numbers updates itself,
+ * so that a counter always refers to an update in the history of the same epoch.
+ * <p>
+ * Services are not peer-deployed, so this class must be on the class path of all data nodes.
+ */
+public class UpdateJournalService<K, V> implements Service {
+    /** */
+    private static final long serialVersionUID = 0L;
+
+    /** Maximum number of updates buffered for a subscriber. */
+    private static final int SEND_BUF_SIZE = 10_000;
+
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Maximum number of updates kept per partition. */
+    private final int historySize;
+
+    /** Injected grid. */
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+
+    /** Journals by partition. */
+    private transient ConcurrentMap<Integer, PartitionJournal> journals;
+
+    /** Subscribers by subscription ID. */
+    private transient ConcurrentMap<UUID, Subscriber> subs;
+
+    /** Local continuous query cursor. */
+    private transient QueryCursor<Cache.Entry<K, V>> cur;
+
+    /** Partition unload listener. */
+    private transient IgnitePredicate<Event> unloadLsnr;
+
+    /**
+     * @param cacheName Cache name.
+     * @param historySize Maximum number of updates kept per partition.
+     */
+    public UpdateJournalService(String cacheName, int historySize) {
+        this.cacheName = cacheName;
+        this.historySize = historySize;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void init(ServiceContext ctx) throws Exception {
+        journals = new ConcurrentHashMap<>();
+        subs = new ConcurrentHashMap<>();
+
+        ContinuousQuery<K, V> qry = new ContinuousQuery<>();
+
+        // Only updates of the local node are of interest.
+        qry.setLocal(true);
+
+        qry.setLocalListener(new CacheEntryUpdatedListener<K, V>() {
+            @Override public void onUpdated(Iterable<CacheEntryEvent<? extends K, ? extends V>> evts) {
+                for (CacheEntryEvent<? extends K, ? extends V> e : evts)
+                    record(e.getKey(), e.getEventType() == EventType.REMOVED ? null : e.getValue());
+            }
+        });
+
+        IgniteCache<K, V> cache = ignite.cache(cacheName);
+
+        cur = cache.query(qry);
+
+        unloadLsnr = new IgnitePredicate<Event>() {
+            @Override public boolean apply(Event evt) {
+                CacheRebalancingEvent e = (CacheRebalancingEvent)evt;
+
+                if (cacheName.equals(e.cacheName()))
+                    journals.remove(e.partition());
+
+                return true;
+            }
+        };
+
+        ignite.events().localListen(unloadLsnr, EventType.EVT_CACHE_REBALANCE_PART_UNLOADED);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void execute(ServiceContext ctx) throws Exception {
+        // No-op, updates are recorded by continuous query listener.
+    }
+
+    /** {@inheritDoc} */
+    @Override public void cancel(ServiceContext ctx) {
+        ignite.events().stopLocalListen(unloadLsnr);
+
+        cur.close();
+
+        for (Subscriber sub : subs.values())
+            sub.stop();
+
+        subs.clear();
+    }
+
+    /**
+     * Registers subscriber or updates its node if subscriber has reconnected.
+     *
+     * @param subId Subscription ID.
+     * @param nodeId Subscriber node ID.
+     * @param topic Topic to send updates to.
+     */
+    public void subscribe(UUID subId, UUID nodeId, String topic) {
+        Subscriber sub = new Subscriber(subId, nodeId, ignite.message(ignite.cluster().forNodeId(nodeId)), topic);
+
+        sub.start();
+
+        Subscriber old = subs.put(subId, sub);
+
+        if (old != null)
+            old.stop();
+    }
+
+    /**
+     * @param subId Subscription ID.
+     */
+    public void unsubscribe(UUID subId) {
+        Subscriber sub = subs.remove(subId);
+
+        if (sub != null)
+            sub.stop();
+    }
+
+    /**
+     * @return Current positions of journals of partitions this node is primary for.
+     */
+    public Map<Integer, Position> positions() {
+        Affinity<K> aff = ignite.affinity(cacheName);
+
+        Map<Integer, Position> res = new HashMap<>();
+
+        for (PartitionJournal j : journals.values()) {
+            if (!aff.mapPartitionToNode(j.part).isLocal())
+                continue;
+
+            synchronized (j) {
+                res.put(j.part, new Position(j.epoch, j.cntr));
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Returns updates of a partition missed by a subscriber or, if the journal does not cover the subscriber
+     * position, all entries of the partition.
+     *
+     * @param part Partition.
+     * @param pos Last position seen by subscriber or {@code null} if subscriber has never seen the partition.
+     * @return Snapshot or {@code null} if this node is not primary for the partition.
+     */
+    @Nullable public Snapshot<K, V> snapshot(int part, @Nullable Position pos) {
+        if (!ignite.affinity(cacheName).mapPartitionToNode(part).isLocal())
+            return null;
+
+        PartitionJournal j = journal(part);
+
+        Position cur;
+
+        synchronized (j) {
+            cur = new Position(j.epoch, j.cntr);
+
+            if (pos != null && pos.getEpoch().equals(j.epoch) && pos.getCounter() >= j.firstCounter() - 1 &&
+                pos.getCounter() <= j.cntr) {
+                List<Update<K, V>> missed = new ArrayList<>();
+
+                for (Update<K, V> u : j.history) {
+                    if (u.getCounter() > pos.getCounter())
+                        missed.add(u);
+                }
+
+                return new Snapshot<>(part, cur, missed, null);
+            }
+        }
+
+        // History is gone, scan the partition. Updates made during the scan have counters greater than
+        // the current one, so the subscriber will re-apply them on top of the scanned entries.
+        IgniteCache<K, V> cache = ignite.cache(cacheName);
+
+        ScanQuery<K, V> scan = new ScanQuery<>(part);
+
+        scan.setLocal(true);
+
+        Map<K, V> entries = new HashMap<>();
+
+        for (Cache.Entry<K, V> e : cache.query(scan))
+            entries.put(e.getKey(), e.getValue());
+
+        return new Snapshot<>(part, cur, null, entries);
+    }
+
+    /**
+     * @param key Updated key.
+     * @param val New value or {@code null} if removed.
+     */
+    private void record(K key, @Nullable V val) {
+        Affinity<K> aff = ignite.affinity(cacheName);
+
+        int part = aff.partition(key);
+
+        if (!aff.isPrimary(ignite.cluster().localNode(), key)) {
+            // Node is not primary (anymore), so the journal would miss updates.
+            journals.remove(part);
+
+            return;
+        }
+
+        PartitionJournal j = journal(part);
+
+        synchronized (j) {
+            Update<K, V> u = j.append(key, val);
+
+            // Buffering under lock keeps updates of the partition ordered.
+            for (Subscriber sub : subs.values())
+                sub.add(u);
+        }
+    }
+
+    /**
+     * @param part Partition.
+     * @return Partition journal.
+     */
+    private PartitionJournal journal(int part) {
+        PartitionJournal j = journals.get(part);
+
+        if (j == null) {
+            PartitionJournal old = journals.putIfAbsent(part, j = new PartitionJournal(part));
+
+            if (old != null)
+                j = old;
+        }
+
+        return j;
+    }
+
+    /**
+     * Journal of a partition.
+     */
+    private class PartitionJournal {
+        /** Partition. */
+        private final int part;
+
+        /** Epoch. */
+        private final UUID epoch = UUID.randomUUID();
+
+        /** Last assigned counter. */
+        private long cntr;
+
+        /** Recent updates. */
+        private final ArrayDeque<Update<K, V>> history = new ArrayDeque<>();
+
+        /**
+         * @param part Partition.
+         */
+        private PartitionJournal(int part) {
+            this.part = part;
+        }
+
+        /**
+         * @param key Key.
+         * @param val Value.
+         * @return Appended update.
+         */
+        private Update<K, V> append(K key, V val) {
+            Update<K, V> u = new Update<>(part, epoch, ++cntr, key, val);
+
+            history.add(u);
+
+            if (history.size() > historySize)
+                history.poll();
+
+            return u;
+        }
+
+        /**
+         * @return Counter of the oldest update kept in history.
+         */
+        private long firstCounter() {
+            return history.isEmpty() ? cntr + 1 : history.peek().getCounter();
+        }
+    }
+
+    /**
+     * Subscriber with its own sender thread.
+     */
+    private class Subscriber implements Runnable {
+        /** Subscription ID. */
+        private final UUID subId;
+
+        /** Subscriber node ID. */
+        private final UUID nodeId;
+
+        /** Messaging for subscriber node. */
+        private final IgniteMessaging msg;
+
+        /** Topic. */
+        private final String topic;
+
+        /** Updates to send. */
+        private final BlockingQueue<Update<K, V>> buf = new ArrayBlockingQueue<>(SEND_BUF_SIZE);
+
+        /** Sender thread. */
+        private final Thread sender;
+
+        /**
+         * @param subId Subscription ID.
+         * @param nodeId Subscriber node ID.
+         * @param msg Messaging for subscriber node.
+         * @param topic Topic.
+         */
+        private Subscriber(UUID subId, UUID nodeId, IgniteMessaging msg, String topic) {
+            this.subId = subId;
+            this.nodeId = nodeId;
+            this.msg = msg;
+            this.topic = topic;
+
+            sender = new Thread(this, "update-journal-sender-" + subId);
+
+            sender.setDaemon(true);
+        }
+
+        /**
+         * Starts sender thread.
+         */
+        private void start() {
+            sender.start();
+        }
+
+        /**
+         * Stops sender thread, buffered updates are dropped.
+         */
+        private void stop() {
+            sender.interrupt();
+        }
+
+        /**
+         * Buffers update without blocking. If the buffer is full, the update is dropped and the subscriber finds
+         * the gap.
+         *
+         * @param u Update.
+         */
+        private void add(Update<K, V> u) {
+            buf.offer(u);
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Update<K, V> u = buf.take();
+
+                    try {
+                        msg.sendOrdered(topic, u, 0);
+                    }
+                    catch (IgniteException ignored) {
+                        // Subscriber that has left catches up from the journal once subscribed again. A subscriber
+                        // that is still alive finds the lost update by a gap in counters or by its periodic
+                        // position check.
+                        if (ignite.cluster().node(nodeId) == null) {
+                            subs.remove(subId, this);
+
+                            return;
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException ignored) {
+                // Stopped.
+            }
+        }
+    }
+
+    /**
+     * Position in a partition journal.
+     */
+    public static class Position implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Journal epoch. */
+        private final UUID epoch;
+
+        /** Update counter. */
+        private final long cntr;
+
+        /**
+         * @param epoch Journal epoch.
+         * @param cntr Update counter.
+         */
+        public Position(UUID epoch, long cntr) {
+            this.epoch = epoch;
+            this.cntr = cntr;
+        }
+
+        /**
+         * @return Journal epoch.
+         */
+        public UUID getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return Update counter.
+         */
+        public long getCounter() {
+            return cntr;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return "Position [epoch=" + epoch + ", cntr=" + cntr + ']';
+        }
+    }
+
+    /**
+     * Journaled update.
+     */
+    public static class Update<K, V> implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Partition. */
+        private final int part;
+
+        /** Journal epoch. */
+        private final UUID epoch;
+
+        /** Update counter. */
+        private final long cntr;
+
+        /** Key. */
+        private final K key;
+
+        /** Value or {@code null} if removed. */
+        private final V val;
+
+        /**
+         * @param part Partition.
+         * @param epoch Journal epoch.
+         * @param cntr Update counter.
+         * @param key Key.
+         * @param val Value or {@code null} if removed.
+         */
+        private Update(int part, UUID epoch, long cntr, K key, V val) {
+            this.part = part;
+            this.epoch = epoch;
+            this.cntr = cntr;
+            this.key = key;
+            this.val = val;
+        }
+
+        /**
+         * @return Partition.
+         */
+        public int getPartition() {
+            return part;
+        }
+
+        /**
+         * @return Journal epoch.
+         */
+        public UUID getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return Update counter.
+         */
+        public long getCounter() {
+            return cntr;
+        }
+
+        /**
+         * @return Key.
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return Value or {@code null} if removed.
+         */
+        @Nullable public V getValue() {
+            return val;
+        }
+    }
+
+    /**
+     * Partition state returned to a subscriber: either missed updates or all partition entries.
+     */
+    public static class Snapshot<K, V> implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Partition. */
+        private final int part;
+
+        /** Journal position the snapshot corresponds to. */
+        private final Position pos;
+
+        /** Missed updates or {@code null} if partition has been rescanned. */
+        private final List<Update<K, V>> updates;
+
+        /** Partition entries or {@code null} if history is available. */
+        private final Map<K, V> entries;
+
+        /**
+         * @param part Partition.
+         * @param pos Journal position the snapshot corresponds to.
+         * @param updates Missed updates or {@code null} if partition has been rescanned.
+         * @param entries Partition entries or {@code null} if history is available.
+         */
+        private Snapshot(int part, Position pos, List<Update<K, V>> updates, Map<K, V> entries) {
+            this.part = part;
+            this.pos = pos;
+            this.updates = updates;
+            this.entries = entries;
+        }
+
+        /**
+         * @return Partition.
+         */
+        public int getPartition() {
+            return part;
+        }
+
+        /**
+         * @return Journal position the snapshot corresponds to.
+         */
+        public Position getPosition() {
+            return pos;
+        }
+
+        /**
+         * @return {@code True} if partition has been rescanned.
+         */
+        public boolean isRescan() {
+            return entries != null;
+        }
+
+        /**
+         * @return Missed updates or {@code null} if partition has been rescanned.
+         */
+        public List<Update<K, V>> getUpdates() {
+            return updates;
+        }
+
+        /**
+         * @return Partition entries or {@code null} if history is available.
+         */
+        public Map<K, V> getEntries() {
+            return entries;
+        }
+    }
+}
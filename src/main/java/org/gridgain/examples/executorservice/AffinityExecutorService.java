@@ -0,0 +1,296 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.executorservice;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Distributed executor service that routes tasks by affinity key. A task submitted with
+ * {@link #submit(Object, Callable)} is executed on the node that is primary for the key in the given cache,
+ * so the task can read the data it works on locally, e.g. with {@link IgniteCache#localPeek}.
+ * <p>
+ * Tasks routed to the same node are coalesced into batches by a {@link BatchingExecutorService} per node.
+ * Tasks submitted without a key are batched and spread between the data nodes of the cache.
+ * <p>
+ * Routing is based on the affinity at the moment of submission. If the partition of a key moves to another node
+ * before the batch is executed, the task runs on the old primary and its local reads may miss. Tasks buffered for
+ * a node that has left are routed again by their keys once a service for a new node is created.
+ */
+public class AffinityExecutorService extends AbstractExecutorService {
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Cache name. */
+    private final String cacheName;
+
+    /** Maximum batch size. */
+    private final int batchSize;
+
+    /** Batching window in milliseconds. */
+    private final long window;
+
+    /** Flush timer shared by per-node services. */
+    private final ScheduledExecutorService timer;
+
+    /** Per-node services. */
+    private final ConcurrentMap<UUID, BatchingExecutorService> nodeExecs = new ConcurrentHashMap<>();
+
+    /** Service for tasks without a key. */
+    private final BatchingExecutorService dfltExec;
+
+    /** Shutdown flag. */
+    private volatile boolean shutdown;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param cacheName Cache name, defines the affinity.
+     * @param batchSize Maximum number of tasks in a batch.
+     * @param window Maximum time a task is buffered before it is shipped, in milliseconds.
+     */
+    public AffinityExecutorService(Ignite ignite, String cacheName, int batchSize, long window) {
+        this.ignite = ignite;
+        this.cacheName = cacheName;
+        this.batchSize = batchSize;
+        this.window = window;
+
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "affinity-executor-flusher");
+
+                t.setDaemon(true);
+
+                return t;
+            }
+        });
+
+        dfltExec = new BatchingExecutorService(ignite, ignite.cluster().forDataNodes(cacheName), batchSize, window,
+            timer, false);
+    }
+
+    /**
+     * Submits a task to the primary node for the key.
+     *
+     * @param key Affinity key.
+     * @param task Task, must be serializable.
+     * @return Future of the task result.
+     */
+    public <T> Future<T> submit(Object key, Callable<T> task) {
+        BatchingExecutorService.BatchFuture<T> fut = BatchingExecutorService.newTask(task, key);
+
+        route(fut);
+
+        return fut;
+    }
+
+    /**
+     * Submits a task to the primary node for the key.
+     *
+     * @param key Affinity key.
+     * @param task Task, must be serializable.
+     * @return Future of the task completion.
+     */
+    public Future<?> submit(Object key, Runnable task) {
+        BatchingExecutorService.BatchFuture<?> fut = BatchingExecutorService.newTask(task, key);
+
+        route(fut);
+
+        return fut;
+    }
+
+    /**
+     * Ships all buffered tasks immediately.
+     */
+    public void flush() {
+        for (BatchingExecutorService exec : nodeExecs.values())
+            exec.flush();
+
+        dfltExec.flush();
+    }
+
+    /**
+     * Passes task to the service of the primary node for its key.
+     *
+     * @param fut Task future.
+     */
+    private void route(BatchingExecutorService.BatchFuture<?> fut) {
+        for (;;) {
+            BatchingExecutorService exec = executor(fut.key());
+
+            try {
+                exec.execute(fut);
+
+                return;
+            }
+            catch (RejectedExecutionException e) {
+                if (shutdown)
+                    throw e;
+
+                // The node has left and its service has been shut down concurrently, route again.
+            }
+        }
+    }
+
+    /**
+     * @param key Affinity key.
+     * @return Service of the primary node for the key.
+     */
+    private BatchingExecutorService executor(Object key) {
+        if (shutdown)
+            throw new RejectedExecutionException("Executor service has been shut down.");
+
+        ClusterNode node = ignite.affinity(cacheName).mapKeyToNode(key);
+
+        if (node == null)
+            throw new IgniteException("No primary node for key: " + key);
+
+        BatchingExecutorService exec = nodeExecs.get(node.id());
+
+        if (exec != null)
+            return exec;
+
+        List<Runnable> orphans;
+
+        // Created under the same lock as the shutdown flag is set, so that every service is shut down.
+        synchronized (this) {
+            if (shutdown)
+                throw new RejectedExecutionException("Executor service has been shut down.");
+
+            exec = nodeExecs.get(node.id());
+
+            if (exec != null)
+                return exec;
+
+            exec = new BatchingExecutorService(ignite, ignite.cluster().forNode(node), batchSize, window, timer, false);
+
+            nodeExecs.put(node.id(), exec);
+
+            orphans = removeLeftNodes(node.id());
+        }
+
+        reroute(orphans);
+
+        return exec;
+    }
+
+    /**
+     * Shuts down services of nodes that left the topology. Called under lock when a service for a new node
+     * is created.
+     *
+     * @param newNodeId ID of the new node.
+     * @return Tasks buffered by the removed services.
+     */
+    private List<Runnable> removeLeftNodes(UUID newNodeId) {
+        List<Runnable> orphans = new ArrayList<>();
+
+        for (Iterator<Map.Entry<UUID, BatchingExecutorService>> it = nodeExecs.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<UUID, BatchingExecutorService> e = it.next();
+
+            if (!e.getKey().equals(newNodeId) && ignite.cluster().node(e.getKey()) == null) {
+                it.remove();
+
+                orphans.addAll(e.getValue().shutdownNow());
+            }
+        }
+
+        return orphans;
+    }
+
+    /**
+     * Routes tasks buffered for a node that left to the current primary nodes of their keys.
+     *
+     * @param tasks Tasks.
+     */
+    private void reroute(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            BatchingExecutorService.BatchFuture<?> fut = (BatchingExecutorService.BatchFuture<?>)task;
+
+            try {
+                route(fut);
+            }
+            catch (RuntimeException e) {
+                fut.fail(e);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void execute(Runnable cmd) {
+        if (shutdown)
+            throw new RejectedExecutionException("Executor service has been shut down.");
+
+        dfltExec.execute(cmd);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+
+        for (BatchingExecutorService exec : nodeExecs.values())
+            exec.shutdown();
+
+        dfltExec.shutdown();
+
+        timer.shutdown();
+    }
+
+    /** {@inheritDoc} */
+    @Override public List<Runnable> shutdownNow() {
+        synchronized (this) {
+            shutdown = true;
+        }
+
+        List<Runnable> res = new ArrayList<>();
+
+        for (BatchingExecutorService exec : nodeExecs.values())
+            res.addAll(exec.shutdownNow());
+
+        res.addAll(dfltExec.shutdownNow());
+
+        timer.shutdown();
+
+        return res;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean isTerminated() {
+        if (!shutdown || !dfltExec.isTerminated())
+            return false;
+
+        for (BatchingExecutorService exec : nodeExecs.values()) {
+            if (!exec.isTerminated())
+                return false;
+        }
+
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+
+        for (BatchingExecutorService exec : nodeExecs.values()) {
+            if (!exec.awaitTermination(end - System.nanoTime(), TimeUnit.NANOSECONDS))
+                return false;
+        }
+
+        return dfltExec.awaitTermination(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,92 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.executorservice;
+
+import org.apache.ignite.*;
+import org.apache.ignite.lang.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This example shows how to route tasks to the nodes that own the data with {@link AffinityExecutorService}.
+ * Every task reads its key with a local peek, which succeeds only if the task runs on the primary node.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using
+ * {@link org.gridgain.examples.ExampleNodeStartup}.
+ */
+public class AffinityExecutorServiceExample {
+    /** Cache name. */
+    private static final String CACHE_NAME = AffinityExecutorServiceExample.class.getSimpleName();
+
+    /** Number of keys. */
+    private static final int KEY_CNT = 10_000;
+
+    /**
+     * @param args Arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            try (IgniteCache<Integer, String> cache = ignite.createCache(CACHE_NAME)) {
+                Map<Integer, String> data = new HashMap<>();
+
+                for (int i = 0; i < KEY_CNT; i++)
+                    data.put(i, Integer.toString(i));
+
+                cache.putAll(data);
+
+                AffinityExecutorService exec = new AffinityExecutorService(ignite, CACHE_NAME, 500, 5);
+
+                long start = System.nanoTime();
+
+                List<Future<Boolean>> futs = new ArrayList<>(KEY_CNT);
+
+                for (int i = 0; i < KEY_CNT; i++)
+                    futs.add(exec.submit(i, new LocalReadCallable(i)));
+
+                int local = 0;
+
+                for (Future<Boolean> fut : futs) {
+                    if (fut.get())
+                        local++;
+                }
+
+                long time = (System.nanoTime() - start) / 1_000_000;
+
+                exec.shutdown();
+
+                System.out.println();
+                System.out.println(">>> Executed " + KEY_CNT + " tasks in " + time + "ms, local reads: " + local);
+            }
+        }
+    }
+
+    /**
+     * Reads the value of a key from local memory.
+     */
+    private static class LocalReadCallable implements IgniteCallable<Boolean> {
+        /** Key. */
+        private final int key;
+
+        /**
+         * @param key Key.
+         */
+        LocalReadCallable(int key) {
+            this.key = key;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Boolean call() {
+            IgniteCache<Integer, String> cache = Ignition.localIgnite().cache(CACHE_NAME);
+
+            return cache.localPeek(key) != null;
+        }
+    }
+}
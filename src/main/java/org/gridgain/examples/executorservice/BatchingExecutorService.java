@@ -0,0 +1,483 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.executorservice;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Distributed executor service that coalesces submitted tasks into batches. Tasks are buffered until
+ * {@code batchSize} tasks are collected or {@code window} milliseconds pass since the first buffered task,
+ * then the batch is split between the nodes of the cluster group and shipped as a single job per node.
+ * Individual futures are completed from the result of the job.
+ * <p>
+ * Compared to {@link Ignite#executorService()} this replaces one network round trip and one job per task with one
+ * per batch, at the cost of up to {@code window} milliseconds of extra latency. Tasks must be serializable.
+ * Resources are not injected into tasks, use {@link Ignition#localIgnite()} to get the local Ignite instance.
+ * A failure of a task fails its own future only, a failure of a whole job fails the futures of all its tasks.
+ */
+public class BatchingExecutorService extends AbstractExecutorService {
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Nodes to execute tasks on. */
+    private final ClusterGroup grp;
+
+    /** Maximum batch size. */
+    private final int batchSize;
+
+    /** Maximum time a task is buffered, in milliseconds. */
+    private final long window;
+
+    /** Flush timer. */
+    private final ScheduledExecutorService timer;
+
+    /** Whether the timer is owned by this service. */
+    private final boolean ownTimer;
+
+    /** Buffered tasks. */
+    private List<BatchFuture<?>> buf = new ArrayList<>();
+
+    /** Whether flush is scheduled for the buffer. */
+    private boolean flushScheduled;
+
+    /** Number of jobs in flight. */
+    private int jobsInFlight;
+
+    /** Shutdown flag. */
+    private boolean shutdown;
+
+    /** Index of the first node to send the next batch to. */
+    private int nextNode;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param grp Nodes to execute tasks on.
+     * @param batchSize Maximum number of tasks in a batch.
+     * @param window Maximum time a task is buffered before it is shipped, in milliseconds.
+     */
+    public BatchingExecutorService(Ignite ignite, ClusterGroup grp, int batchSize, long window) {
+        this(ignite, grp, batchSize, window, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "batching-executor-flusher");
+
+                t.setDaemon(true);
+
+                return t;
+            }
+        }), true);
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param grp Nodes to execute tasks on.
+     * @param batchSize Maximum number of tasks in a batch.
+     * @param window Maximum time a task is buffered before it is shipped, in milliseconds.
+     * @param timer Flush timer.
+     * @param ownTimer Whether the timer must be stopped on shutdown.
+     */
+    BatchingExecutorService(Ignite ignite, ClusterGroup grp, int batchSize, long window,
+        ScheduledExecutorService timer, boolean ownTimer) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+
+        this.ignite = ignite;
+        this.grp = grp;
+        this.batchSize = batchSize;
+        this.window = window;
+        this.timer = timer;
+        this.ownTimer = ownTimer;
+    }
+
+    /** {@inheritDoc} */
+    @Override protected <T> RunnableFuture<T> newTaskFor(Runnable task, T val) {
+        return new BatchFuture<>(new RunnableCallable<>(task, val), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override protected <T> RunnableFuture<T> newTaskFor(Callable<T> task) {
+        return newTask(task, null);
+    }
+
+    /**
+     * @param task Task.
+     * @param key Affinity key the task is routed by, {@code null} if none.
+     * @return Future of the task, to be passed to {@link #execute(Runnable)}.
+     */
+    static <T> BatchFuture<T> newTask(Callable<T> task, Object key) {
+        if (!(task instanceof Serializable))
+            throw new IllegalArgumentException("Task must be serializable: " + task);
+
+        return new BatchFuture<>(task, key);
+    }
+
+    /**
+     * @param task Task.
+     * @param key Affinity key the task is routed by, {@code null} if none.
+     * @return Future of the task, to be passed to {@link #execute(Runnable)}.
+     */
+    static BatchFuture<Object> newTask(Runnable task, Object key) {
+        return new BatchFuture<>(new RunnableCallable<>(task, null), key);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void execute(Runnable cmd) {
+        BatchFuture<?> fut = cmd instanceof BatchFuture ? (BatchFuture<?>)cmd : (BatchFuture<?>)newTaskFor(cmd, null);
+
+        List<BatchFuture<?>> full = null;
+
+        synchronized (this) {
+            if (shutdown)
+                throw new RejectedExecutionException("Executor service has been shut down.");
+
+            buf.add(fut);
+
+            if (buf.size() >= batchSize)
+                full = swap();
+            else if (!flushScheduled) {
+                flushScheduled = true;
+
+                timer.schedule(new Runnable() {
+                    @Override public void run() {
+                        flush();
+                    }
+                }, window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null)
+            ship(full);
+    }
+
+    /**
+     * Ships buffered tasks immediately.
+     */
+    public void flush() {
+        List<BatchFuture<?>> batch;
+
+        synchronized (this) {
+            batch = swap();
+        }
+
+        ship(batch);
+    }
+
+    /**
+     * Takes buffered tasks. Must be called under lock. The batch is accounted as a job in flight until
+     * {@link #ship(List)} completes, so that the service is not reported terminated in between.
+     *
+     * @return Buffered tasks.
+     */
+    private List<BatchFuture<?>> swap() {
+        List<BatchFuture<?>> batch = buf;
+
+        buf = new ArrayList<>();
+
+        flushScheduled = false;
+
+        jobsInFlight++;
+
+        return batch;
+    }
+
+    /**
+     * Splits tasks between nodes and sends a job to each node.
+     *
+     * @param batch Tasks taken with {@link #swap()}.
+     */
+    private void ship(List<BatchFuture<?>> batch) {
+        try {
+            ship0(batch);
+        }
+        finally {
+            onJobFinished();
+        }
+    }
+
+    /**
+     * @param batch Tasks.
+     */
+    private void ship0(List<BatchFuture<?>> batch) {
+        List<BatchFuture<?>> tasks = new ArrayList<>(batch.size());
+
+        for (BatchFuture<?> fut : batch) {
+            if (!fut.isCancelled())
+                tasks.add(fut);
+        }
+
+        if (tasks.isEmpty())
+            return;
+
+        List<ClusterNode> nodes = new ArrayList<>(grp.nodes());
+
+        if (nodes.isEmpty()) {
+            for (BatchFuture<?> fut : tasks)
+                fut.fail(new IgniteException("No nodes to execute tasks on."));
+
+            return;
+        }
+
+        int jobs = Math.min(nodes.size(), tasks.size());
+
+        int first;
+
+        synchronized (this) {
+            first = nextNode++;
+
+            jobsInFlight += jobs;
+        }
+
+        for (int i = 0; i < jobs; i++) {
+            List<BatchFuture<?>> part = tasks.subList(tasks.size() * i / jobs, tasks.size() * (i + 1) / jobs);
+
+            ClusterNode node = nodes.get((first + i) % nodes.size());
+
+            send(node, new ArrayList<>(part));
+        }
+    }
+
+    /**
+     * @param node Node.
+     * @param tasks Tasks.
+     */
+    private void send(ClusterNode node, final List<BatchFuture<?>> tasks) {
+        List<Callable<?>> job = new ArrayList<>(tasks.size());
+
+        for (BatchFuture<?> fut : tasks)
+            job.add(fut.task);
+
+        IgniteCompute compute = ignite.compute(ignite.cluster().forNode(node)).withAsync();
+
+        try {
+            compute.call(new BatchCallable(job));
+
+            compute.<Object[]>future().listen(new IgniteInClosure<IgniteFuture<Object[]>>() {
+                @Override public void apply(IgniteFuture<Object[]> f) {
+                    try {
+                        Object[] res = f.get();
+
+                        for (int i = 0; i < res.length; i++)
+                            tasks.get(i).complete(res[i]);
+                    }
+                    catch (RuntimeException e) {
+                        for (BatchFuture<?> fut : tasks)
+                            fut.fail(e);
+                    }
+                    finally {
+                        onJobFinished();
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            for (BatchFuture<?> fut : tasks)
+                fut.fail(e);
+
+            onJobFinished();
+        }
+    }
+
+    /**
+     * Decrements the number of jobs in flight.
+     */
+    private synchronized void onJobFinished() {
+        jobsInFlight--;
+
+        notifyAll();
+    }
+
+    /** {@inheritDoc} */
+    @Override public void shutdown() {
+        synchronized (this) {
+            if (shutdown)
+                return;
+
+            shutdown = true;
+        }
+
+        flush();
+
+        if (ownTimer)
+            timer.shutdown();
+    }
+
+    /** {@inheritDoc} */
+    @Override public List<Runnable> shutdownNow() {
+        List<BatchFuture<?>> batch;
+
+        synchronized (this) {
+            shutdown = true;
+
+            batch = buf;
+
+            buf = new ArrayList<>();
+        }
+
+        if (ownTimer)
+            timer.shutdown();
+
+        return new ArrayList<Runnable>(batch);
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized boolean isTerminated() {
+        return shutdown && buf.isEmpty() && jobsInFlight == 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.currentTimeMillis() + unit.toMillis(timeout);
+
+        while (!isTerminated()) {
+            long left = end - System.currentTimeMillis();
+
+            if (left <= 0)
+                return false;
+
+            wait(left);
+        }
+
+        return true;
+    }
+
+    /**
+     * Future of a batched task, completed from the batch result.
+     */
+    static class BatchFuture<T> extends FutureTask<T> {
+        /** Task. */
+        private final Callable<T> task;
+
+        /** Affinity key the task is routed by, {@code null} if none. */
+        private final Object key;
+
+        /**
+         * @param task Task.
+         * @param key Affinity key the task is routed by, {@code null} if none.
+         */
+        BatchFuture(Callable<T> task, Object key) {
+            super(task);
+
+            this.task = task;
+            this.key = key;
+        }
+
+        /**
+         * @return Affinity key the task is routed by, {@code null} if none.
+         */
+        Object key() {
+            return key;
+        }
+
+        /**
+         * @param res Task result or {@link Failure}.
+         */
+        @SuppressWarnings("unchecked")
+        void complete(Object res) {
+            if (res instanceof Failure)
+                setException(((Failure)res).err);
+            else
+                set((T)res);
+        }
+
+        /**
+         * @param err Error.
+         */
+        void fail(Throwable err) {
+            setException(err);
+        }
+    }
+
+    /**
+     * Failure of a single task of a batch.
+     */
+    private static class Failure implements Serializable {
+        /** Error. */
+        private final Throwable err;
+
+        /**
+         * @param err Error.
+         */
+        Failure(Throwable err) {
+            this.err = err;
+        }
+    }
+
+    /**
+     * Callable executing a batch of tasks on a node. Returns results in the order of tasks, failures of
+     * individual tasks are returned as {@link Failure}.
+     */
+    private static class BatchCallable implements IgniteCallable<Object[]> {
+        /** Tasks. */
+        private final List<Callable<?>> tasks;
+
+        /**
+         * @param tasks Tasks.
+         */
+        BatchCallable(List<Callable<?>> tasks) {
+            this.tasks = tasks;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object[] call() {
+            Object[] res = new Object[tasks.size()];
+
+            for (int i = 0; i < res.length; i++) {
+                try {
+                    res[i] = tasks.get(i).call();
+                }
+                catch (Exception e) {
+                    res[i] = new Failure(e);
+                }
+            }
+
+            return res;
+        }
+    }
+
+    /**
+     * Serializable adapter of a runnable to callable.
+     */
+    private static class RunnableCallable<T> implements Callable<T>, Serializable {
+        /** Runnable. */
+        private final Runnable task;
+
+        /** Result. */
+        private final T res;
+
+        /**
+         * @param task Runnable.
+         * @param res Result.
+         */
+        RunnableCallable(Runnable task, T res) {
+            if (!(task instanceof Serializable))
+                throw new IllegalArgumentException("Task must be serializable: " + task);
+
+            this.task = task;
+            this.res = res;
+        }
+
+        /** {@inheritDoc} */
+        @Override public T call() {
+            task.run();
+
+            return res;
+        }
+    }
+}
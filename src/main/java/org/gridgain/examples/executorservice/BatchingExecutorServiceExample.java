@@ -0,0 +1,108 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.executorservice;
+
+import org.apache.ignite.*;
+import org.apache.ignite.lang.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This example compares throughput of fine-grained tasks submitted to {@link Ignite#executorService()} and
+ * to {@link BatchingExecutorService}, which ships tasks in batches, one job per node.
+ * <p>
+ * To demonstrate the example start one or more remote nodes before using
+ * {@link org.gridgain.examples.ExampleNodeStartup}.
+ */
+public class BatchingExecutorServiceExample {
+    /** Number of tasks. */
+    private static final int TASK_CNT = 20_000;
+
+    /** Maximum batch size. */
+    private static final int BATCH_SIZE = 500;
+
+    /** Batching window in milliseconds. */
+    private static final long WINDOW = 5;
+
+    /**
+     * @param args Arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            ExecutorService plain = ignite.executorService();
+
+            ExecutorService batching = new BatchingExecutorService(ignite, ignite.cluster().forServers(),
+                BATCH_SIZE, WINDOW);
+
+            // Warm up.
+            run(plain, TASK_CNT / 10);
+            run(batching, TASK_CNT / 10);
+
+            double plainRate = run(plain, TASK_CNT);
+            double batchingRate = run(batching, TASK_CNT);
+
+            batching.shutdown();
+
+            System.out.println();
+            System.out.println(String.format(">>> Tasks/sec: executorService=%.0f, batching=%.0f", plainRate,
+                batchingRate));
+        }
+    }
+
+    /**
+     * Submits tasks and waits for their results.
+     *
+     * @param exec Executor service.
+     * @param cnt Number of tasks.
+     * @return Tasks per second.
+     * @throws Exception If failed.
+     */
+    private static double run(ExecutorService exec, int cnt) throws Exception {
+        long start = System.nanoTime();
+
+        List<Future<Integer>> futs = new ArrayList<>(cnt);
+
+        for (int i = 0; i < cnt; i++)
+            futs.add(exec.submit(new LengthCallable("word-" + i)));
+
+        long sum = 0;
+
+        for (Future<Integer> fut : futs)
+            sum += fut.get();
+
+        double rate = cnt * 1e9 / (System.nanoTime() - start);
+
+        System.out.println(String.format(">>> Executed %d tasks [service=%s, sum=%d, tasks/sec=%.0f]", cnt,
+            exec.getClass().getSimpleName(), sum, rate));
+
+        return rate;
+    }
+
+    /**
+     * Tiny task returning length of a word.
+     */
+    private static class LengthCallable implements IgniteCallable<Integer> {
+        /** Word. */
+        private final String word;
+
+        /**
+         * @param word Word.
+         */
+        LengthCallable(String word) {
+            this.word = word;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Integer call() {
+            return word.length();
+        }
+    }
+}
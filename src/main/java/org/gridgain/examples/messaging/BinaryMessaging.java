@@ -0,0 +1,170 @@
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.messaging;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Messaging with pre-serialized binary payloads.
+ * <p>
+ * The payload is wrapped into an {@link Externalizable} frame that writes the bytes as is, so there is no object
+ * graph to marshal. A broadcast is a single {@link IgniteMessaging#send(Object, Object)} call for the whole cluster
+ * group, so the frame is marshalled once regardless of the number of recipients. If the payload buffer is backed by
+ * an accessible array, the sender does not copy it. Receivers get a read-only {@link ByteBuffer} view of the received
+ * bytes without copying.
+ */
+public class BinaryMessaging {
+    /** Prefix of the topics frames are sent to. */
+    private static final String TOPIC_PREFIX = "BINARY-";
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /**
+     * @param ignite Ignite instance.
+     */
+    public BinaryMessaging(Ignite ignite) {
+        this.ignite = ignite;
+    }
+
+    /**
+     * Sends payload to all nodes of the group. The buffer must not be modified until the method returns.
+     *
+     * @param grp Recipients.
+     * @param topic Topic.
+     * @param payload Payload, from its position to its limit.
+     */
+    public void broadcast(ClusterGroup grp, String topic, ByteBuffer payload) {
+        ignite.message(grp).send(TOPIC_PREFIX + topic, new BinaryFrame(payload));
+    }
+
+    /**
+     * Sends payload to all nodes of the group.
+     *
+     * @param grp Recipients.
+     * @param topic Topic.
+     * @param payload Payload.
+     */
+    public void broadcast(ClusterGroup grp, String topic, byte[] payload) {
+        broadcast(grp, topic, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Registers listener of binary messages on the given nodes.
+     *
+     * @param grp Nodes to listen on.
+     * @param topic Topic.
+     * @param lsnr Listener.
+     * @return Listener ID to pass to {@link IgniteMessaging#stopRemoteListen(UUID)}.
+     */
+    public UUID remoteListen(ClusterGroup grp, String topic, Listener lsnr) {
+        return ignite.message(grp).remoteListen(TOPIC_PREFIX + topic, new FrameListener(lsnr));
+    }
+
+    /**
+     * Listener of binary messages.
+     */
+    public interface Listener extends Serializable {
+        /**
+         * @param nodeId Sender node ID.
+         * @param payload Read-only view of the payload, valid only during the call unless retained by the listener.
+         * @return {@code True} to continue listening.
+         */
+        boolean onMessage(UUID nodeId, ByteBuffer payload);
+    }
+
+    /**
+     * Unwraps frames for the user listener.
+     */
+    private static class FrameListener implements IgniteBiPredicate<UUID, BinaryFrame> {
+        /** User listener. */
+        private final Listener lsnr;
+
+        /**
+         * @param lsnr User listener.
+         */
+        FrameListener(Listener lsnr) {
+            this.lsnr = lsnr;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean apply(UUID nodeId, BinaryFrame frame) {
+            return lsnr.onMessage(nodeId, frame.view());
+        }
+    }
+
+    /**
+     * Frame carrying raw payload bytes.
+     */
+    public static class BinaryFrame implements Externalizable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Bytes. */
+        private byte[] arr;
+
+        /** Offset. */
+        private int off;
+
+        /** Length. */
+        private int len;
+
+        /**
+         * Required by {@link Externalizable}.
+         */
+        public BinaryFrame() {
+            // No-op.
+        }
+
+        /**
+         * @param payload Payload, from its position to its limit.
+         */
+        BinaryFrame(ByteBuffer payload) {
+            len = payload.remaining();
+
+            if (payload.hasArray()) {
+                arr = payload.array();
+                off = payload.arrayOffset() + payload.position();
+            }
+            else {
+                // Direct or read-only buffer, copy once.
+                arr = new byte[len];
+
+                payload.duplicate().get(arr);
+            }
+        }
+
+        /**
+         * @return Read-only view of the payload.
+         */
+        ByteBuffer view() {
+            return ByteBuffer.wrap(arr, off, len).slice().asReadOnlyBuffer();
+        }
+
+        /** {@inheritDoc} */
+        @Override public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeInt(len);
+            out.write(arr, off, len);
+        }
+
+        /** {@inheritDoc} */
+        @Override public void readExternal(ObjectInput in) throws IOException {
+            len = in.readInt();
+            arr = new byte[len];
+            off = 0;
+
+            in.readFully(arr);
+        }
+    }
+}
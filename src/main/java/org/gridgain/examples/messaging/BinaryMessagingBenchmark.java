@@ -0,0 +1,191 @@
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.messaging;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.gridgain.examples.*;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Broadcast fan-out benchmark comparing {@code String} payloads sent with {@link IgniteMessaging#send(Object, Object)}
+ * and binary payloads sent with {@link BinaryMessaging}, for payload sizes from 1KB to 1MB.
+ * <p>
+ * Remote nodes should always be started with special configuration file which
+ * enables P2P class loading: {@code 'ggstart.{sh|bat} ADVANCED-EXAMPLES-DIR/config/example-ignite.xml'}
+ * or {@link ExampleNodeStartup} can be used. Start several remote nodes to see the effect of fan-out.
+ */
+public final class BinaryMessagingBenchmark {
+    /** Payload sizes. */
+    private static final int[] SIZES = {1024, 16 * 1024, 256 * 1024, 1024 * 1024};
+
+    /** Total payload bytes broadcast per size and mode. */
+    private static final long TOTAL_BYTES = 64L * 1024 * 1024;
+
+    /** Node-local map key of the received message counter. */
+    private static final String CNT_KEY = BinaryMessagingBenchmark.class.getName() + "-cnt";
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            ClusterGroup rmts = ignite.cluster().forRemotes();
+
+            if (rmts.nodes().isEmpty())
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            BinaryMessaging binary = new BinaryMessaging(ignite);
+
+            UUID strLsnr = ignite.message(rmts).remoteListen("STRING", new IgniteBiPredicate<UUID, String>() {
+                @Override public boolean apply(UUID nodeId, String msg) {
+                    counter(Ignition.localIgnite()).incrementAndGet();
+
+                    return true;
+                }
+            });
+
+            UUID binLsnr = binary.remoteListen(rmts, "BINARY", new BinaryMessaging.Listener() {
+                @Override public boolean onMessage(UUID nodeId, ByteBuffer payload) {
+                    counter(Ignition.localIgnite()).incrementAndGet();
+
+                    return true;
+                }
+            });
+
+            List<String> res = new ArrayList<>();
+
+            try {
+                for (int size : SIZES) {
+                    int cnt = (int)(TOTAL_BYTES / size);
+
+                    // String of 'size' bytes in UTF-8.
+                    char[] chars = new char[size];
+
+                    Arrays.fill(chars, 'x');
+
+                    String str = new String(chars);
+
+                    byte[] bytes = new byte[size];
+
+                    reset(ignite, rmts);
+
+                    long start = System.nanoTime();
+
+                    for (int i = 0; i < cnt; i++)
+                        ignite.message(rmts).send("STRING", str);
+
+                    double strRate = rate(ignite, rmts, cnt, size, start);
+
+                    reset(ignite, rmts);
+
+                    start = System.nanoTime();
+
+                    for (int i = 0; i < cnt; i++)
+                        binary.broadcast(rmts, "BINARY", bytes);
+
+                    double binRate = rate(ignite, rmts, cnt, size, start);
+
+                    res.add(String.format("size=%dKB, msgs=%d: String=%.1f MB/s, binary=%.1f MB/s", size / 1024, cnt,
+                        strRate, binRate));
+                }
+            }
+            finally {
+                ignite.message(rmts).stopRemoteListen(strLsnr);
+                ignite.message(rmts).stopRemoteListen(binLsnr);
+            }
+
+            System.out.println();
+            System.out.println(">>> Delivered payload throughput [recipients=" + rmts.nodes().size() + ']');
+
+            for (String r : res)
+                System.out.println(">>>   " + r);
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Node-local received message counter.
+     */
+    private static AtomicLong counter(Ignite ignite) {
+        ConcurrentMap<String, AtomicLong> locMap = ignite.cluster().nodeLocalMap();
+
+        AtomicLong cnt = locMap.get(CNT_KEY);
+
+        if (cnt == null) {
+            AtomicLong old = locMap.putIfAbsent(CNT_KEY, cnt = new AtomicLong());
+
+            if (old != null)
+                cnt = old;
+        }
+
+        return cnt;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param rmts Receivers.
+     */
+    private static void reset(Ignite ignite, ClusterGroup rmts) {
+        ignite.compute(rmts).broadcast(new IgniteRunnable() {
+            @IgniteInstanceResource
+            private Ignite ignite;
+
+            @Override public void run() {
+                counter(ignite).set(0);
+            }
+        });
+    }
+
+    /**
+     * Waits until every receiver gets all messages.
+     *
+     * @param ignite Ignite instance.
+     * @param rmts Receivers.
+     * @param cnt Number of messages.
+     * @param size Payload size.
+     * @param start Start time.
+     * @return Delivered megabytes per second, summed over receivers.
+     * @throws Exception If failed.
+     */
+    private static double rate(Ignite ignite, ClusterGroup rmts, int cnt, int size, long start) throws Exception {
+        IgniteCallable<Long> getCnt = new IgniteCallable<Long>() {
+            @IgniteInstanceResource
+            private Ignite ignite;
+
+            @Override public Long call() {
+                return counter(ignite).get();
+            }
+        };
+
+        for (;;) {
+            long min = Long.MAX_VALUE;
+
+            for (Long c : ignite.compute(rmts).broadcast(getCnt))
+                min = Math.min(min, c);
+
+            if (min >= cnt)
+                break;
+
+            Thread.sleep(10);
+        }
+
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        return (double)cnt * size * rmts.nodes().size() / (1024 * 1024) / secs;
+    }
+}
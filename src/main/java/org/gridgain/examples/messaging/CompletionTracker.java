@@ -0,0 +1,283 @@
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.messaging;
+
+import org.apache.ignite.*;
+import org.apache.ignite.lang.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Waits until a number of operations is completed on remote nodes, an alternative to {@link IgniteCountDownLatch}
+ * when the operations are counted down from many nodes.
+ * <p>
+ * Receivers call {@link #countDown(Ignite, UUID, String)}, which only increments a node-local counter. Every node
+ * reports accumulated counts to the waiting node with a single message per {@link #REPORT_INTERVAL}, so waiting for
+ * N operations costs a few messages per node instead of N cluster-wide updates. The price is up to
+ * {@link #REPORT_INTERVAL} milliseconds of extra latency of {@link #await()}.
+ * <p>
+ * The tracker lives on the waiting node only. Counts reported by a node that fails before reporting are lost.
+ */
+public class CompletionTracker implements AutoCloseable {
+    /** Interval between reports of a node, in milliseconds. */
+    public static final long REPORT_INTERVAL = 10;
+
+    /** Node-local map key of the reporter. */
+    private static final String REPORTER_KEY = CompletionTracker.class.getName() + "-reporter";
+
+    /** Topic prefix. */
+    private static final String TOPIC_PREFIX = "COMPLETION-";
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Topic. */
+    private final String topic;
+
+    /** Remaining count. */
+    private final AtomicLong remaining;
+
+    /** Released when remaining count reaches zero. */
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /** Report listener. */
+    private final IgniteBiPredicate<UUID, Long> lsnr;
+
+    /**
+     * Creates tracker on the waiting node.
+     *
+     * @param ignite Ignite instance.
+     * @param name Tracker name, unique on the waiting node.
+     * @param cnt Number of operations to wait for.
+     */
+    public CompletionTracker(Ignite ignite, String name, long cnt) {
+        this.ignite = ignite;
+
+        topic = TOPIC_PREFIX + name;
+
+        remaining = new AtomicLong(cnt);
+
+        if (cnt <= 0)
+            done.countDown();
+
+        lsnr = new IgniteBiPredicate<UUID, Long>() {
+            @Override public boolean apply(UUID nodeId, Long delta) {
+                if (remaining.addAndGet(-delta) <= 0)
+                    done.countDown();
+
+                return true;
+            }
+        };
+
+        ignite.message().localListen(topic, lsnr);
+    }
+
+    /**
+     * Waits until all operations are completed.
+     *
+     * @throws InterruptedException If interrupted.
+     */
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    /**
+     * Waits until all operations are completed or timeout expires.
+     *
+     * @param timeout Timeout.
+     * @param unit Timeout unit.
+     * @return {@code True} if all operations are completed.
+     * @throws InterruptedException If interrupted.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * @return Number of operations reported as not completed yet.
+     */
+    public long remaining() {
+        return Math.max(0, remaining.get());
+    }
+
+    /**
+     * Stops receiving reports.
+     */
+    @Override public void close() {
+        ignite.message().stopLocalListen(topic, lsnr);
+    }
+
+    /**
+     * Counts down an operation on the local node. Called on the node that completed the operation.
+     *
+     * @param ignite Local Ignite instance.
+     * @param waiterId ID of the waiting node.
+     * @param name Tracker name.
+     */
+    public static void countDown(Ignite ignite, UUID waiterId, String name) {
+        report(ignite, waiterId, TOPIC_PREFIX + name, 1);
+    }
+
+    /**
+     * Adds count to be reported to the waiting node on the given topic. The waiting node receives {@code Long} counts
+     * accumulated since the previous report, with the ID of the reporting node.
+     *
+     * @param ignite Local Ignite instance.
+     * @param waiterId ID of the waiting node.
+     * @param topic Topic.
+     * @param delta Count.
+     */
+    static void report(Ignite ignite, UUID waiterId, String topic, long delta) {
+        reporter(ignite).add(waiterId, topic, delta);
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Node-local reporter.
+     */
+    private static Reporter reporter(Ignite ignite) {
+        ConcurrentMap<String, Reporter> locMap = ignite.cluster().nodeLocalMap();
+
+        Reporter reporter = locMap.get(REPORTER_KEY);
+
+        if (reporter == null) {
+            Reporter old = locMap.putIfAbsent(REPORTER_KEY, reporter = new Reporter(ignite));
+
+            if (old == null)
+                reporter.start();
+            else
+                reporter = old;
+        }
+
+        return reporter;
+    }
+
+    /**
+     * Accumulates counts of a node and reports them periodically.
+     */
+    private static class Reporter implements Runnable {
+        /** Value of a count removed from the map, which must not be updated anymore. */
+        private static final long REMOVED = Long.MIN_VALUE;
+
+        /** Ignite instance. */
+        private final Ignite ignite;
+
+        /**
+         * Counts by waiting node and topic. Counts with nothing to report are removed, so that the map does not
+         * keep entries of closed trackers and departed waiters.
+         */
+        private final ConcurrentMap<IgniteBiTuple<UUID, String>, AtomicLong> cnts = new ConcurrentHashMap<>();
+
+        /**
+         * @param ignite Ignite instance.
+         */
+        Reporter(Ignite ignite) {
+            this.ignite = ignite;
+        }
+
+        /**
+         * Starts reporting thread.
+         */
+        void start() {
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "completion-reporter");
+
+                    t.setDaemon(true);
+
+                    return t;
+                }
+            });
+
+            timer.scheduleWithFixedDelay(this, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param waiterId Waiting node ID.
+         * @param topic Topic.
+         * @param delta Count.
+         */
+        void add(UUID waiterId, String topic, long delta) {
+            IgniteBiTuple<UUID, String> key = new IgniteBiTuple<>(waiterId, topic);
+
+            for (;;) {
+                AtomicLong cnt = cnts.get(key);
+
+                if (cnt == null) {
+                    AtomicLong old = cnts.putIfAbsent(key, cnt = new AtomicLong());
+
+                    if (old != null)
+                        cnt = old;
+                }
+
+                if (add(cnt, delta))
+                    return;
+
+                // Removed concurrently by the reporting thread, create a new count.
+                cnts.remove(key, cnt);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            for (Map.Entry<IgniteBiTuple<UUID, String>, AtomicLong> e : cnts.entrySet()) {
+                AtomicLong cnt = e.getValue();
+
+                long delta = cnt.getAndSet(0);
+
+                if (delta == 0) {
+                    // Nothing to report, remove the count unless it has been updated meanwhile.
+                    if (cnt.compareAndSet(0, REMOVED))
+                        cnts.remove(e.getKey(), cnt);
+
+                    continue;
+                }
+
+                UUID waiterId = e.getKey().get1();
+
+                try {
+                    if (ignite.cluster().node(waiterId) == null) {
+                        // Waiter has left, nobody to report to.
+                        if (cnt.compareAndSet(0, REMOVED))
+                            cnts.remove(e.getKey(), cnt);
+
+                        continue;
+                    }
+
+                    ignite.message(ignite.cluster().forNodeId(waiterId)).send(e.getKey().get2(), delta);
+                }
+                catch (RuntimeException ex) {
+                    // Report later. The exception is not rethrown, since it would cancel reporting.
+                    add(cnt, delta);
+
+                    if (!(ex instanceof IgniteException))
+                        ex.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * @param cnt Count.
+         * @param delta Delta.
+         * @return {@code False} if the count has been removed.
+         */
+        private static boolean add(AtomicLong cnt, long delta) {
+            for (;;) {
+                long val = cnt.get();
+
+                if (val == REMOVED)
+                    return false;
+
+                if (cnt.compareAndSet(val, val + delta))
+                    return true;
+            }
+        }
+    }
+}
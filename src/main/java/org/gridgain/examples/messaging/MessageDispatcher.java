@@ -0,0 +1,272 @@
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.messaging;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Sends messages to one node of a cluster group chosen by a {@link Strategy}.
+ * <p>
+ * Per-node {@link IgniteMessaging} instances are created once per topology version and reused for all messages,
+ * so no cluster group projection is allocated per message. The dispatcher tracks messages sent to every node and
+ * not yet processed. Receivers report processed messages with {@link #processed(Ignite, UUID, String)}; the reports
+ * are batched by {@link CompletionTracker}. If receivers do not report, least queued selection degrades to
+ * selection of the node that received the fewest messages.
+ */
+public class MessageDispatcher implements AutoCloseable {
+    /** Topic prefix of processed message reports. */
+    private static final String ACK_TOPIC_PREFIX = "DISPATCHER-ACK-";
+
+    /**
+     * Target selection strategy.
+     */
+    public enum Strategy {
+        /** Nodes in turn. */
+        ROUND_ROBIN,
+
+        /** Node with the fewest unprocessed messages. */
+        LEAST_QUEUED,
+
+        /** Local node if it belongs to the group and has fewer than the local limit of unprocessed messages,
+         * least queued node otherwise. */
+        LOCAL_FIRST
+    }
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Nodes to send to. */
+    private final ClusterGroup grp;
+
+    /** Strategy. */
+    private final Strategy strategy;
+
+    /** Maximum number of unprocessed messages of the local node for {@link Strategy#LOCAL_FIRST}. */
+    private final int locLimit;
+
+    /** Ack topic. */
+    private final String ackTopic;
+
+    /** Unprocessed messages by node. */
+    private final ConcurrentMap<UUID, AtomicLong> queued = new ConcurrentHashMap<>();
+
+    /** Round-robin counter. */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /** Ack listener. */
+    private final IgniteBiPredicate<UUID, Long> ackLsnr;
+
+    /** Targets of the current topology version. */
+    private volatile Targets targets;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param name Dispatcher name, unique on the local node.
+     * @param grp Nodes to send to.
+     * @param strategy Target selection strategy.
+     * @param locLimit Maximum number of unprocessed messages of the local node for {@link Strategy#LOCAL_FIRST}.
+     */
+    public MessageDispatcher(Ignite ignite, String name, ClusterGroup grp, Strategy strategy, int locLimit) {
+        this.ignite = ignite;
+        this.grp = grp;
+        this.strategy = strategy;
+        this.locLimit = locLimit;
+
+        ackTopic = ACK_TOPIC_PREFIX + name;
+
+        ackLsnr = new IgniteBiPredicate<UUID, Long>() {
+            @Override public boolean apply(UUID nodeId, Long delta) {
+                AtomicLong cnt = queued.get(nodeId);
+
+                if (cnt != null)
+                    cnt.addAndGet(-delta);
+
+                return true;
+            }
+        };
+
+        ignite.message().localListen(ackTopic, ackLsnr);
+    }
+
+    /**
+     * Sends message to a node chosen by the strategy.
+     *
+     * @param topic Topic.
+     * @param msg Message.
+     * @return ID of the node the message was sent to.
+     */
+    public UUID send(Object topic, Object msg) {
+        Targets t = targets();
+
+        int idx = select(t);
+
+        t.queued[idx].incrementAndGet();
+
+        t.msgs[idx].send(topic, msg);
+
+        return t.nodes[idx].id();
+    }
+
+    /**
+     * @return Number of unprocessed messages by node.
+     */
+    public Map<UUID, Long> queued() {
+        Map<UUID, Long> res = new HashMap<>();
+
+        for (Map.Entry<UUID, AtomicLong> e : queued.entrySet())
+            res.put(e.getKey(), e.getValue().get());
+
+        return res;
+    }
+
+    /**
+     * Stops receiving processed message reports.
+     */
+    @Override public void close() {
+        ignite.message().stopLocalListen(ackTopic, ackLsnr);
+    }
+
+    /**
+     * Reports processed message. Called on the receiving node.
+     *
+     * @param ignite Local Ignite instance.
+     * @param senderId ID of the node that sent the message.
+     * @param name Dispatcher name.
+     */
+    public static void processed(Ignite ignite, UUID senderId, String name) {
+        CompletionTracker.report(ignite, senderId, ACK_TOPIC_PREFIX + name, 1);
+    }
+
+    /**
+     * @param t Targets.
+     * @return Index of the chosen target.
+     */
+    private int select(Targets t) {
+        int start = Math.abs(next.getAndIncrement() % t.nodes.length);
+
+        switch (strategy) {
+            case ROUND_ROBIN:
+                return start;
+
+            case LOCAL_FIRST:
+                if (t.locIdx >= 0 && t.queued[t.locIdx].get() < locLimit)
+                    return t.locIdx;
+
+                // Fall through.
+
+            default:
+                int best = start;
+
+                // Scan from a rotating position, so that ties are resolved round-robin.
+                for (int i = 1; i < t.nodes.length; i++) {
+                    int idx = (start + i) % t.nodes.length;
+
+                    if (t.queued[idx].get() < t.queued[best].get())
+                        best = idx;
+                }
+
+                return best;
+        }
+    }
+
+    /**
+     * @return Targets of the current topology version.
+     */
+    private Targets targets() {
+        long topVer = ignite.cluster().topologyVersion();
+
+        Targets t = targets;
+
+        if (t != null && t.topVer == topVer)
+            return t;
+
+        synchronized (this) {
+            t = targets;
+
+            if (t == null || t.topVer != topVer)
+                targets = t = new Targets(topVer);
+        }
+
+        return t;
+    }
+
+    /**
+     * Targets of a topology version.
+     */
+    private class Targets {
+        /** Topology version. */
+        private final long topVer;
+
+        /** Nodes. */
+        private final ClusterNode[] nodes;
+
+        /** Messaging of every node. */
+        private final IgniteMessaging[] msgs;
+
+        /** Unprocessed message counters of every node. */
+        private final AtomicLong[] queued;
+
+        /** Index of the local node, {@code -1} if it does not belong to the group. */
+        private final int locIdx;
+
+        /**
+         * @param topVer Topology version.
+         */
+        Targets(long topVer) {
+            this.topVer = topVer;
+
+            Collection<ClusterNode> grpNodes = grp.nodes();
+
+            if (grpNodes.isEmpty())
+                throw new ClusterGroupEmptyException("Cluster group is empty.");
+
+            nodes = grpNodes.toArray(new ClusterNode[grpNodes.size()]);
+            msgs = new IgniteMessaging[nodes.length];
+            queued = new AtomicLong[nodes.length];
+
+            UUID locId = ignite.cluster().localNode().id();
+
+            int loc = -1;
+
+            Set<UUID> ids = new HashSet<>();
+
+            for (int i = 0; i < nodes.length; i++) {
+                UUID id = nodes[i].id();
+
+                ids.add(id);
+
+                msgs[i] = ignite.message(ignite.cluster().forNode(nodes[i]));
+
+                AtomicLong cnt = MessageDispatcher.this.queued.get(id);
+
+                if (cnt == null) {
+                    AtomicLong old = MessageDispatcher.this.queued.putIfAbsent(id, cnt = new AtomicLong());
+
+                    if (old != null)
+                        cnt = old;
+                }
+
+                queued[i] = cnt;
+
+                if (id.equals(locId))
+                    loc = i;
+            }
+
+            locIdx = loc;
+
+            // Forget nodes that have left.
+            MessageDispatcher.this.queued.keySet().retainAll(ids);
+        }
+    }
+}
@@ -15,15 +15,23 @@ import org.gridgain.examples.*;
 import java.util.*;
 
 /**
- * Example that demonstrates how to exchange messages between nodes.
+ * Example that demonstrates how to exchange messages between nodes and wait until all of them are processed.
+ * <p>
+ * Processed messages are counted with {@link CompletionTracker}: receivers count messages locally and report
+ * the counts to the sender in batches, instead of updating {@link IgniteCountDownLatch} for every message.
+ * Messages are sent with {@link MessageDispatcher}, which picks the least loaded remote node without creating
+ * a cluster group per message.
  * <p>
  * Remote nodes should always be started with special configuration file which
  * enables P2P class loading: {@code 'ggstart.{sh|bat} ADVANCED-EXAMPLES-DIR/config/example-ignite.xml'}
  * or {@link ExampleNodeStartup} can be used.
  */
 public final class MessagingCountDownLatchExample {
-    /** Latch name. */
-    private static final String LATCH_NAME = "MessageLatch";
+    /** Tracker name. */
+    private static final String TRACKER_NAME = "MessageTracker";
+
+    /** Dispatcher name. */
+    private static final String DISPATCHER_NAME = "MessageDispatcher";
 
     /** Message topics. */
     private static final String TOPIC = "LATCH_TOPIC";
@@ -43,31 +51,32 @@ public final class MessagingCountDownLatchExample {
 
             int msgCnt = 20;
 
+            // Create tracker before sending messages, so that no reports are missed.
+            CompletionTracker tracker = new CompletionTracker(ignite, TRACKER_NAME, msgCnt);
+
             // Register listeners on all grid nodes.
             UUID listenId = startListening(ignite, remotes);
 
-            IgniteCountDownLatch latch = ignite.countDownLatch(
-                LATCH_NAME,
-                msgCnt,
-                /*auto delete*/false,
-                /*create*/true);
-
-            assert latch != null;
+            // Send every message to the remote node with the fewest unprocessed messages.
+            MessageDispatcher dispatcher = new MessageDispatcher(ignite, DISPATCHER_NAME, remotes,
+                MessageDispatcher.Strategy.LEAST_QUEUED, 0);
 
             try {
                 // Send unordered messages to all remote nodes.
                 for (int i = 0; i < msgCnt; i++)
-                    ignite.message(remotes.forRandom()).send(TOPIC, Integer.toString(i));
+                    dispatcher.send(TOPIC, Integer.toString(i));
 
                 System.out.println(">>> Finished sending messages. Waiting for all messages being processed.");
 
-                latch.await();
+                tracker.await();
 
                 System.out.println(">>> Finished waiting for messages to process. " +
                     "Check output on all nodes for message printouts.");
             }
             finally {
-                latch.close();
+                dispatcher.close();
+
+                tracker.close();
 
                 ignite.message(remotes).stopRemoteListen(listenId);
             }
@@ -86,11 +95,10 @@ public final class MessagingCountDownLatchExample {
             @Override public boolean apply(UUID nodeId, String msg) {
                 System.out.println("Received message [msg=" + msg + ", fromNodeId=" + nodeId + ']');
 
-                IgniteCountDownLatch latch = ignite.countDownLatch(LATCH_NAME, 0, false, false);
-
-                assert latch != null;
+                // Count down locally, the count is reported to the sender in a batch.
+                CompletionTracker.countDown(ignite, nodeId, TRACKER_NAME);
 
-                latch.countDown();
+                MessageDispatcher.processed(ignite, nodeId, DISPATCHER_NAME);
 
                 return true; // Return true to continue listening.
             }
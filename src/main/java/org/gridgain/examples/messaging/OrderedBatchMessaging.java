@@ -0,0 +1,474 @@
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.messaging;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Ordered messaging that batches messages into frames.
+ * <p>
+ * Messages sent with {@link #send(UUID, String, Object)} are buffered per destination node and topic and sent as
+ * a single frame when {@code batchSize} messages are collected or {@code window} milliseconds pass since the first
+ * buffered message. Every frame carries the sequence number of its first message, so that the receiver delivers
+ * messages in the order they were sent even if frames arrive out of order.
+ * <p>
+ * Ordering is guaranteed per sender instance, destination node and topic, the same as for
+ * {@link IgniteMessaging#sendOrdered(Object, Object, long)} within a topic. Listeners are registered with
+ * {@link #remoteListen(Ignite, ClusterGroup, String, IgniteBiPredicate)}; resources are not injected into them,
+ * use {@link Ignition#localIgnite()} to get the local Ignite instance.
+ * <p>
+ * Frames of a stream are sent one at a time. If a frame fails to send while the destination node is alive, its
+ * messages are put back in front of the buffer with the same sequence numbers and sent again on the next flush;
+ * the receiver ignores frames it has already delivered. If the destination node has left, the stream is dropped.
+ * Receivers forget the state of a sender instance when it is closed or when its node leaves.
+ */
+public class OrderedBatchMessaging implements AutoCloseable {
+    /** Prefix of the topics frames are sent to. */
+    private static final String FRAME_TOPIC_PREFIX = "ORDERED_BATCH-";
+
+    /** Interval of receiver state cleanup, in milliseconds. */
+    private static final long RECEIVER_CLEANUP_INTERVAL = 10_000;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Maximum number of messages in a frame. */
+    private final int batchSize;
+
+    /** Maximum time a message is buffered, in milliseconds. */
+    private final long window;
+
+    /** Sender instance ID, distinguishes sequences of different instances on the same node. */
+    private final UUID senderId = UUID.randomUUID();
+
+    /** Streams by destination node and topic. */
+    private final ConcurrentMap<StreamKey, Stream> streams = new ConcurrentHashMap<>();
+
+    /** Flush timer. */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * @param ignite Ignite instance.
+     * @param batchSize Maximum number of messages in a frame.
+     * @param window Maximum time a message is buffered, in milliseconds.
+     */
+    public OrderedBatchMessaging(Ignite ignite, int batchSize, long window) {
+        this.ignite = ignite;
+        this.batchSize = batchSize;
+        this.window = window;
+
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ordered-batch-flusher");
+
+                t.setDaemon(true);
+
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Sends message to a node.
+     *
+     * @param nodeId Destination node ID.
+     * @param topic Topic.
+     * @param msg Message, must be serializable.
+     * @throws ClusterTopologyException If destination node has left.
+     */
+    public void send(UUID nodeId, String topic, Object msg) {
+        StreamKey key = new StreamKey(nodeId, topic);
+
+        Stream stream = streams.get(key);
+
+        if (stream == null) {
+            Stream old = streams.putIfAbsent(key, stream = new Stream(key));
+
+            if (old != null)
+                stream = old;
+        }
+
+        stream.add(msg);
+    }
+
+    /**
+     * Sends all buffered messages.
+     */
+    public void flush() {
+        for (Stream stream : streams.values())
+            stream.flush();
+    }
+
+    /**
+     * Sends buffered messages, notifies receivers that the streams are over and stops the flush timer.
+     */
+    @Override public void close() {
+        timer.shutdown();
+
+        for (Stream stream : streams.values())
+            stream.close();
+    }
+
+    /**
+     * Registers listener of ordered messages on the given nodes.
+     *
+     * @param ignite Ignite instance.
+     * @param grp Nodes to listen on.
+     * @param topic Topic.
+     * @param lsnr Listener, called in order of messages of each sender; returns {@code false} to stop listening.
+     * @return Listener ID to pass to {@link IgniteMessaging#stopRemoteListen(UUID)}.
+     */
+    public static <T> UUID remoteListen(Ignite ignite, ClusterGroup grp, String topic,
+        IgniteBiPredicate<UUID, T> lsnr) {
+        return ignite.message(grp).remoteListen(FRAME_TOPIC_PREFIX + topic, new FrameListener<>(lsnr));
+    }
+
+    /**
+     * Key of a stream.
+     */
+    private static class StreamKey {
+        /** Destination node ID. */
+        private final UUID nodeId;
+
+        /** Topic. */
+        private final String topic;
+
+        /**
+         * @param nodeId Destination node ID.
+         * @param topic Topic.
+         */
+        StreamKey(UUID nodeId, String topic) {
+            this.nodeId = nodeId;
+            this.topic = topic;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (!(o instanceof StreamKey))
+                return false;
+
+            StreamKey key = (StreamKey)o;
+
+            return nodeId.equals(key.nodeId) && topic.equals(key.topic);
+        }
+
+        /** {@inheritDoc} */
+        @Override public int hashCode() {
+            return 31 * nodeId.hashCode() + topic.hashCode();
+        }
+    }
+
+    /**
+     * Messages to a destination node and topic.
+     */
+    private class Stream {
+        /** Key. */
+        private final StreamKey key;
+
+        /** Sequence number of the next message. */
+        private long nextSeq;
+
+        /** Buffered messages. */
+        private ArrayList<Object> buf = new ArrayList<>();
+
+        /** Sequence number of the first buffered message. */
+        private long bufSeq;
+
+        /** Whether flush is scheduled. */
+        private boolean flushScheduled;
+
+        /**
+         * @param key Key.
+         */
+        Stream(StreamKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @param msg Message.
+         */
+        synchronized void add(Object msg) {
+            if (buf.isEmpty())
+                bufSeq = nextSeq;
+
+            buf.add(msg);
+
+            nextSeq++;
+
+            if (buf.size() >= batchSize)
+                sendBuffered(false);
+            else
+                scheduleFlush();
+        }
+
+        /**
+         * Sends buffered messages.
+         */
+        synchronized void flush() {
+            flushScheduled = false;
+
+            if (!buf.isEmpty()) {
+                try {
+                    sendBuffered(false);
+                }
+                catch (ClusterTopologyException ignored) {
+                    // Destination has left, stream is dropped.
+                }
+            }
+        }
+
+        /**
+         * Sends buffered messages followed by the end of the stream.
+         */
+        synchronized void close() {
+            if (buf.isEmpty())
+                bufSeq = nextSeq;
+
+            try {
+                sendBuffered(true);
+            }
+            catch (IgniteException e) {
+                // Receiver state is cleaned up when the node leaves, or kept until this node leaves.
+                if (!(e instanceof ClusterTopologyException))
+                    e.printStackTrace();
+            }
+        }
+
+        /**
+         * Must be called under lock. Sends buffered messages as a frame. If sending fails while the destination
+         * is alive, the messages stay buffered and flush is scheduled.
+         *
+         * @param last Whether the frame ends the stream.
+         * @throws ClusterTopologyException If destination node has left, the stream is dropped.
+         */
+        private void sendBuffered(boolean last) {
+            Frame frame = new Frame(senderId, bufSeq, buf, last);
+
+            try {
+                ignite.message(ignite.cluster().forNodeId(key.nodeId)).send(FRAME_TOPIC_PREFIX + key.topic, frame);
+            }
+            catch (IgniteException e) {
+                if (ignite.cluster().node(key.nodeId) == null) {
+                    streams.remove(key, this);
+
+                    buf.clear();
+
+                    throw e instanceof ClusterTopologyException ? (ClusterTopologyException)e :
+                        new ClusterTopologyException("Destination node has left: " + key.nodeId, e);
+                }
+
+                if (last)
+                    throw e;
+
+                // No later frame has been sent, so the messages are retried with the same sequence numbers.
+                scheduleFlush();
+
+                return;
+            }
+
+            buf = new ArrayList<>(batchSize);
+        }
+
+        /**
+         * Must be called under lock.
+         */
+        private void scheduleFlush() {
+            if (flushScheduled)
+                return;
+
+            flushScheduled = true;
+
+            try {
+                timer.schedule(new Runnable() {
+                    @Override public void run() {
+                        flush();
+                    }
+                }, window, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException ignored) {
+                // Closed, remaining messages are sent by close().
+                flushScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Frame of messages.
+     */
+    private static class Frame implements Serializable {
+        /** Sender instance ID. */
+        private final UUID senderId;
+
+        /** Sequence number of the first message. */
+        private final long firstSeq;
+
+        /** Messages. */
+        private final ArrayList<Object> msgs;
+
+        /** Whether this frame ends the stream. */
+        private final boolean last;
+
+        /**
+         * @param senderId Sender instance ID.
+         * @param firstSeq Sequence number of the first message.
+         * @param msgs Messages.
+         * @param last Whether this frame ends the stream.
+         */
+        Frame(UUID senderId, long firstSeq, ArrayList<Object> msgs, boolean last) {
+            this.senderId = senderId;
+            this.firstSeq = firstSeq;
+            this.msgs = msgs;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Receiver state of a sender instance.
+     */
+    private static class Receiver {
+        /** Sender node ID. */
+        private final UUID nodeId;
+
+        /** Sequence number of the next message to deliver. */
+        private long nextSeq;
+
+        /** Frames received ahead of order, by first sequence number. */
+        private final TreeMap<Long, Frame> pending = new TreeMap<>();
+
+        /**
+         * @param nodeId Sender node ID.
+         */
+        Receiver(UUID nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * Listener of frames, delivers messages in order.
+     */
+    private static class FrameListener<T> implements IgniteBiPredicate<UUID, Frame> {
+        /** User listener. */
+        private final IgniteBiPredicate<UUID, T> lsnr;
+
+        /** Receiver states by sender instance. */
+        private transient Map<UUID, Receiver> receivers;
+
+        /** Time of the next cleanup of receivers of departed nodes. */
+        private transient long nextCleanup;
+
+        /**
+         * @param lsnr User listener.
+         */
+        FrameListener(IgniteBiPredicate<UUID, T> lsnr) {
+            this.lsnr = lsnr;
+        }
+
+        /** {@inheritDoc} */
+        @SuppressWarnings("unchecked")
+        @Override public synchronized boolean apply(UUID nodeId, Frame frame) {
+            if (receivers == null)
+                receivers = new HashMap<>();
+
+            cleanup();
+
+            Receiver rcv = receivers.get(frame.senderId);
+
+            if (rcv == null)
+                receivers.put(frame.senderId, rcv = new Receiver(nodeId));
+
+            // Frame that has been resent after a send failure, with messages added since the failed send.
+            if (frame.firstSeq < rcv.nextSeq) {
+                int delivered = (int)(rcv.nextSeq - frame.firstSeq);
+
+                if (delivered >= frame.msgs.size()) {
+                    if (frame.last)
+                        receivers.remove(frame.senderId);
+
+                    return true;
+                }
+
+                frame = new Frame(frame.senderId, rcv.nextSeq,
+                    new ArrayList<>(frame.msgs.subList(delivered, frame.msgs.size())), frame.last);
+            }
+
+            Frame pending = rcv.pending.get(frame.firstSeq);
+
+            // Keep the longer of a frame and its resent copy.
+            if (pending == null || pending.msgs.size() < frame.msgs.size() || frame.last)
+                rcv.pending.put(frame.firstSeq, frame);
+
+            // Deliver frames that are next in sequence.
+            Map.Entry<Long, Frame> first;
+
+            while ((first = rcv.pending.firstEntry()) != null && first.getKey() == rcv.nextSeq) {
+                rcv.pending.pollFirstEntry();
+
+                Frame next = first.getValue();
+
+                for (Object msg : next.msgs) {
+                    if (!lsnr.apply(nodeId, (T)msg))
+                        return false;
+                }
+
+                rcv.nextSeq += next.msgs.size();
+
+                if (next.last) {
+                    receivers.remove(frame.senderId);
+
+                    break;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Periodically removes states of sender instances whose nodes have left.
+         */
+        private void cleanup() {
+            long now = System.currentTimeMillis();
+
+            if (now < nextCleanup)
+                return;
+
+            nextCleanup = now + RECEIVER_CLEANUP_INTERVAL;
+
+            Ignite ignite = localIgnite();
+
+            if (ignite == null)
+                return;
+
+            for (Iterator<Receiver> it = receivers.values().iterator(); it.hasNext(); ) {
+                if (ignite.cluster().node(it.next().nodeId) == null)
+                    it.remove();
+            }
+        }
+
+        /**
+         * @return Local Ignite instance or {@code null} if it is not available in the current thread.
+         */
+        @Nullable private static Ignite localIgnite() {
+            try {
+                return Ignition.localIgnite();
+            }
+            catch (IgniteIllegalStateException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.messaging;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.gridgain.examples.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares throughput and delivery latency of per-message {@link IgniteMessaging#sendOrdered(Object, Object, long)}
+ * and {@link OrderedBatchMessaging}. Messages are sent to one remote node, which checks their order and records
+ * delivery latency.
+ * <p>
+ * Latency is measured with wall clock of the sender and the receiver, so nodes should run on the same host.
+ * <p>
+ * Remote nodes should always be started with special configuration file which
+ * enables P2P class loading: {@code 'ggstart.{sh|bat} ADVANCED-EXAMPLES-DIR/config/example-ignite.xml'}
+ * or {@link ExampleNodeStartup} can be used.
+ */
+public final class OrderedBatchMessagingBenchmark {
+    /** Topic. */
+    private static final String TOPIC = "ORDERED_BENCHMARK";
+
+    /** Number of messages. */
+    private static final int MSG_CNT = 100_000;
+
+    /** Maximum number of messages in a frame. */
+    private static final int BATCH_SIZE = 256;
+
+    /** Batching window in milliseconds. */
+    private static final long WINDOW = 2;
+
+    /** Node-local map key of received message statistics. */
+    private static final String STATS_KEY = OrderedBatchMessagingBenchmark.class.getName() + "-stats";
+
+    /**
+     * Executes example.
+     *
+     * @param args Command line arguments, none required.
+     * @throws Exception If failed.
+     */
+    public static void main(String[] args) throws Exception {
+        try (Ignite ignite = Ignition.start("config/example-ignite.xml")) {
+            if (ignite.cluster().forRemotes().nodes().isEmpty())
+                throw new RuntimeException("Not enough nodes in the topology to demonstrate the example");
+
+            ClusterGroup rmt = ignite.cluster().forRemotes().forOldest();
+
+            UUID rmtId = rmt.node().id();
+
+            // Per-message ordered sending.
+            reset(ignite, rmt);
+
+            UUID lsnrId = ignite.message(rmt).remoteListen(TOPIC, new LatencyListener());
+
+            long start = System.nanoTime();
+
+            for (long i = 0; i < MSG_CNT; i++)
+                ignite.message(rmt).sendOrdered(TOPIC, new long[] {i, System.currentTimeMillis()}, 0);
+
+            String plain = report(ignite, rmt, start);
+
+            ignite.message(rmt).stopRemoteListen(lsnrId);
+
+            // Batched ordered sending.
+            reset(ignite, rmt);
+
+            lsnrId = OrderedBatchMessaging.remoteListen(ignite, rmt, TOPIC, new LatencyListener());
+
+            try (OrderedBatchMessaging msg = new OrderedBatchMessaging(ignite, BATCH_SIZE, WINDOW)) {
+                start = System.nanoTime();
+
+                for (long i = 0; i < MSG_CNT; i++)
+                    msg.send(rmtId, TOPIC, new long[] {i, System.currentTimeMillis()});
+
+                msg.flush();
+
+                String batched = report(ignite, rmt, start);
+
+                System.out.println();
+                System.out.println(">>> sendOrdered:          " + plain);
+                System.out.println(">>> OrderedBatchMessaging: " + batched);
+            }
+            finally {
+                ignite.message(rmt).stopRemoteListen(lsnrId);
+            }
+        }
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @param rmt Receiver.
+     */
+    private static void reset(Ignite ignite, ClusterGroup rmt) {
+        ignite.compute(rmt).run(new IgniteRunnable() {
+            @IgniteInstanceResource
+            private Ignite ignite;
+
+            @Override public void run() {
+                ignite.cluster().nodeLocalMap().put(STATS_KEY, new Stats());
+            }
+        });
+    }
+
+    /**
+     * Waits until all messages are received and formats statistics.
+     *
+     * @param ignite Ignite instance.
+     * @param rmt Receiver.
+     * @param start Start time.
+     * @return Statistics.
+     * @throws Exception If failed.
+     */
+    private static String report(Ignite ignite, ClusterGroup rmt, long start) throws Exception {
+        long[] res;
+
+        for (;;) {
+            res = ignite.compute(rmt).call(new IgniteCallable<long[]>() {
+                @IgniteInstanceResource
+                private Ignite ignite;
+
+                @Override public long[] call() {
+                    Stats stats = (Stats)ignite.cluster().nodeLocalMap().get(STATS_KEY);
+
+                    return stats.snapshot(MSG_CNT);
+                }
+            });
+
+            if (res != null)
+                break;
+
+            Thread.sleep(10);
+        }
+
+        double rate = MSG_CNT * 1e9 / (System.nanoTime() - start);
+
+        return String.format("msgs/sec=%.0f, latency p50=%dms, p99=%dms, max=%dms, outOfOrder=%d", rate, res[0],
+            res[1], res[2], res[3]);
+    }
+
+    /**
+     * Received message statistics of a node.
+     */
+    private static class Stats {
+        /** Latencies. */
+        private final long[] latencies = new long[MSG_CNT];
+
+        /** Number of received messages. */
+        private int cnt;
+
+        /** Number of messages received out of order. */
+        private int outOfOrder;
+
+        /**
+         * @param msg Message: sequence number and send time.
+         */
+        synchronized void onMessage(long[] msg) {
+            if (msg[0] != cnt)
+                outOfOrder++;
+
+            if (cnt < latencies.length)
+                latencies[cnt++] = System.currentTimeMillis() - msg[1];
+        }
+
+        /**
+         * @param expCnt Expected number of messages.
+         * @return Latency p50, p99, max and number of messages out of order, or {@code null} if not all messages
+         *      have been received.
+         */
+        synchronized long[] snapshot(int expCnt) {
+            if (cnt < expCnt)
+                return null;
+
+            long[] sorted = Arrays.copyOf(latencies, cnt);
+
+            Arrays.sort(sorted);
+
+            return new long[] {sorted[cnt / 2], sorted[cnt * 99 / 100], sorted[cnt - 1], outOfOrder};
+        }
+    }
+
+    /**
+     * Records received messages.
+     */
+    private static class LatencyListener implements IgniteBiPredicate<UUID, long[]> {
+        /** {@inheritDoc} */
+        @Override public boolean apply(UUID nodeId, long[] msg) {
+            Stats stats = (Stats)Ignition.localIgnite().cluster().nodeLocalMap().get(STATS_KEY);
+
+            stats.onMessage(msg);
+
+            return true;
+        }
+    }
+}
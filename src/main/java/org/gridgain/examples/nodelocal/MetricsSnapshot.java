@@ -0,0 +1,208 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.nodelocal;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Snapshot of {@link NodeMetrics} of one or several nodes. Counters and gauges are merged as sums, histograms
+ * with equal bounds are merged bucket by bucket.
+ */
+public class MetricsSnapshot implements Serializable {
+    /** */
+    private static final long serialVersionUID = 0L;
+
+    /** Counters. */
+    private final Map<String, Long> counters = new TreeMap<>();
+
+    /** Gauges. */
+    private final Map<String, Long> gauges = new TreeMap<>();
+
+    /** Histograms. */
+    private final Map<String, HistogramSnapshot> histograms = new TreeMap<>();
+
+    /**
+     * @param name Counter name.
+     * @return Counter value, {@code 0} if there is no such counter.
+     */
+    public long counter(String name) {
+        Long val = counters.get(name);
+
+        return val == null ? 0 : val;
+    }
+
+    /**
+     * @param name Gauge name.
+     * @return Gauge value, {@code 0} if there is no such gauge.
+     */
+    public long gauge(String name) {
+        Long val = gauges.get(name);
+
+        return val == null ? 0 : val;
+    }
+
+    /**
+     * @param name Histogram name.
+     * @return Histogram or {@code null} if there is no such histogram.
+     */
+    public HistogramSnapshot histogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * Adds other snapshot to this one.
+     *
+     * @param other Other snapshot.
+     */
+    public void merge(MetricsSnapshot other) {
+        for (Map.Entry<String, Long> e : other.counters.entrySet())
+            addCounter(e.getKey(), e.getValue());
+
+        for (Map.Entry<String, Long> e : other.gauges.entrySet())
+            addGauge(e.getKey(), e.getValue());
+
+        for (Map.Entry<String, HistogramSnapshot> e : other.histograms.entrySet()) {
+            HistogramSnapshot hist = e.getValue();
+
+            addHistogram(e.getKey(), hist.bounds, hist.counts, hist.sum);
+        }
+    }
+
+    /**
+     * @param name Counter name.
+     * @param val Value.
+     */
+    void addCounter(String name, long val) {
+        add(counters, name, val);
+    }
+
+    /**
+     * @param name Gauge name.
+     * @param val Value.
+     */
+    void addGauge(String name, long val) {
+        add(gauges, name, val);
+    }
+
+    /**
+     * @param name Histogram name.
+     * @param bounds Bucket upper bounds.
+     * @param counts Bucket counts.
+     * @param sum Sum of recorded values.
+     */
+    void addHistogram(String name, long[] bounds, long[] counts, long sum) {
+        HistogramSnapshot hist = histograms.get(name);
+
+        if (hist == null)
+            histograms.put(name, new HistogramSnapshot(bounds, counts.clone(), sum));
+        else {
+            if (!Arrays.equals(hist.bounds, bounds))
+                throw new IllegalStateException("Histogram has different bounds on different nodes: " + name);
+
+            for (int i = 0; i < counts.length; i++)
+                hist.counts[i] += counts[i];
+
+            hist.sum += sum;
+        }
+    }
+
+    /**
+     * @param map Map.
+     * @param name Metric name.
+     * @param val Value.
+     */
+    private static void add(Map<String, Long> map, String name, long val) {
+        Long old = map.get(name);
+
+        map.put(name, old == null ? val : old + val);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "MetricsSnapshot [counters=" + counters + ", gauges=" + gauges + ", histograms=" + histograms + ']';
+    }
+
+    /**
+     * Histogram snapshot.
+     */
+    public static class HistogramSnapshot implements Serializable {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Bucket upper bounds. */
+        private final long[] bounds;
+
+        /** Bucket counts, the last one counts values above the last bound. */
+        private final long[] counts;
+
+        /** Sum of recorded values. */
+        private long sum;
+
+        /**
+         * @param bounds Bucket upper bounds.
+         * @param counts Bucket counts.
+         * @param sum Sum of recorded values.
+         */
+        HistogramSnapshot(long[] bounds, long[] counts, long sum) {
+            this.bounds = bounds;
+            this.counts = counts;
+            this.sum = sum;
+        }
+
+        /**
+         * @return Number of recorded values.
+         */
+        public long count() {
+            long cnt = 0;
+
+            for (long c : counts)
+                cnt += c;
+
+            return cnt;
+        }
+
+        /**
+         * @return Mean of recorded values, {@code 0} if there are none.
+         */
+        public double mean() {
+            long cnt = count();
+
+            return cnt == 0 ? 0 : (double)sum / cnt;
+        }
+
+        /**
+         * Estimates percentile by upper bound of the bucket it falls into.
+         *
+         * @param p Percentile, from {@code 0} to {@code 1}.
+         * @return Upper bound of the bucket, {@link Long#MAX_VALUE} for the last bucket.
+         */
+        public long percentile(double p) {
+            long rank = (long)Math.ceil(p * count());
+
+            long cnt = 0;
+
+            for (int i = 0; i < bounds.length; i++) {
+                cnt += counts[i];
+
+                if (cnt >= rank)
+                    return bounds[i];
+            }
+
+            return Long.MAX_VALUE;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return "Histogram [bounds=" + Arrays.toString(bounds) + ", counts=" + Arrays.toString(counts) +
+                ", mean=" + mean() + ']';
+        }
+    }
+}
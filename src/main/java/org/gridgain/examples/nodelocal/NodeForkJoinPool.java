@@ -0,0 +1,56 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.nodelocal;
+
+import org.apache.ignite.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Fork-join pool shared by all jobs of a node, kept in the node local map.
+ * <p>
+ * Jobs that split their work into local subtasks submit them to this pool instead of creating a pool per job,
+ * so the number of threads of a node stays bounded by the number of cores.
+ */
+public class NodeForkJoinPool {
+    /** Node-local map key of the pool. */
+    private static final String POOL_KEY = NodeForkJoinPool.class.getName();
+
+    /**
+     * Ensures utility class is not instantiated.
+     */
+    private NodeForkJoinPool() {
+        // No-op.
+    }
+
+    /**
+     * Gets pool of the local node.
+     *
+     * @param ignite Local Ignite instance.
+     * @return Pool.
+     */
+    public static ForkJoinPool get(Ignite ignite) {
+        ConcurrentMap<String, ForkJoinPool> locMap = ignite.cluster().nodeLocalMap();
+
+        ForkJoinPool pool = locMap.get(POOL_KEY);
+
+        if (pool == null) {
+            ForkJoinPool old = locMap.putIfAbsent(POOL_KEY, pool = new ForkJoinPool());
+
+            if (old != null) {
+                pool.shutdown();
+
+                pool = old;
+            }
+        }
+
+        return pool;
+    }
+}
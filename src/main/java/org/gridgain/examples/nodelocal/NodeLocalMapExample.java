@@ -12,12 +12,9 @@ package org.gridgain.examples.nodelocal;
 import org.apache.ignite.*;
 import org.apache.ignite.lang.*;
 
-import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.*;
-
 /**
- * This example shows how to use NodeLocalMap.
+ * This example shows how to use NodeLocalMap. Execution counts are kept in {@link NodeMetrics}, a registry
+ * stored in the node local map, and summed over the cluster with {@link NodeMetrics#collect}.
  */
 public class NodeLocalMapExample {
     /** Key for node local map. */
@@ -31,18 +28,11 @@ public class NodeLocalMapExample {
         try (final Ignite ignite = Ignition.start("config/example-ignite.xml")) {
             IgniteRunnable runnable = new IgniteRunnable() {
                 @Override public void run() {
-                    ConcurrentMap<String, AtomicInteger> locMap = ignite.cluster().nodeLocalMap();
-
-                    AtomicInteger cntr = locMap.get(COUNTER_KEY);
+                    NodeMetrics.Counter cntr = NodeMetrics.get(ignite).counter(COUNTER_KEY);
 
-                    if (cntr == null) {
-                        AtomicInteger old = locMap.putIfAbsent(COUNTER_KEY, cntr = new AtomicInteger());
+                    cntr.increment();
 
-                        if (old != null)
-                            cntr = old;
-                    }
-
-                    int execs = cntr.incrementAndGet();
+                    long execs = cntr.get();
 
                     System.out.println("Ran closure on this node " + execs + " time(s).");
                 }
@@ -53,20 +43,10 @@ public class NodeLocalMapExample {
             for (int i = 0; i < execCnt; i++)
                 ignite.compute(ignite.cluster().forRandom()).run(runnable);
 
-            Collection<Integer> col = ignite.compute().broadcast(new IgniteCallable<Integer>() {
-                @Override public Integer call() throws Exception {
-                    ConcurrentMap<String, AtomicInteger> locMap = ignite.cluster().nodeLocalMap();
-
-                    AtomicInteger cnt = locMap.get(COUNTER_KEY);
-
-                    return cnt == null ? 0 : cnt.get();
-                }
-            });
-
-            int sum = 0;
+            // Take snapshots on all nodes with one broadcast and merge them.
+            MetricsSnapshot snapshot = NodeMetrics.collect(ignite, ignite.cluster());
 
-            for (Integer c : col)
-                sum += c;
+            long sum = snapshot.counter(COUNTER_KEY);
 
             System.out.println("Execution count [expected=" + execCnt + ", actual=" + sum + ']');
         }
@@ -0,0 +1,324 @@
+/* @java.file.header */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.nodelocal;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Node-local registry of counters, gauges and fixed-bucket histograms, kept in the node local map.
+ * <p>
+ * Counters and histograms are updated in padded stripes selected by thread, so that threads of a node rarely
+ * contend and no objects are allocated on update. Metric lookup by name goes through a map, so code on hot paths
+ * should get a metric once and keep it. {@link #collect(Ignite, ClusterGroup)} takes snapshots on all nodes
+ * of a group with one broadcast and merges them. The standard {@code LongAdder} is not used because
+ * the examples are built for Java 7.
+ */
+public class NodeMetrics {
+    /** Number of stripes. */
+    private static final int STRIPES = 16;
+
+    /** Distance between stripes in the array, in longs, to place them in different cache lines. */
+    private static final int PAD = 8;
+
+    /** Node-local map key of the registry. */
+    private static final String REGISTRY_KEY = NodeMetrics.class.getName();
+
+    /** Counters. */
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /** Gauges. */
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /** Histograms. */
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Gets registry of the local node.
+     *
+     * @param ignite Local Ignite instance.
+     * @return Registry.
+     */
+    public static NodeMetrics get(Ignite ignite) {
+        ConcurrentMap<String, NodeMetrics> locMap = ignite.cluster().nodeLocalMap();
+
+        NodeMetrics metrics = locMap.get(REGISTRY_KEY);
+
+        if (metrics == null) {
+            NodeMetrics old = locMap.putIfAbsent(REGISTRY_KEY, metrics = new NodeMetrics());
+
+            if (old != null)
+                metrics = old;
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Takes snapshots of registries on all nodes of the group and merges them.
+     *
+     * @param ignite Ignite instance.
+     * @param grp Cluster group.
+     * @return Merged snapshot.
+     */
+    public static MetricsSnapshot collect(Ignite ignite, ClusterGroup grp) {
+        MetricsSnapshot res = new MetricsSnapshot();
+
+        for (MetricsSnapshot snapshot : ignite.compute(grp).broadcast(new SnapshotCallable()))
+            res.merge(snapshot);
+
+        return res;
+    }
+
+    /**
+     * Gets or creates counter.
+     *
+     * @param name Counter name.
+     * @return Counter.
+     */
+    public Counter counter(String name) {
+        Counter cntr = counters.get(name);
+
+        if (cntr == null) {
+            Counter old = counters.putIfAbsent(name, cntr = new Counter());
+
+            if (old != null)
+                cntr = old;
+        }
+
+        return cntr;
+    }
+
+    /**
+     * Gets or creates gauge.
+     *
+     * @param name Gauge name.
+     * @return Gauge.
+     */
+    public Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+
+        if (gauge == null) {
+            Gauge old = gauges.putIfAbsent(name, gauge = new Gauge());
+
+            if (old != null)
+                gauge = old;
+        }
+
+        return gauge;
+    }
+
+    /**
+     * Gets or creates histogram. Bounds of an existing histogram are not changed.
+     *
+     * @param name Histogram name.
+     * @param bounds Ascending inclusive upper bounds of buckets. Values above the last bound are counted
+     *      in an extra bucket.
+     * @return Histogram.
+     */
+    public Histogram histogram(String name, long... bounds) {
+        Histogram hist = histograms.get(name);
+
+        if (hist == null) {
+            Histogram old = histograms.putIfAbsent(name, hist = new Histogram(bounds));
+
+            if (old != null)
+                hist = old;
+        }
+
+        return hist;
+    }
+
+    /**
+     * @return Snapshot of all metrics of this registry.
+     */
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+
+        for (Map.Entry<String, Counter> e : counters.entrySet())
+            snapshot.addCounter(e.getKey(), e.getValue().get());
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet())
+            snapshot.addGauge(e.getKey(), e.getValue().get());
+
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            Histogram hist = e.getValue();
+
+            snapshot.addHistogram(e.getKey(), hist.bounds, hist.counts(), hist.sum());
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * @return Stripe of the current thread.
+     */
+    private static int stripe() {
+        return (int)(Thread.currentThread().getId() % STRIPES);
+    }
+
+    /**
+     * Monotonic counter. Merged across nodes as a sum.
+     */
+    public static class Counter {
+        /** Padded stripes. */
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+        /**
+         * Increments counter.
+         */
+        public void increment() {
+            add(1);
+        }
+
+        /**
+         * @param delta Delta.
+         */
+        public void add(long delta) {
+            cells.addAndGet(stripe() * PAD, delta);
+        }
+
+        /**
+         * Sums stripes. The sum is not atomic with concurrent updates, so it cannot be used to number events.
+         *
+         * @return Sum of stripes.
+         */
+        public long get() {
+            long sum = 0;
+
+            for (int i = 0; i < STRIPES; i++)
+                sum += cells.get(i * PAD);
+
+            return sum;
+        }
+    }
+
+    /**
+     * Gauge holding current value, e.g. number of pending jobs. Merged across nodes as a sum.
+     * Not striped, because the current value must be readable after every update.
+     */
+    public static class Gauge {
+        /** Value. */
+        private final AtomicLong val = new AtomicLong();
+
+        /**
+         * @param val New value.
+         */
+        public void set(long val) {
+            this.val.set(val);
+        }
+
+        /**
+         * @param delta Delta.
+         * @return Updated value.
+         */
+        public long add(long delta) {
+            return val.addAndGet(delta);
+        }
+
+        /**
+         * @return Value.
+         */
+        public long get() {
+            return val.get();
+        }
+    }
+
+    /**
+     * Histogram with fixed buckets. Every stripe holds bucket counts followed by sum of recorded values.
+     */
+    public static class Histogram {
+        /** Bucket upper bounds. */
+        private final long[] bounds;
+
+        /** Distance between stripes in the array, in longs. */
+        private final int stride;
+
+        /** Padded stripes. */
+        private final AtomicLongArray cells;
+
+        /**
+         * @param bounds Ascending inclusive upper bounds of buckets.
+         */
+        Histogram(long[] bounds) {
+            for (int i = 1; i < bounds.length; i++) {
+                if (bounds[i] <= bounds[i - 1])
+                    throw new IllegalArgumentException("Bounds must be ascending: " + Arrays.toString(bounds));
+            }
+
+            this.bounds = bounds.clone();
+
+            // Bucket counts, extra bucket and sum, rounded up to whole cache lines.
+            stride = (bounds.length + 2 + PAD - 1) / PAD * PAD;
+
+            cells = new AtomicLongArray(STRIPES * stride);
+        }
+
+        /**
+         * @param val Value.
+         */
+        public void record(long val) {
+            int idx = Arrays.binarySearch(bounds, val);
+
+            int bucket = idx >= 0 ? idx : -idx - 1;
+
+            int base = stripe() * stride;
+
+            cells.incrementAndGet(base + bucket);
+            cells.addAndGet(base + bounds.length + 1, val);
+        }
+
+        /**
+         * @return Bucket counts summed over stripes.
+         */
+        long[] counts() {
+            long[] counts = new long[bounds.length + 1];
+
+            for (int s = 0; s < STRIPES; s++) {
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] += cells.get(s * stride + i);
+            }
+
+            return counts;
+        }
+
+        /**
+         * @return Sum of recorded values.
+         */
+        long sum() {
+            long sum = 0;
+
+            for (int s = 0; s < STRIPES; s++)
+                sum += cells.get(s * stride + bounds.length + 1);
+
+            return sum;
+        }
+    }
+
+    /**
+     * Takes snapshot of the registry of the node it runs on.
+     */
+    private static class SnapshotCallable implements IgniteCallable<MetricsSnapshot> {
+        /** Local Ignite instance. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /** {@inheritDoc} */
+        @Override public MetricsSnapshot call() {
+            return get(ignite).snapshot();
+        }
+    }
+}
@@ -30,6 +30,9 @@ import static org.gridgain.examples.services.CacheServiceExampleUtils.*;
 
 /**
  * Cache queue consumer service.
+ * <p>
+ * Cancelling the service interrupts its thread. An item interrupted in processing is put back to the queue,
+ * at its tail, so it is processed by another consumer instead of being lost.
  */
 public class CacheQueueConsumerService implements Service {
     /** Injected grid. */
@@ -51,11 +54,32 @@ public class CacheQueueConsumerService implements Service {
         IgniteQueue<String> queue = ignite.queue(QUEUE_NAME, QUEUE_SIZE, new CollectionConfiguration());
 
         while (!ctx.isCancelled()) {
-            String item = queue.take();
+            String item;
+
+            try {
+                item = queue.take();
+            }
+            catch (IgniteInterruptedException ignored) {
+                // Cancelled while waiting, nothing has been taken.
+                break;
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                // Simulate processing.
+                Thread.sleep(1000);
+            }
+            catch (InterruptedException ignored) {
+                // Cancelled in the middle of processing, return the item.
+                queue.put(item);
+
+                break;
+            }
 
             System.out.println(">>> Consumer processed item: " + item);
 
-            Thread.sleep(1000);
+            ConsumerAutoscalerService.recordLatency(ignite, System.nanoTime() - start);
         }
     }
 }
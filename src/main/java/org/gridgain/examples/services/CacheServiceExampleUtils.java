@@ -23,6 +23,9 @@ package org.gridgain.examples.services;
 
 import org.apache.ignite.*;
 import org.apache.ignite.cluster.*;
+import org.apache.ignite.services.*;
+
+import static org.gridgain.examples.services.ConsumerAutoscalerService.*;
 
 /**
  * Configuration constants for this example.
@@ -56,10 +59,34 @@ public class CacheServiceExampleUtils {
             // Deploy at most 1 producer for the cluster.
             ignite.services(producers).deployClusterSingleton("producer", new CacheQueueProducerService());
 
-            // Deploy total of 2 consumer services with maximum of 1 per node.
-            ignite.services(consumers).deployMultiple("consumer", new CacheQueueConsumerService(), 2, 1);
+            // Event-driven consumers share the fixed worker pool of the node's QueueDispatcher,
+            // so they do not add threads.
+            Service consumer = new EventDrivenQueueConsumerService();
+
+            // Deploy total of 2 consumer services with maximum of 1 per node, unless the autoscaler has already
+            // redeployed them with a different count.
+            if (!consumersDeployed(ignite))
+                ignite.services(consumers).deployMultiple(CONSUMER_SVC, consumer, 2, 1);
+
+            // Deploy autoscaler adjusting the number of consumers to the queue depth. Consumers beyond the pool size
+            // of a node would not add capacity, so the pool size is the limit per node.
+            ignite.services().deployClusterSingleton("consumer-autoscaler",
+                new ConsumerAutoscalerService(consumer, 1, QueueDispatcher.POOL_SIZE, 5000, 2000, 3));
 
             System.in.read();
         }
     }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Whether consumer services are deployed.
+     */
+    private static boolean consumersDeployed(Ignite ignite) {
+        for (ServiceDescriptor desc : ignite.services().serviceDescriptors()) {
+            if (CONSUMER_SVC.equals(desc.name()))
+                return true;
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.services;
+
+import org.apache.ignite.*;
+import org.apache.ignite.cluster.*;
+import org.apache.ignite.configuration.*;
+import org.apache.ignite.lang.*;
+import org.apache.ignite.resources.*;
+import org.apache.ignite.services.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.gridgain.examples.services.CacheServiceExampleUtils.*;
+
+/**
+ * Controller that scales the number of consumer services with the load. Deployed as a cluster singleton.
+ * <p>
+ * Every {@code checkInterval} milliseconds the controller reads the queue depth and the average item processing
+ * latency reported by consumers with {@link #recordLatency(Ignite, long)}, and calculates the number of consumers
+ * needed to drain the queue within {@code targetDrainTime}:
+ * <pre>
+ * consumers = ceil(depth * latency / targetDrainTime)
+ * </pre>
+ * The result is bounded by {@code minConsumers} and by the number of nodes with {@link CacheServiceExampleUtils#NODE_ROLE}
+ * equal to {@link CacheServiceExampleUtils#ROLE_CONSUMER} multiplied by {@code maxPerNode}. The controller scales up
+ * as soon as more consumers are needed and scales down only after {@code cooldown} consecutive checks asking for
+ * fewer consumers. Consumers are redeployed by cancelling and deploying the service with a new total count.
+ * <p>
+ * Redeploying is disruptive: between the cancel and the new deployment there are no consumers at all, and
+ * items in processing are interrupted. Consumers must not lose such items, e.g. {@link CacheQueueConsumerService}
+ * puts an interrupted item back to the queue and {@link EventDrivenQueueConsumerService} lets the shared workers
+ * finish it. Keep {@code cooldown} long enough that consumers are not redeployed on every check.
+ */
+public class ConsumerAutoscalerService implements Service {
+    /** Name of the consumer service. */
+    public static final String CONSUMER_SVC = "consumer";
+
+    /** Node-local map key of the latency statistics. */
+    private static final String STATS_KEY = ConsumerAutoscalerService.class.getName() + "-stats";
+
+    /** Injected grid. */
+    @IgniteInstanceResource
+    protected Ignite ignite;
+
+    /** Consumer service to deploy. */
+    private final Service consumer;
+
+    /** Minimum number of consumers. */
+    private final int minConsumers;
+
+    /** Maximum number of consumers per node. */
+    private final int maxPerNode;
+
+    /** Time to drain the queue, in milliseconds. */
+    private final long targetDrainTime;
+
+    /** Check interval, in milliseconds. */
+    private final long checkInterval;
+
+    /** Number of checks asking for fewer consumers before scaling down. */
+    private final int cooldown;
+
+    /**
+     * @param consumer Consumer service to deploy.
+     * @param minConsumers Minimum number of consumers.
+     * @param maxPerNode Maximum number of consumers per node.
+     * @param targetDrainTime Time to drain the queue, in milliseconds.
+     * @param checkInterval Check interval, in milliseconds.
+     * @param cooldown Number of checks asking for fewer consumers before scaling down.
+     */
+    public ConsumerAutoscalerService(Service consumer, int minConsumers, int maxPerNode, long targetDrainTime,
+        long checkInterval, int cooldown) {
+        this.consumer = consumer;
+        this.minConsumers = minConsumers;
+        this.maxPerNode = maxPerNode;
+        this.targetDrainTime = targetDrainTime;
+        this.checkInterval = checkInterval;
+        this.cooldown = cooldown;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void cancel(ServiceContext ctx) {
+        // No-op.
+    }
+
+    /** {@inheritDoc} */
+    @Override public void init(ServiceContext ctx) throws Exception {
+        // No-op.
+    }
+
+    /** {@inheritDoc} */
+    @Override public void execute(ServiceContext ctx) throws Exception {
+        IgniteQueue<String> queue = ignite.queue(QUEUE_NAME, QUEUE_SIZE, new CollectionConfiguration());
+
+        // Latency of one item, in milliseconds.
+        double latency = 0;
+
+        int below = 0;
+
+        while (!ctx.isCancelled()) {
+            Thread.sleep(checkInterval);
+
+            ClusterGroup consumers = ignite.cluster().forAttribute(NODE_ROLE, ROLE_CONSUMER);
+
+            if (consumers.nodes().isEmpty())
+                continue;
+
+            long[] stats = collectStats(consumers);
+
+            if (stats[0] > 0)
+                latency = stats[1] / 1e6 / stats[0];
+
+            int depth = queue.size();
+
+            int current = deployed();
+
+            int desired = (int)Math.ceil(depth * latency / targetDrainTime);
+
+            desired = Math.max(minConsumers, Math.min(desired, consumers.nodes().size() * maxPerNode));
+
+            System.out.println(">>> Autoscaler check [depth=" + depth + ", latency=" + String.format("%.1f", latency) +
+                "ms, consumers=" + current + ", desired=" + desired + ']');
+
+            if (desired > current) {
+                below = 0;
+
+                redeploy(consumers, desired);
+            }
+            else if (desired < current) {
+                if (++below >= cooldown) {
+                    below = 0;
+
+                    redeploy(consumers, desired);
+                }
+            }
+            else
+                below = 0;
+        }
+    }
+
+    /**
+     * @return Configured number of consumer services, {@code 0} if not deployed.
+     */
+    private int deployed() {
+        for (ServiceDescriptor desc : ignite.services().serviceDescriptors()) {
+            if (CONSUMER_SVC.equals(desc.name()))
+                return desc.totalCount();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Redeploys consumers. Consumers are cancelled first, so the queue is not consumed until the new deployment
+     * is done.
+     *
+     * @param consumers Consumer nodes.
+     * @param cnt New number of consumers.
+     */
+    private void redeploy(ClusterGroup consumers, int cnt) {
+        System.out.println(">>> Redeploying consumers [cnt=" + cnt + ']');
+
+        IgniteServices svcs = ignite.services(consumers);
+
+        svcs.cancel(CONSUMER_SVC);
+
+        svcs.deployMultiple(CONSUMER_SVC, consumer, cnt, maxPerNode);
+    }
+
+    /**
+     * Collects and resets latency statistics of consumer nodes.
+     *
+     * @param consumers Consumer nodes.
+     * @return Number of processed items and their total latency in nanoseconds.
+     */
+    private long[] collectStats(ClusterGroup consumers) {
+        Collection<long[]> nodeStats = ignite.compute(consumers).broadcast(new StatsCallable());
+
+        long[] res = new long[2];
+
+        for (long[] s : nodeStats) {
+            res[0] += s[0];
+            res[1] += s[1];
+        }
+
+        return res;
+    }
+
+    /**
+     * Records processing latency of an item. Called by consumers.
+     *
+     * @param ignite Ignite instance.
+     * @param nanos Latency in nanoseconds.
+     */
+    public static void recordLatency(Ignite ignite, long nanos) {
+        AtomicLongArray stats = stats(ignite);
+
+        stats.incrementAndGet(0);
+        stats.addAndGet(1, nanos);
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Node-local statistics: number of items and total latency.
+     */
+    private static AtomicLongArray stats(Ignite ignite) {
+        ConcurrentMap<String, AtomicLongArray> locMap = ignite.cluster().nodeLocalMap();
+
+        AtomicLongArray stats = locMap.get(STATS_KEY);
+
+        if (stats == null) {
+            AtomicLongArray old = locMap.putIfAbsent(STATS_KEY, stats = new AtomicLongArray(2));
+
+            if (old != null)
+                stats = old;
+        }
+
+        return stats;
+    }
+
+    /**
+     * Returns and resets node-local latency statistics.
+     */
+    private static class StatsCallable implements IgniteCallable<long[]> {
+        /** Injected grid. */
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        /** {@inheritDoc} */
+        @Override public long[] call() {
+            AtomicLongArray stats = stats(ignite);
+
+            return new long[] {stats.getAndSet(0, 0), stats.getAndSet(1, 0)};
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.services;
+
+import org.apache.ignite.*;
+import org.apache.ignite.resources.*;
+import org.apache.ignite.services.*;
+
+/**
+ * Cache queue consumer service that does not own a thread. The service registers a handler with the node's
+ * {@link QueueDispatcher} on initialization and is called back from the shared worker pool when an item is taken
+ * from the queue. Every instance adds one concurrently processed item to the node's capacity, up to
+ * {@link QueueDispatcher#POOL_SIZE}; the number of worker threads does not depend on the number of instances.
+ */
+public class EventDrivenQueueConsumerService implements Service {
+    /** Injected grid. */
+    @IgniteInstanceResource
+    protected Ignite ignite;
+
+    /** Handler registered with the dispatcher. */
+    private transient QueueDispatcher.Handler hnd;
+
+    /** {@inheritDoc} */
+    @Override public void cancel(ServiceContext ctx) {
+        QueueDispatcher.get(ignite).unregister(hnd);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void init(final ServiceContext ctx) throws Exception {
+        hnd = new QueueDispatcher.Handler() {
+            @Override public void onItem(String item) {
+                System.out.println(">>> Consumer " + ctx.executionId() + " processed item: " + item);
+
+                // Simulate processing, as the thread-based consumer does.
+                try {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        QueueDispatcher.get(ignite).register(hnd);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void execute(ServiceContext ctx) throws Exception {
+        // No-op, items are delivered to the handler.
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*  _________        _____ __________________        _____
+ *  __  ____/___________(_)______  /__  ____/______ ____(_)_______
+ *  _  / __  __  ___/__  / _  __  / _  / __  _  __ `/__  / __  __ \
+ *  / /_/ /  _  /    _  /  / /_/ /  / /_/ /  / /_/ / _  /  _  / / /
+ *  \____/   /_/     /_/   \_,__/   \____/   \__,_/  /_/   /_/ /_/
+ */
+
+package org.gridgain.examples.services;
+
+import org.apache.ignite.*;
+import org.apache.ignite.configuration.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.gridgain.examples.services.CacheServiceExampleUtils.*;
+
+/**
+ * Node-local dispatcher of queue items to logical consumers.
+ * <p>
+ * A single fetcher thread per node takes items from the queue and hands them to a shared pool of {@link #POOL_SIZE}
+ * workers, where they are processed by registered handlers chosen round-robin. Handlers do not own threads, so
+ * the number of handlers controls how items are shared among logical consumers, not the number of threads.
+ * Every handler adds one item that may be processed concurrently, up to the pool size, so capacity of a node
+ * grows with the number of consumers until it reaches the pool size. The fetcher takes an item only when there is
+ * free capacity, so items are not buffered locally and stay available to other nodes.
+ * <p>
+ * Processing latency of every item is reported with {@link ConsumerAutoscalerService#recordLatency(Ignite, long)}.
+ * The fetcher and the pool run while at least one handler is registered. Services are cancelled when the node
+ * stops, so both are stopped with the node.
+ */
+public class QueueDispatcher {
+    /** Node-local map key. */
+    private static final String DISPATCHER_KEY = QueueDispatcher.class.getName();
+
+    /** Number of worker threads. */
+    public static final int POOL_SIZE = 8;
+
+    /** Ignite instance. */
+    private final Ignite ignite;
+
+    /** Handlers. */
+    private final List<Handler> handlers = new CopyOnWriteArrayList<>();
+
+    /** Workers, {@code null} if not running. */
+    private ExecutorService pool;
+
+    /** Free capacity, one permit per registered handler up to the pool size. */
+    private final Capacity freeCap = new Capacity();
+
+    /** Round-robin counter. */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /** Fetcher thread, {@code null} if not running. */
+    private Thread fetcher;
+
+    /**
+     * @param ignite Ignite instance.
+     */
+    private QueueDispatcher(Ignite ignite) {
+        this.ignite = ignite;
+    }
+
+    /**
+     * @param ignite Ignite instance.
+     * @return Dispatcher of the local node.
+     */
+    public static QueueDispatcher get(Ignite ignite) {
+        ConcurrentMap<String, QueueDispatcher> locMap = ignite.cluster().nodeLocalMap();
+
+        QueueDispatcher dispatcher = locMap.get(DISPATCHER_KEY);
+
+        if (dispatcher == null) {
+            QueueDispatcher old = locMap.putIfAbsent(DISPATCHER_KEY, dispatcher = new QueueDispatcher(ignite));
+
+            if (old != null)
+                dispatcher = old;
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Registers handler and starts fetching if needed.
+     *
+     * @param hnd Handler.
+     */
+    public synchronized void register(Handler hnd) {
+        handlers.add(hnd);
+
+        if (handlers.size() <= POOL_SIZE)
+            freeCap.release();
+
+        if (fetcher == null) {
+            final ExecutorService workers = pool = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+                private final AtomicInteger cnt = new AtomicInteger();
+
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "queue-dispatcher-worker-" + cnt.incrementAndGet());
+
+                    t.setDaemon(true);
+
+                    return t;
+                }
+            });
+
+            fetcher = new Thread(new Runnable() {
+                @Override public void run() {
+                    fetch(workers);
+                }
+            }, "queue-dispatcher-fetcher");
+
+            fetcher.setDaemon(true);
+
+            fetcher.start();
+        }
+    }
+
+    /**
+     * Unregisters handler and stops fetching and the pool if no handlers left. Items in processing are finished.
+     *
+     * @param hnd Handler.
+     */
+    public synchronized void unregister(Handler hnd) {
+        if (!handlers.remove(hnd))
+            return;
+
+        // Permit of an item in processing is not returned to the capacity when the item is done.
+        if (handlers.size() < POOL_SIZE)
+            freeCap.reducePermits(1);
+
+        if (handlers.isEmpty() && fetcher != null) {
+            fetcher.interrupt();
+
+            pool.shutdown();
+
+            fetcher = null;
+            pool = null;
+        }
+    }
+
+    /**
+     * Fetch loop.
+     *
+     * @param pool Workers.
+     */
+    private void fetch(ExecutorService pool) {
+        IgniteQueue<String> queue = ignite.queue(QUEUE_NAME, QUEUE_SIZE, new CollectionConfiguration());
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                freeCap.acquire();
+
+                final String item;
+
+                try {
+                    item = queue.take();
+                }
+                catch (IgniteException e) {
+                    freeCap.release();
+
+                    throw e;
+                }
+
+                final Handler hnd = nextHandler();
+
+                if (hnd == null) {
+                    // Last handler has been unregistered, return the item.
+                    freeCap.release();
+
+                    queue.put(item);
+
+                    return;
+                }
+
+                Runnable task = new Runnable() {
+                    @Override public void run() {
+                        long start = System.nanoTime();
+
+                        try {
+                            hnd.onItem(item);
+
+                            ConsumerAutoscalerService.recordLatency(ignite, System.nanoTime() - start);
+                        }
+                        finally {
+                            freeCap.release();
+                        }
+                    }
+                };
+
+                try {
+                    pool.execute(task);
+                }
+                catch (RejectedExecutionException ignored) {
+                    // Last handler has been unregistered and the pool stopped, return the item.
+                    freeCap.release();
+
+                    queue.put(item);
+
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException | IgniteInterruptedException ignored) {
+            // Stopped.
+        }
+        catch (IgniteException e) {
+            if (Ignition.state(ignite.name()) == IgniteState.STARTED)
+                e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return Next handler or {@code null} if there are none.
+     */
+    private Handler nextHandler() {
+        for (;;) {
+            int size = handlers.size();
+
+            if (size == 0)
+                return null;
+
+            try {
+                return handlers.get(Math.abs(next.getAndIncrement() % size));
+            }
+            catch (IndexOutOfBoundsException ignored) {
+                // Handler has been unregistered concurrently, retry.
+            }
+        }
+    }
+
+    /**
+     * Semaphore whose number of permits may be reduced.
+     */
+    private static class Capacity extends Semaphore {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** */
+        Capacity() {
+            super(0);
+        }
+
+        /** {@inheritDoc} */
+        @Override protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    /**
+     * Handler of queue items.
+     */
+    public interface Handler {
+        /**
+         * Processes item in a worker thread. While the item is processed, the handler's share of node capacity
+         * is used.
+         *
+         * @param item Item.
+         */
+        void onItem(String item);
+    }
+}